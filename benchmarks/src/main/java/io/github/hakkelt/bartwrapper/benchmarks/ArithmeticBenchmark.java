@@ -0,0 +1,81 @@
+package io.github.hakkelt.bartwrapper.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.hakkelt.bartwrapper.BartNDArray;
+import io.github.hakkelt.ndarrays.NDArray;
+
+/**
+ * Element-wise arithmetic, eager and lazy (fused).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArithmeticBenchmark {
+
+    @Param({ "64x64x8", "256x256x16" })
+    public String shape;
+
+    private BartNDArray a;
+    private BartNDArray b;
+    private BartNDArray c;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        a = BenchmarkArrays.create(shape);
+        b = BenchmarkArrays.create(shape);
+        c = BenchmarkArrays.create(shape).multiply(2);
+    }
+
+    @Benchmark
+    public BartNDArray addArray() {
+        return a.add(b);
+    }
+
+    @Benchmark
+    public BartNDArray multiplyArray() {
+        return a.multiply(b);
+    }
+
+    @Benchmark
+    public BartNDArray divideArray() {
+        return a.divide(b);
+    }
+
+    @Benchmark
+    public BartNDArray multiplyScalar() {
+        return a.multiply(0.5);
+    }
+
+    @Benchmark
+    public NDArray<Float> abs() {
+        return a.abs();
+    }
+
+    @Benchmark
+    public NDArray<Float> chainEager() {
+        return a.multiply(b).add(c).divide(b).abs();
+    }
+
+    @Benchmark
+    public NDArray<Float> chainLazy() {
+        return a.lazy().multiply(b).add(c).divide(b).abs();
+    }
+
+}
@@ -0,0 +1,69 @@
+package io.github.hakkelt.bartwrapper.benchmarks;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.apache.commons.math3.complex.Complex;
+
+import io.github.hakkelt.bartwrapper.BartComplexFloatNDArray;
+import io.github.hakkelt.bartwrapper.BartDimsEnum;
+import io.github.hakkelt.bartwrapper.BartNDArray;
+
+/**
+ * Helpers shared by the benchmarks to create input arrays from the benchmark parameters.
+ */
+final class BenchmarkArrays {
+
+    private BenchmarkArrays() {}
+
+    /**
+     * Parses a shape given in the form of "128x128x8".
+     *
+     * @param shape shape of the array as a benchmark parameter
+     * @return dimensions of the array
+     */
+    static int[] parseShape(String shape) {
+        return Arrays.stream(shape.split("x")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * Creates an array of the given shape filled with non-trivial values.
+     *
+     * @param shape shape of the array as a benchmark parameter
+     * @return the new array
+     */
+    static BartNDArray create(String shape) {
+        return new BartComplexFloatNDArray(parseShape(shape))
+            .fillUsingLinearIndices(i -> new Complex(i % 251 + 1, -(i % 127) - 1));
+    }
+
+    /**
+     * Sets the meaning of dimensions according to the benchmark parameter:
+     * "none" leaves them unspecified, "ordered" uses the BART order (so no permutation is needed
+     * when the array is saved), and "permuted" uses the reversed order.
+     *
+     * @param array array to set the meaning of dimensions on
+     * @param bartDims "none", "ordered" or "permuted"
+     */
+    static void setBartDims(BartNDArray array, String bartDims) {
+        BartDimsEnum[] dims = Stream.of(BartDimsEnum.values()).limit(array.ndim()).toArray(BartDimsEnum[]::new);
+        switch (bartDims) {
+            case "none":
+                return;
+            case "ordered":
+                array.setBartDims(dims);
+                return;
+            case "permuted":
+                for (int i = 0; i < dims.length / 2; i++) {
+                    BartDimsEnum tmp = dims[i];
+                    dims[i] = dims[dims.length - 1 - i];
+                    dims[dims.length - 1 - i] = tmp;
+                }
+                array.setBartDims(dims);
+                return;
+            default:
+                throw new IllegalArgumentException("Unknown bartDims parameter: " + bartDims);
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package io.github.hakkelt.bartwrapper.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.hakkelt.bartwrapper.Bart;
+import io.github.hakkelt.bartwrapper.BartException;
+
+/**
+ * End-to-end latency of Bart.run/read, including process spawn, temp-file transport and output loading.
+ * Sampling mode records the latency distribution (percentiles are included in the JSON results).
+ *
+ * <p>Run it with the stub executable to measure the overhead of the driver only:
+ * {@code java -Dbartwrapper.exe=benchmarks/stub/bart -jar benchmarks/target/benchmarks.jar DriverBenchmark}</p>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DriverBenchmark {
+
+    @Param({ "bitmask", "ones", "scale", "cabs", "fft", "pics" })
+    public String command;
+
+    @Param({ "64x64", "256x256x8" })
+    public String shape;
+
+    private DriverCommands.Invocation invocation;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        invocation = DriverCommands.create(command, shape);
+    }
+
+    @Benchmark
+    public Object invoke() throws BartException {
+        return invocation.invoke();
+    }
+
+    /**
+     * Baseline: the cost of the process spawn alone.
+     */
+    @Benchmark
+    public String version() throws BartException {
+        return Bart.read("version");
+    }
+
+}
@@ -0,0 +1,73 @@
+package io.github.hakkelt.bartwrapper.benchmarks;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.complex.Complex;
+
+import io.github.hakkelt.bartwrapper.Bart;
+import io.github.hakkelt.bartwrapper.BartComplexFloatNDArray;
+import io.github.hakkelt.bartwrapper.BartException;
+import io.github.hakkelt.bartwrapper.BartNDArray;
+
+/**
+ * The BART commands used by the driver benchmarks: trivial ones (bitmask, ones),
+ * memory-bound ones (scale, cabs) and compute-bound ones (fft, pics).
+ */
+final class DriverCommands {
+
+    /** Command name, arguments (without the output) and whether the command writes an output array */
+    static final class Invocation {
+        final Object[] args;
+        final boolean hasOutput;
+
+        Invocation(boolean hasOutput, Object... args) {
+            this.args = args;
+            this.hasOutput = hasOutput;
+        }
+
+        Object invoke() throws BartException {
+            return hasOutput ? Bart.run(args) : Bart.read(args);
+        }
+    }
+
+    private DriverCommands() {}
+
+    static Invocation create(String command, String shape) {
+        int[] dims = BenchmarkArrays.parseShape(shape);
+        switch (command) {
+            case "bitmask":
+                return new Invocation(false, "bitmask", "-b", 7);
+            case "ones":
+                return new Invocation(true, concat(new Object[]{ "ones", dims.length }, boxed(dims)));
+            case "scale":
+                return new Invocation(true, "scale", 0.5f, BenchmarkArrays.create(shape));
+            case "cabs":
+                return new Invocation(true, "cabs", BenchmarkArrays.create(shape));
+            case "fft":
+                return new Invocation(true, "fft", (1 << Math.min(dims.length, 3)) - 1, BenchmarkArrays.create(shape));
+            case "pics":
+                return new Invocation(true, "pics", "-S", BenchmarkArrays.create(shape), sensitivities(dims));
+            default:
+                throw new IllegalArgumentException("Unknown command: " + command);
+        }
+    }
+
+    /**
+     * Single-coil sensitivity map of ones with the same image dimensions as the k-space.
+     */
+    private static BartNDArray sensitivities(int[] dims) {
+        return new BartComplexFloatNDArray(dims).fill(new Complex(1, 0));
+    }
+
+    private static Object[] boxed(int[] array) {
+        return IntStream.of(array).boxed().toArray();
+    }
+
+    private static Object[] concat(Object[] first, Object[] second) {
+        Object[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+}
@@ -0,0 +1,48 @@
+package io.github.hakkelt.bartwrapper.benchmarks;
+
+import java.util.Arrays;
+
+import io.github.hakkelt.bartwrapper.Bart;
+import io.github.hakkelt.bartwrapper.BartException;
+import io.github.hakkelt.bartwrapper.BartHistogramMetrics;
+import io.github.hakkelt.bartwrapper.BartPhase;
+
+/**
+ * Splits the latency of Bart.run into phases (input conversion, process start, BART wall time, output load
+ * and clean-up) using the timers of the driver. Prints the median, 90th and 99th percentile of each phase
+ * in milliseconds as CSV.
+ *
+ * <p>Usage: {@code java -Dbartwrapper.exe=benchmarks/stub/bart -cp benchmarks/target/benchmarks.jar
+ * io.github.hakkelt.bartwrapper.benchmarks.DriverPhaseBreakdown [iterations] [shape]...}</p>
+ */
+public class DriverPhaseBreakdown {
+
+    private static final String[] COMMANDS = { "ones", "scale", "cabs", "fft", "pics" };
+
+    public static void main(String[] args) throws BartException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        String[] shapes = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[]{ "64x64", "256x256x8" };
+        BartHistogramMetrics metrics = new BartHistogramMetrics();
+        Bart.setMetrics(metrics);
+
+        System.out.println("command,shape,phase,p50,p90,p99");
+        for (String shape : shapes)
+            for (String command : COMMANDS) {
+                DriverCommands.Invocation invocation = DriverCommands.create(command, shape);
+                for (int i = 0; i < iterations / 5; i++) // warm-up
+                    invocation.invoke();
+                metrics.reset();
+                for (int i = 0; i < iterations; i++)
+                    invocation.invoke();
+                for (BartPhase phase : BartPhase.values())
+                    print(command, shape, phase.name(), metrics.getHistogram(command, phase));
+                print(command, shape, "TOTAL", metrics.getTotalHistogram(command));
+            }
+    }
+
+    private static void print(String command, String shape, String phase, BartHistogramMetrics.Histogram histogram) {
+        System.out.printf("%s,%s,%s,%.3f,%.3f,%.3f%n", command, shape, phase,
+            histogram.getPercentile(0.5) / 1e6, histogram.getPercentile(0.9) / 1e6, histogram.getPercentile(0.99) / 1e6);
+    }
+
+}
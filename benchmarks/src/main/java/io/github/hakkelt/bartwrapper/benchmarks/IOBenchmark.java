@@ -0,0 +1,85 @@
+package io.github.hakkelt.bartwrapper.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.hakkelt.bartwrapper.BartNDArray;
+
+/**
+ * Reading and writing of BART's rawarray files, i.e. the Java-side cost of passing arrays to and from BART.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IOBenchmark {
+
+    @Param({ "64x64", "256x256x8", "128x128x16x8" })
+    public String shape;
+
+    @Param({ "none", "ordered", "permuted" })
+    public String bartDims;
+
+    private BartNDArray array;
+    private File inputFile;
+    private File outputFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        array = BenchmarkArrays.create(shape);
+        BenchmarkArrays.setBartDims(array, bartDims);
+        inputFile = BartNDArray.saveToTemp(array);
+        outputFile = Files.createTempFile("bart_benchmark_", ".ra").toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(inputFile.toPath());
+        Files.deleteIfExists(outputFile.toPath());
+    }
+
+    @Benchmark
+    public BartNDArray load() throws IOException {
+        return BartNDArray.load(inputFile);
+    }
+
+    @Benchmark
+    public File save() throws IOException {
+        BartNDArray.save(array, outputFile);
+        return outputFile;
+    }
+
+    /**
+     * Includes the creation and the deletion of the temporary file.
+     */
+    @Benchmark
+    public File saveToTemp() throws IOException {
+        File file = BartNDArray.saveToTemp(array);
+        Files.delete(file.toPath());
+        return file;
+    }
+
+    @Benchmark
+    public BartNDArray prepareToSave() {
+        return BartNDArray.prepareToSave(array);
+    }
+
+}
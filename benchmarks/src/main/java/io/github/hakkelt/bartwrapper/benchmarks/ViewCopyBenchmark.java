@@ -0,0 +1,80 @@
+package io.github.hakkelt.bartwrapper.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.hakkelt.bartwrapper.BartNDArray;
+
+/**
+ * Materializing views with copy(), which happens whenever a view is saved or passed to BART.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ViewCopyBenchmark {
+
+    @Param({ "64x64x8", "256x256x16" })
+    public String shape;
+
+    private BartNDArray array;
+    private BartNDArray slice;
+    private BartNDArray permuted;
+    private BartNDArray reshaped;
+    private BartNDArray masked;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        array = BenchmarkArrays.create(shape);
+        int[] dims = array.shape();
+        // all rows, inner columns, every slice: contiguous runs of whole columns
+        Object[] slicingExpressions = IntStream.range(0, dims.length)
+            .mapToObj(i -> i == 1 ? "1:" + (dims[1] - 1) : ":")
+            .toArray();
+        slice = array.slice(slicingExpressions);
+        permuted = array.permuteDims(IntStream.range(0, dims.length).map(i -> dims.length - 1 - i).toArray());
+        reshaped = slice.reshape(slice.length()); // reshape view of a slice view, as dense arrays are reshaped in place
+        masked = array.mask(value -> ((int) value.getReal()) % 2 == 0);
+    }
+
+    @Benchmark
+    public BartNDArray copyDense() {
+        return array.copy();
+    }
+
+    @Benchmark
+    public BartNDArray copySlice() {
+        return slice.copy();
+    }
+
+    @Benchmark
+    public BartNDArray copyPermuted() {
+        return permuted.copy();
+    }
+
+    @Benchmark
+    public BartNDArray copyReshaped() {
+        return reshaped.copy();
+    }
+
+    @Benchmark
+    public BartNDArray copyMasked() {
+        return masked.copy();
+    }
+
+}
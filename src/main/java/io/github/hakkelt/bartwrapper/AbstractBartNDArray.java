@@ -0,0 +1,187 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.complex.Complex;
+
+import io.github.hakkelt.ndarrays.AbstractComplexNDArray;
+import io.github.hakkelt.ndarrays.ComplexNDArray;
+import io.github.hakkelt.ndarrays.NDArray;
+import io.github.hakkelt.ndarrays.basic.BasicFloatNDArray;
+
+/**
+ * Common base of the BartNDArray implementations that own their storage.
+ * Subclasses differ only in how entries are stored, and they are expanded to
+ * the complex float layout expected by BART when they are saved.
+ */
+public abstract class AbstractBartNDArray extends AbstractComplexNDArray<Float> implements BartNDArray {
+    /** Number of entries converted at once when a compact array is expanded to complex floats */
+    protected static final int CONVERSION_CHUNK_SIZE = 4096;
+    protected BartDimsEnum[] bartDims = null;
+
+    /**
+     * Writes all entries to the buffer in column-major order as interleaved real and imaginary parts.
+     *
+     * @param buffer buffer to write the entries to
+     */
+    protected abstract void writeTo(FloatBuffer buffer);
+
+    protected abstract AbstractBartNDArray createNewNDArrayOfSameTypeAsMe(int... dims);
+
+    @Override
+    public BartNDArray copyFrom(NDArray<?> array) {
+        super.copyFrom(array);
+        return this;
+    }
+
+    @Override
+    public Float getRealUnchecked(int... indices) {
+        return getRealUncheckedDefault(indices);
+    }
+
+    @Override
+    public Float getImagUnchecked(int... indices) {
+        return getImagUncheckedDefault(indices);
+    }
+
+    @Override
+    protected Complex getUnchecked(int linearIndex) {
+        return new Complex(getRealUnchecked(linearIndex), getImagUnchecked(linearIndex));
+    }
+
+    @Override
+    protected Complex getUnchecked(int... indices) {
+        return getUncheckedDefault(indices);
+    }
+
+    @Override
+    protected void setUnchecked(Complex value, int linearIndex) {
+        setRealUnchecked((float) value.getReal(), linearIndex);
+        setImagUnchecked((float) value.getImaginary(), linearIndex);
+    }
+
+    @Override
+    protected void setUnchecked(Complex value, int... indices) {
+        setUncheckedDefault(value, indices);
+    }
+
+    @Override
+    protected void setRealUnchecked(Float value, int... indices) {
+        setRealUncheckedDefault(value, indices);
+    }
+
+    @Override
+    protected void setImagUnchecked(Float value, int... indices) {
+        setImagUncheckedDefault(value, indices);
+    }
+
+    public boolean areBartDimsSpecified() {
+        return bartDims != null;
+    }
+
+    public BartDimsEnum[] getBartDims() {
+        if (bartDims == null)
+            throw new UnsupportedOperationException(BartErrors.UNINITIALIZED_BART_DIMS);
+        return bartDims;
+    }
+
+    public void setBartDims(BartDimsEnum... bartDims) {
+        if (bartDims.length != ndim())
+            throw new IllegalArgumentException(String.format(BartErrors.SET_BART_DIMS_SIZE_MISMATCH, ndim()));
+        int[] intBartDims = IntStream.range(0, bartDims.length).map(i -> bartDims[i].ordinal()).toArray();
+        if (hasDuplicates(intBartDims))
+            throw new IllegalArgumentException(BartErrors.SET_BART_DIMS_DUPLICATES);
+        this.bartDims = bartDims;
+    }
+
+    protected static boolean hasDuplicates(int[] array) {
+        List<Integer> set = IntStream.of(array).boxed().collect(Collectors.toList());
+        return IntStream.of(array).anyMatch(num -> Collections.frequency(set, num) > 1);
+    }
+
+    protected NDArray<Float> createNewRealNDArrayOfSameTypeAsMe(int... dims) {
+        return new BasicFloatNDArray(dims);
+    }
+
+    protected boolean areBartDimsEqual(BartNDArray array) {
+        return Arrays.equals(bartDims, array.getBartDims());
+    }
+
+    protected boolean areBartDimsCompatible(Object obj) {
+        if (obj instanceof BartNDArray && areBartDimsSpecified() != ((BartNDArray)obj).areBartDimsSpecified())
+            return false;
+        if (obj instanceof BartNDArray && areBartDimsSpecified() && !areBartDimsEqual((BartNDArray)obj))
+            return false;
+        return obj instanceof BartNDArray || !areBartDimsSpecified();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!areBartDimsCompatible(obj))
+            return false;
+        return super.equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getNamePrefix() {
+        return "bart";
+    }
+
+    @Override
+    public BartNDArray apply(UnaryOperator<Complex> func) {
+        super.apply(func);
+        return this;
+    }
+
+    @Override
+    public BartNDArray applyWithLinearIndices(BiFunction<Complex, Integer, Complex> func) {
+        super.applyWithLinearIndices(func);
+        return this;
+    }
+
+    @Override
+    public BartNDArray applyWithCartesianIndices(BiFunction<Complex, int[], Complex> func) {
+        super.applyWithCartesianIndices(func);
+        return this;
+    }
+
+    @Override
+    public BartNDArray fillUsingLinearIndices(IntFunction<Complex> func) {
+        super.fillUsingLinearIndices(func);
+        return this;
+    }
+
+    @Override
+    public BartNDArray fillUsingCartesianIndices(Function<int[], Complex> func) {
+        super.fillUsingCartesianIndices(func);
+        return this;
+    }
+
+    @Override
+    public BartNDArray applyOnComplexSlices(BiFunction<ComplexNDArray<Float>,int[],NDArray<?>> func, int... iterationDims) {
+        super.applyOnComplexSlices(func, iterationDims);
+        return this;
+    }
+
+    @Override
+    public BartNDArray mapOnComplexSlices(BiFunction<ComplexNDArray<Float>,int[],NDArray<?>> func, int... iterationDims) {
+        BartNDArray newInstance = copy();
+        newInstance.applyOnComplexSlices(func, iterationDims);
+        return newInstance;
+    }
+
+}
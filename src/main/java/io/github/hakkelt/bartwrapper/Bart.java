@@ -3,15 +3,36 @@ package io.github.hakkelt.bartwrapper;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.ArrayUtils;
@@ -20,17 +41,43 @@ import io.github.hakkelt.ndarrays.NDArray;
 
 /**
  * Driver for BART
+ * 
+ * <p>The BART executable is looked up in the following order: the path given in the
+ * {@value #EXE_PATH_PROPERTY} system property, a file named bart.exe on the class path,
+ * and finally the executable bundled in the jar, which is extracted on first use to a folder
+ * in the temp directory named after the hash of the executable, and reused afterwards.</p>
+ * 
+ * <p>The standard output and the standard error of BART are drained concurrently, so a command
+ * that writes a lot to either of them cannot block. Only the last lines of the standard error are
+ * kept for the error message. The time limit of BART commands can be set by the
+ * {@value #TIMEOUT_PROPERTY} system property as an ISO-8601 duration (e.g. PT10M); commands
+ * exceeding it are killed. Timeout, resource limits and other options can also be set per call by
+ * {@link BartOptions}.</p>
  */
 public class Bart {
 
+    /** Name of the system property that overrides the path of the BART executable */
+    public static final String EXE_PATH_PROPERTY = "bartwrapper.exe";
+    /** Name of the system property that sets the cache directory of BART (see {@link #setCacheDirectory(File)}) */
+    public static final String CACHE_DIRECTORY_PROPERTY = "bartwrapper.cache";
+    /** Name of the system property that sets the time limit of BART commands, e.g. PT10M */
+    public static final String TIMEOUT_PROPERTY = "bartwrapper.timeout";
+    private static final int MAX_ERROR_LINES = 1000;
+    private static final long STREAM_CLOSE_TIMEOUT_SECONDS = 10;
+    private static final ExecutorService STREAM_DRAINERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "bart-output-drainer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final String PRLIMIT = "prlimit";
+    private static final String TOOLBOX_PATH = "TOOLBOX_PATH";
     private static final String TMPDIR = "java.io.tmpdir";
     private static final String BART_EXE = "bart.exe";
     private static final Logger LOGGER = Logger.getLogger(Bart.class.getName());
-    private static File exePath;
-    static {
-        if (!searchExeInClassPath())
-            copyExeFromJarResources();
-    }
+    private static volatile File exePath;
+    private static volatile File cacheDirectory;
+    private static volatile String preparedCacheProperty;
+    private static volatile BartMetrics metrics = ServiceLoader.load(BartMetrics.class).findFirst().orElse(BartMetrics.NO_OP);
 
     private Bart() {}
     
@@ -50,7 +97,7 @@ BartNDArray result = BartNDArray.load(output));
      * @throws BartException when running BART fails for any reason
      */
     public static void execute(Object... args) throws BartException {
-        execute(null, args);
+        execute(new BartOptions(), args);
     }
 
     /** 
@@ -74,17 +121,42 @@ System.out.println(str.toString());
      * @throws BartException when running BART fails for any reason
      */
     public static void execute(Consumer<String> outputConsumer, Object... args) throws BartException {
+        execute(new BartOptions().outputConsumer(outputConsumer), args);
+    }
+
+    /** 
+     * Execute a BART command with the given per-call options
+     * 
+     * <ul><li><b>Example:</b></li></ul>
+     * 
+     * <blockquote><pre>{@code 
+File output = File.createTempFile("bart_", ".ra");
+Bart.execute(new BartOptions().timeout(Duration.ofMinutes(5)), "phantom", "-x", 256, output);
+     * }</pre></blockquote>
+     * 
+     * @param options timeout, resource limits and output consumer of the invocation
+     * @param args name of BART command and its arguments
+     * @throws BartException when running BART fails for any reason, including timeout and interruption
+     */
+    public static void execute(BartOptions options, Object... args) throws BartException {
         List<File> tempFiles = new ArrayList<>();
+        BartInvocation invocation = new BartInvocation(metrics, args);
+        boolean successful = false;
         try {
-            Process process = new ProcessBuilder()
-                .command(convertInputs(tempFiles, args))
-                .directory(new File(System.getProperty(TMPDIR)))
-                .start();
-            handleProcessOutput(process, outputConsumer, false);
+            long phaseStart = System.nanoTime();
+            String[] command = convertInputs(tempFiles, args);
+            invocation.addBytesWritten(sizeOf(tempFiles));
+            phaseStart = invocation.endPhase(BartPhase.CONVERT_INPUTS, phaseStart);
+            Process process = startProcess(options, command);
+            phaseStart = invocation.endPhase(BartPhase.PROCESS_START, phaseStart);
+            handleProcessOutput(process, invocation.getCommand(), options, false);
+            invocation.endPhase(BartPhase.BART_WALL_TIME, phaseStart);
+            successful = true;
         } catch (IOException e) {
             throw new BartException(e.getMessage());
         } finally {
-            cleanUp(tempFiles);
+            cleanUp(invocation, tempFiles);
+            invocation.finish(successful);
         }
     }
     
@@ -102,17 +174,44 @@ String result = Bart.read("bitmask", "-b", 7);
      * @throws BartException when running BART fails for any reason
      */
     public static String read(Object ... args) throws BartException {
+        return read(new BartOptions(), args);
+    }
+
+    /** 
+     * Executes a BART command with the given per-call options and reads its output to a String.
+     * The output consumer of the options is not used.
+     * 
+     * <ul><li><b>Example:</b></li></ul>
+     * 
+     * <blockquote><pre>{@code 
+String result = Bart.read(new BartOptions().timeout(Duration.ofSeconds(10)), "estdims", kspace);
+     * }</pre></blockquote>
+     * 
+     * @param options timeout and resource limits of the invocation
+     * @param args name of BART command and its arguments
+     * @return result of the BART command
+     * @throws BartException when running BART fails for any reason, including timeout and interruption
+     */
+    public static String read(BartOptions options, Object... args) throws BartException {
         List<File> tempFiles = new ArrayList<>();
+        BartInvocation invocation = new BartInvocation(metrics, args);
+        boolean successful = false;
         try {
-            Process process = new ProcessBuilder()
-                .command(convertInputs(tempFiles, args))
-                .directory(new File(System.getProperty(TMPDIR)))
-                .start();
-            return handleProcessOutput(process, null, true).trim();
+            long phaseStart = System.nanoTime();
+            String[] command = convertInputs(tempFiles, args);
+            invocation.addBytesWritten(sizeOf(tempFiles));
+            phaseStart = invocation.endPhase(BartPhase.CONVERT_INPUTS, phaseStart);
+            Process process = startProcess(options, command);
+            phaseStart = invocation.endPhase(BartPhase.PROCESS_START, phaseStart);
+            String result = handleProcessOutput(process, invocation.getCommand(), options, true).trim();
+            invocation.endPhase(BartPhase.BART_WALL_TIME, phaseStart);
+            successful = true;
+            return result;
         } catch (IOException e) {
             throw new BartException(e.getMessage());
         } finally {
-            cleanUp(tempFiles);
+            cleanUp(invocation, tempFiles);
+            invocation.finish(successful);
         }
     }
     
@@ -137,7 +236,7 @@ BartNDArray bartAbs = Bart.run("cabs", array).squeeze();
      * @throws BartException when running Bart fails for any reason
      */
     public static BartNDArray run(Object... args) throws BartException {
-        return run(null, args);
+        return run(new BartOptions(), args);
     }
 
     /** 
@@ -166,62 +265,419 @@ System.out.println(str.toString());
      * @throws BartException when running Bart fails for any reason
      */
     public static BartNDArray run(Consumer<String> outputConsumer, Object... args) throws BartException {
+        return run(new BartOptions().outputConsumer(outputConsumer), args);
+    }
+
+    /** 
+     * Executes a BART command with the given per-call options and reads its output to an NDArray.
+     * 
+     * <p>Note: It is assumed that the BART command to be executed
+     * saves its output to a file and it expects the name of the file
+     * to be specified as the last argument. When passing arguments to this 
+     * function, this last argument specifying the output file name should be 
+     * omitted as it is handled automaticall by this driver.</p>
+     * 
+     * <ul><li><b>Example:</b></li></ul>
+     * 
+     * <blockquote><pre>{@code 
+BartOptions options = new BartOptions()
+    .timeout(Duration.ofMinutes(5))
+    .maxMemory(8L << 30);
+BartNDArray image = Bart.run(options, "pics", "-l1", "-r0.01", kspace, sensitivities);
+     * }</pre></blockquote>
+     * 
+     * @param options timeout, resource limits and output consumer of the invocation
+     * @param args name of BART command and its arguments
+     * @return NDArray that holds the output of the BART command
+     * @throws BartException when running Bart fails for any reason, including timeout and interruption
+     */
+    public static BartNDArray run(BartOptions options, Object... args) throws BartException {
+        return runMulti(options, 1, args)[0];
+    }
+
+    /** 
+     * Executes a BART command that saves its outputs to several files, and reads all of them.
+     * 
+     * <p>Note: It is assumed that the BART command expects the names of the output files
+     * to be specified as the last arguments. When passing arguments to this function,
+     * these arguments should be omitted as they are handled automatically by this driver.</p>
+     * 
+     * <ul><li><b>Example:</b></li></ul>
+     * 
+     * <blockquote><pre>{@code 
+BartNDArray[] usv = Bart.runMulti(3, "svd", matrix);
+BartNDArray u = usv[0];
+BartNDArray s = usv[1];
+BartNDArray vh = usv[2];
+     * }</pre></blockquote>
+     * 
+     * @param outputs the number of output files
+     * @param args name of BART command and its arguments
+     * @return NDArrays that hold the outputs of the BART command, in the order of the output files
+     * @throws BartException when running Bart fails for any reason
+     */
+    public static BartNDArray[] runMulti(int outputs, Object... args) throws BartException {
+        return runMulti(new BartOptions(), outputs, args);
+    }
+
+    /** 
+     * Executes a BART command that saves its outputs to several files with the given per-call options,
+     * and reads all of them (see {@link #runMulti(int, Object...)}).
+     * 
+     * <ul><li><b>Example:</b></li></ul>
+     * 
+     * <blockquote><pre>{@code 
+BartNDArray[] calibration = Bart.runMulti(new BartOptions().timeout(Duration.ofMinutes(1)), 2, "ecalib", kspace);
+BartNDArray sensitivities = calibration[0];
+BartNDArray eigenvalues = calibration[1];
+     * }</pre></blockquote>
+     * 
+     * @param options timeout, resource limits and output consumer of the invocation
+     * @param outputs the number of output files
+     * @param args name of BART command and its arguments
+     * @return NDArrays that hold the outputs of the BART command, in the order of the output files
+     * @throws BartException when running Bart fails for any reason, including timeout and interruption
+     */
+    public static BartNDArray[] runMulti(BartOptions options, int outputs, Object... args) throws BartException {
+        if (outputs <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "number of outputs", outputs));
         List<File> tempFiles = new ArrayList<>();
-        File output;
+        BartInvocation invocation = new BartInvocation(metrics, args);
+        boolean successful = false;
         try {
-            output = Files.createTempFile("bart_", ".ra").toFile();
-            Object[] args2 = ArrayUtils.add(args, output);
-            Process process = new ProcessBuilder()
-                .command(convertInputs(tempFiles, args2))
-                .directory(new File(System.getProperty(TMPDIR)))
-                .start();
-            handleProcessOutput(process, outputConsumer, false);
-            BartNDArray result = BartNDArray.load(output);
-            result.setBartDims(Stream.of(BartDimsEnum.values()).limit(result.ndim()).toArray(BartDimsEnum[]::new));
-            Files.delete(output.toPath());
-            return result;
+            long phaseStart = System.nanoTime();
+            File[] outputFiles = new File[outputs];
+            for (int i = 0; i < outputs; i++) {
+                outputFiles[i] = Files.createTempFile("bart_", ".ra").toFile();
+                tempFiles.add(outputFiles[i]);
+            }
+            Object[] args2 = ArrayUtils.addAll(args, (Object[]) outputFiles);
+            String[] command = convertInputs(tempFiles, args2);
+            invocation.addBytesWritten(sizeOf(tempFiles));
+            phaseStart = invocation.endPhase(BartPhase.CONVERT_INPUTS, phaseStart);
+            Process process = startProcess(options, command);
+            phaseStart = invocation.endPhase(BartPhase.PROCESS_START, phaseStart);
+            handleProcessOutput(process, invocation.getCommand(), options, false);
+            phaseStart = invocation.endPhase(BartPhase.BART_WALL_TIME, phaseStart);
+            BartNDArray[] results = new BartNDArray[outputs];
+            for (int i = 0; i < outputs; i++) {
+                results[i] = BartNDArray.load(outputFiles[i]);
+                results[i].setBartDims(Stream.of(BartDimsEnum.values()).limit(results[i].ndim()).toArray(BartDimsEnum[]::new));
+            }
+            invocation.endPhase(BartPhase.LOAD_OUTPUT, phaseStart);
+            successful = true;
+            return results;
         } catch (IOException e) {
             throw new BartException(e.getMessage());
         } finally {
-            cleanUp(tempFiles);
+            cleanUp(invocation, tempFiles);
+            invocation.finish(successful);
         }
     }
 
-    protected static void copyExeFromJarResources() {
-        exePath = new File(System.getenv("TMP") + File.separator + BART_EXE);
-        if (exePath.exists())
-            return;
-        exePath.deleteOnExit();
+    /**
+     * Creates a typed builder of the fft command (see {@link BartCommand}).
+     * 
+     * <ul><li><b>Example:</b></li></ul>
+     * 
+     * <blockquote><pre>{@code 
+BartNDArray kspace = Bart.fft(3).unitary().input(image).run();
+     * }</pre></blockquote>
+     * 
+     * @param bitmask the dimensions to be transformed
+     * @return builder of the command
+     */
+    public static BartCommand.Fft fft(long bitmask) {
+        return new BartCommand.Fft(bitmask);
+    }
+
+    /**
+     * Creates a typed builder of the fmac command (see {@link BartCommand}).
+     * 
+     * @return builder of the command
+     */
+    public static BartCommand.Fmac fmac() {
+        return new BartCommand.Fmac();
+    }
+
+    /**
+     * Creates a typed builder of the pics command (see {@link BartCommand}).
+     * 
+     * <ul><li><b>Example:</b></li></ul>
+     * 
+     * <blockquote><pre>{@code 
+BartNDArray image = Bart.pics().l1Wavelet().lambda(0.01f).iter(50).kspace(kspace).sens(sensitivities).run();
+     * }</pre></blockquote>
+     * 
+     * @return builder of the command
+     */
+    public static BartCommand.Pics pics() {
+        return new BartCommand.Pics();
+    }
+
+    /**
+     * Creates a typed builder of the ecalib command (see {@link BartCommand}).
+     * 
+     * @return builder of the command
+     */
+    public static BartCommand.Ecalib ecalib() {
+        return new BartCommand.Ecalib();
+    }
+
+    /**
+     * Creates a typed builder of the nufft command (see {@link BartCommand}).
+     * 
+     * @return builder of the command
+     */
+    public static BartCommand.Nufft nufft() {
+        return new BartCommand.Nufft();
+    }
+
+    /**
+     * Runs the commands of the spec once (or as many times as set in the spec) to reduce the latency of
+     * the first requests served: the BART executable is resolved (and extracted if needed), and its pages,
+     * the shared libraries, and the code paths of the driver are loaded. If a cache directory is set, FFTW
+     * wisdom for the given shapes is also saved there for later runs (see {@link #setCacheDirectory(File)}).
+     * 
+     * <ul><li><b>Example:</b></li></ul>
+     * 
+     * <blockquote><pre>{@code 
+Bart.setCacheDirectory(new File("/var/cache/bart"));
+Bart.warmUp(new BartWarmUpSpec()
+    .add("fft", "-u", 7, BartWarmUpSpec.input(256, 256, 1, 8))
+    .add("pics", "-l1", "-r0.01", BartWarmUpSpec.input(256, 256, 1, 8), BartWarmUpSpec.input(256, 256, 1, 8)));
+     * }</pre></blockquote>
+     * 
+     * @param spec the commands and input shapes to run
+     * @throws BartException when running any of the commands fails
+     */
+    public static void warmUp(BartWarmUpSpec spec) throws BartException {
+        long start = System.nanoTime();
+        spec.runOn(BartExecutor.LOCAL);
+        LOGGER.log(Level.INFO, "BART was warmed up in {0} ms.", (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * Sets the directory where BART persists data that is expensive to compute and can be reused by later
+     * invocations: FFTW wisdom (if BART was built with {@code FFTW_WISDOM=1}) and the noise singular values
+     * estimated by ecalib. It is passed to BART as the {@code TOOLBOX_PATH} environment variable. It can also
+     * be set by the {@value #CACHE_DIRECTORY_PROPERTY} system property. The subdirectories BART writes to are
+     * created here, or when the property is first used.
+     * 
+     * @param directory the cache directory, or null to use none
+     * @throws IOException when the subdirectories cannot be created
+     */
+    public static void setCacheDirectory(File directory) throws IOException {
+        if (directory != null)
+            createCacheSubdirectories(directory);
+        cacheDirectory = directory;
+    }
+
+    /**
+     * Returns the directory where BART persists reusable data (see {@link #setCacheDirectory(File)}).
+     * 
+     * @return the cache directory, or null if none is set
+     */
+    public static File getCacheDirectory() {
+        if (cacheDirectory != null)
+            return cacheDirectory;
+        String property = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+        return property != null ? new File(property) : null;
+    }
+
+    /**
+     * Returns the cache directory, creating the subdirectories of the one given by the system property
+     * when the property is used for the first time (or after it was changed).
+     */
+    private static File resolveCacheDirectory() throws IOException {
+        File directory = cacheDirectory;
+        if (directory != null)
+            return directory;
+        String property = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+        if (property == null)
+            return null;
+        if (!property.equals(preparedCacheProperty)) {
+            createCacheSubdirectories(new File(property));
+            preparedCacheProperty = property;
+        }
+        return new File(property);
+    }
+
+    private static void createCacheSubdirectories(File directory) throws IOException {
+        // BART doesn't create the subdirectories itself
+        Files.createDirectories(directory.toPath().resolve("save").resolve("fftw"));
+        Files.createDirectories(directory.toPath().resolve("save").resolve("nsv"));
+    }
+
+    /**
+     * Sets the metrics implementation that receives the timers and counters of all BART invocations.
+     * 
+     * @param metrics the metrics implementation, or null to disable metrics
+     */
+    public static void setMetrics(BartMetrics metrics) {
+        Bart.metrics = metrics != null ? metrics : BartMetrics.NO_OP;
+    }
+
+    /**
+     * Returns the metrics implementation that receives the timers and counters of all BART invocations.
+     * 
+     * @return the metrics implementation in use
+     */
+    public static BartMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the path of the BART executable. The {@value #EXE_PATH_PROPERTY} system property is checked
+     * on every call; otherwise the executable is looked up on the class path, or extracted from the jar,
+     * on first use, and the result is cached.
+     */
+    static File getExePath() throws IOException {
+        String property = System.getProperty(EXE_PATH_PROPERTY);
+        if (property != null)
+            return new File(property);
+        File path = exePath;
+        if (path == null) {
+            synchronized (Bart.class) {
+                if (exePath == null) {
+                    File found = searchExeInClassPath();
+                    exePath = found != null ? found : extractExeFromJarResources();
+                }
+                path = exePath;
+            }
+        }
+        return path;
+    }
+
+    private static File extractExeFromJarResources() throws IOException {
+        return extractExe(Bart::openExeResource, new File(System.getProperty(TMPDIR)));
+    }
+
+    /**
+     * Extracts the executable to a folder in the given directory named after the hash of its content,
+     * so an executable extracted earlier (even by another JVM) is reused, while a different version is
+     * extracted to another folder. An existing file is reused only if its content has the same digest, and
+     * only from a folder that is owned by the current user and not writable by others; otherwise it is
+     * extracted to a new private folder. The file is moved to its final place atomically, after it was written
+     * completely and made executable.
+     */
+    static File extractExe(ExeResource resource, File tempDirectory) throws IOException {
+        byte[] digest;
+        try (InputStream stream = resource.open()) {
+            digest = digestOf(stream);
+        }
+        StringBuilder hash = new StringBuilder();
+        for (byte b : Arrays.copyOf(digest, 8))
+            hash.append(String.format("%02x", b));
+        Path directory = tempDirectory.toPath().resolve("bartwrapper-" + hash);
+        Files.createDirectories(directory, privatePermissions(tempDirectory.toPath()));
+        if (!isPrivate(directory)) {
+            LOGGER.log(Level.WARNING, "{0} is not private to the current user, so it is not used.", directory);
+            directory = Files.createTempDirectory(tempDirectory.toPath(), "bartwrapper-" + hash + "-");
+        }
+        File target = directory.resolve(BART_EXE).toFile();
+        if (isExtracted(target, digest))
+            return target;
+        Path temp = Files.createTempFile(directory, BART_EXE, ".tmp");
         try {
-            Files.copy(Bart.class.getResourceAsStream("/bart.exe"),
-            exePath.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            LOGGER.log(Level.INFO, "BART executable was copied to the temp folder.");
+            try (InputStream stream = resource.open()) {
+                Files.copy(stream, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (!temp.toFile().setExecutable(true))
+                throw new IOException(String.format(BartErrors.CANNOT_MAKE_EXECUTABLE, temp));
+            Files.move(temp, target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.log(Level.INFO, "BART executable was extracted to {0}.", target);
         } catch (IOException e) {
-            throw new ExceptionInInitializerError(e.getMessage());
+            // Another process may have extracted the same executable in the meantime
+            if (!isExtracted(target, digest))
+                throw e;
+        } finally {
+            Files.deleteIfExists(temp);
         }
+        return target;
     }
 
-    protected static boolean searchExeInClassPath() {
-        return Stream.of(System.getProperty("java.class.path").split(";"))
-            .anyMatch(path -> {
-                File file = new File(path);
-                if (file.isDirectory()) {
-                    File[] containedFiles = file.listFiles((dir, name) -> name.equals(BART_EXE));
-                    if (containedFiles.length > 0) {
-                        exePath = containedFiles[0];
-                        return true;
-                    }
-                } else if (file.getName().equals(BART_EXE)) {
-                    exePath = file;
-                    return true;
-                }
-                return false;
-            });
+    /**
+     * Source of the executable to extract.
+     */
+    interface ExeResource {
+        InputStream open() throws IOException;
+    }
+
+    private static boolean isExtracted(File target, byte[] digest) throws IOException {
+        if (!target.isFile() || !target.canExecute())
+            return false;
+        try (InputStream stream = Files.newInputStream(target.toPath())) {
+            return MessageDigest.isEqual(digest, digestOf(stream));
+        }
+    }
+
+    private static byte[] digestOf(InputStream stream) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[1 << 16];
+        for (int read = stream.read(buffer); read >= 0; read = stream.read(buffer))
+            digest.update(buffer, 0, read);
+        return digest.digest();
+    }
+
+    private static FileAttribute<?>[] privatePermissions(Path directory) throws IOException {
+        if (!Files.getFileStore(directory).supportsFileAttributeView(PosixFileAttributeView.class))
+            return new FileAttribute<?>[0];
+        return new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")) };
+    }
+
+    /**
+     * Tells whether the directory is owned by the current user and cannot be written by other users.
+     * Permissions are checked only on file systems with POSIX permissions.
+     */
+    private static boolean isPrivate(Path directory) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(directory, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+        if (view == null)
+            return true;
+        PosixFileAttributes attributes = view.readAttributes();
+        if (!attributes.isDirectory())
+            return false;
+        UserPrincipal user = directory.getFileSystem().getUserPrincipalLookupService()
+            .lookupPrincipalByName(System.getProperty("user.name"));
+        Set<PosixFilePermission> permissions = attributes.permissions();
+        return attributes.owner().equals(user)
+            && !permissions.contains(PosixFilePermission.GROUP_WRITE)
+            && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+    }
+
+    private static InputStream openExeResource() throws IOException {
+        InputStream resource = Bart.class.getResourceAsStream("/" + BART_EXE);
+        if (resource == null)
+            throw new IOException(BartErrors.BART_EXECUTABLE_NOT_FOUND);
+        return resource;
+    }
+
+    private static File searchExeInClassPath() {
+        return searchExeInClassPath(System.getProperty("java.class.path"));
     }
 
-    protected static String[] convertInputs(List<File> tempFiles, Object... args) throws IOException {
+    static File searchExeInClassPath(String classPath) {
+        for (String path : classPath.split(File.pathSeparator)) {
+            File file = new File(path);
+            if (file.isDirectory()) {
+                File candidate = new File(file, BART_EXE);
+                if (candidate.isFile())
+                    return candidate;
+            } else if (file.getName().equals(BART_EXE) && file.isFile()) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    protected static String[] convertInputs(List<File> tempFiles, Object... args) throws IOException, BartException {
         String[] strArgs = new String[args.length + 1];
-        strArgs[0] = exePath.getAbsolutePath();
+        strArgs[0] = getExePath().getAbsolutePath();
         for (int i = 0; i < args.length; i++) {
             if (args[i] instanceof String)
                 strArgs[i + 1] = (String) args[i];
@@ -233,6 +689,8 @@ System.out.println(str.toString());
                 strArgs[i + 1] = ((Integer) args[i]).toString();
             else if (args[i] instanceof File)
                 strArgs[i + 1] = ((File) args[i]).toString();
+            else if (args[i] instanceof BartStoredArray)
+                strArgs[i + 1] = resolve((BartStoredArray) args[i]).getAbsolutePath();
             else if (args[i] instanceof NDArray) {
                 File file = BartNDArray.saveToTemp((NDArray<?>) args[i]);
                 strArgs[i + 1] = file.getName();
@@ -244,6 +702,61 @@ System.out.println(str.toString());
         return strArgs;
     }
 
+    private static File resolve(BartStoredArray array) throws BartException {
+        try {
+            return array.resolve();
+        } catch (IllegalArgumentException e) {
+            // the array was evicted from the store
+            throw new BartException(e.getMessage());
+        }
+    }
+
+    private static Process startProcess(BartOptions options, String[] command) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder()
+            .command(options.hasResourceLimits() ? withResourceLimits(options, command) : command)
+            .directory(new File(System.getProperty(TMPDIR)));
+        File cache = resolveCacheDirectory();
+        if (cache != null)
+            builder.environment().put(TOOLBOX_PATH, cache.getAbsolutePath());
+        builder.environment().putAll(options.getEnvironment());
+        return builder.start();
+    }
+
+    private static String[] withResourceLimits(BartOptions options, String[] command) {
+        List<String> limited = new ArrayList<>();
+        limited.add(findPrlimit());
+        if (options.getMaxMemory() > 0)
+            limited.add("--as=" + options.getMaxMemory());
+        if (options.getMaxCpuTime() != null) {
+            Duration cpuTime = options.getMaxCpuTime();
+            limited.add("--cpu=" + (cpuTime.getSeconds() + (cpuTime.getNano() > 0 ? 1 : 0)));
+        }
+        limited.add("--");
+        limited.addAll(Arrays.asList(command));
+        return limited.toArray(new String[0]);
+    }
+
+    private static String findPrlimit() {
+        String path = System.getenv("PATH");
+        if (path != null)
+            for (String directory : path.split(File.pathSeparator)) {
+                File file = new File(directory, PRLIMIT);
+                if (file.canExecute())
+                    return file.getAbsolutePath();
+            }
+        throw new UnsupportedOperationException(BartErrors.RESOURCE_LIMITS_UNSUPPORTED);
+    }
+
+    private static long sizeOf(List<File> files) {
+        return files.stream().mapToLong(File::length).sum();
+    }
+
+    private static void cleanUp(BartInvocation invocation, List<File> tempFiles) {
+        long start = System.nanoTime();
+        cleanUp(tempFiles);
+        invocation.endPhase(BartPhase.CLEAN_UP, start);
+    }
+
     private static void cleanUp(List<File> tempFiles) {
         for (File file : tempFiles) {
             try {
@@ -254,36 +767,125 @@ System.out.println(str.toString());
         }
     }
 
-    private static String handleProcessOutput(Process process, Consumer<String> outputConsumer, boolean captureOutput) throws IOException, BartException {
-        StringBuilder output = new StringBuilder();
-        try (
-            BufferedReader standard =
-                new BufferedReader(new InputStreamReader(process.getInputStream()));        
-            BufferedReader error = 
-                new BufferedReader(new InputStreamReader(process.getErrorStream()))
-        ) {
-            String line = null;
-            while ((line = standard.readLine()) != null) {  
-                line = processString(line);
+    private static String handleProcessOutput(Process process, String command, BartOptions options, boolean captureOutput) throws IOException, BartException {
+        Consumer<String> outputConsumer = options.getOutputConsumer();
+        StringBuffer output = new StringBuffer();
+        BartLineBuffer errors = new BartLineBuffer(MAX_ERROR_LINES);
+        Future<?> standardDrainer = null;
+        Future<?> errorDrainer = null;
+        try {
+            Duration timeout = options.getTimeout() != null ? options.getTimeout() : getTimeout();
+            standardDrainer = drainAsync(process.getInputStream(), line -> {
                 if (captureOutput)
                     output.append(System.lineSeparator()).append(line);
                 else if (outputConsumer != null)
                     outputConsumer.accept(line.trim());
                 else
                     System.out.println(line); // NOSONAR
+            });
+            errorDrainer = drainAsync(process.getErrorStream(), errors::add);
+            waitFor(process, command, timeout, options.getGracePeriod());
+            awaitDrainer(standardDrainer);
+            awaitDrainer(errorDrainer);
+        } finally {
+            if (process.isAlive())
+                process.destroyForcibly();
+            closeIfRunning(standardDrainer, process.getInputStream());
+            closeIfRunning(errorDrainer, process.getErrorStream());
+        }
+        if (process.exitValue() != 0) {
+            String errorMessage = errors.toString();
+            LOGGER.severe(errorMessage);
+            throw new BartException(String.format(BartErrors.BART_UNSUCCESSFUL, errorMessage.trim()));
+        }
+        return output.toString();
+    }
+
+    private static Future<?> drainAsync(InputStream stream, Consumer<String> lineConsumer) {
+        return STREAM_DRAINERS.submit(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
+                String line = null;
+                while ((line = reader.readLine()) != null)
+                    lineConsumer.accept(processString(line));
             }
-            if (process.exitValue() != 0) {
-                List<String> errors = error.lines()
-                    .map(Bart::processString)
-                    .collect(Collectors.toList());
-                LOGGER.severe(() -> String.join(System.lineSeparator(), errors));
-                String errorMessage = String.join(System.lineSeparator(), errors.stream()
-                        //.filter(str -> str.startsWith("ERROR"))
-                        .toArray(CharSequence[]::new));
-                throw new BartException(String.format(BartErrors.BART_UNSUCCESSFUL, errorMessage.trim()));
+            return null;
+        });
+    }
+
+    private static void waitFor(Process process, String command, Duration timeout, Duration gracePeriod) throws BartException {
+        try {
+            if (timeout == null)
+                process.waitFor();
+            else if (!process.waitFor(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                terminate(process, gracePeriod);
+                throw new BartException(String.format(BartErrors.BART_TIMEOUT, command, timeout));
             }
+        } catch (InterruptedException e) {
+            terminate(process, gracePeriod);
+            Thread.currentThread().interrupt();
+            throw new BartException(String.format(BartErrors.BART_INTERRUPTED, command));
         }
-        return output.toString();
+    }
+
+    /**
+     * Asks the process to terminate, and kills it if it is still running after the grace period.
+     */
+    private static void terminate(Process process, Duration gracePeriod) {
+        process.destroy();
+        try {
+            if (!process.waitFor(gracePeriod.toNanos(), TimeUnit.NANOSECONDS))
+                process.destroyForcibly().waitFor(gracePeriod.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until the stream is drained. The process has already exited at this point, so the stream is
+     * normally closed soon; it can stay open only if BART started a child process that inherited it.
+     */
+    private static void awaitDrainer(Future<?> drainer) throws IOException, BartException {
+        try {
+            drainer.get(STREAM_CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warning("The output stream of BART was not closed after the process exited.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BartException(e.getMessage());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new BartException(e.getCause().getMessage());
+        }
+    }
+
+    private static void closeIfRunning(Future<?> drainer, InputStream stream) {
+        if (drainer == null || drainer.isDone())
+            return;
+        try {
+            stream.close();
+        } catch (IOException e) {
+            LOGGER.warning("Could not close the output stream of BART.");
+        }
+    }
+
+    static Duration getTimeout() {
+        String value = System.getProperty(TIMEOUT_PROPERTY);
+        if (value == null)
+            return null;
+        try {
+            Duration timeout = Duration.parse(value);
+            if (!timeout.isNegative() && !timeout.isZero())
+                return timeout;
+        } catch (DateTimeParseException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(String.format(BartErrors.INVALID_TIMEOUT, value));
     }
 
     private static String processString(String str) {
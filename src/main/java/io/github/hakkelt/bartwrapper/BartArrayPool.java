@@ -0,0 +1,149 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in pool that recycles the backing float arrays of BartComplexFloatNDArray instances.
+ *
+ * <p>Buffers are grouped by their length, i.e. by the number of entries of the arrays they belonged to,
+ * in lock-free queues shared by all threads. The total size of pooled buffers is limited by the budget
+ * given to {@link #enable(long)}.</p>
+ *
+ * <p>Buffers are returned to the pool only by an explicit call to {@link BartNDArray#release()}
+ * (or by closing the array in a try-with-resources statement), and they are handed out again
+ * when a new array of the same length is created, loaded, or copied.</p>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartArrayPool.enable(512L * 1024 * 1024);
+for (BartNDArray kspace : frames) {
+    try (BartNDArray image = Bart.run("fft", "-i", 7, kspace)) {
+        process(image);
+    }
+}
+ * }</pre></blockquote>
+ */
+public class BartArrayPool {
+
+    private static volatile boolean enabled = false;
+    private static volatile long maxPooledBytes = 0;
+    /** Total size of the buffers in the queues; each buffer is counted when it is queued and when it is taken */
+    private static final AtomicLong pooledBytes = new AtomicLong();
+    private static final Map<Integer, ConcurrentLinkedDeque<float[]>> pool = new ConcurrentHashMap<>();
+
+    private BartArrayPool() {}
+
+    /**
+     * Enables pooling of backing arrays.
+     *
+     * @param maxPooledBytes upper limit for the total size of buffers kept in the pool
+     */
+    public static void enable(long maxPooledBytes) {
+        if (maxPooledBytes < 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NEGATIVE_POOL_SIZE, maxPooledBytes));
+        BartArrayPool.maxPooledBytes = maxPooledBytes;
+        enabled = true;
+    }
+
+    /**
+     * Disables pooling and drops all pooled buffers.
+     */
+    public static void disable() {
+        enabled = false;
+        clear();
+    }
+
+    /**
+     * Checks whether pooling of backing arrays is enabled.
+     *
+     * @return true if the pool is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Drops all pooled buffers, including the ones released by other threads.
+     */
+    public static void clear() {
+        for (ConcurrentLinkedDeque<float[]> queue : pool.values())
+            for (float[] buffer = queue.pollFirst(); buffer != null; buffer = queue.pollFirst())
+                pooledBytes.addAndGet(-sizeInBytes(buffer));
+    }
+
+    /**
+     * Returns the total size of the buffers currently kept in the pool.
+     *
+     * @return total size of pooled buffers in bytes
+     */
+    public static long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    static float[] acquire(int length, boolean zeroed) {
+        if (!enabled)
+            return new float[length];
+        ConcurrentLinkedDeque<float[]> queue = pool.get(length);
+        float[] buffer = queue == null ? null : queue.pollFirst();
+        if (buffer == null)
+            return new float[length];
+        pooledBytes.addAndGet(-sizeInBytes(buffer));
+        if (zeroed)
+            Arrays.fill(buffer, 0);
+        return buffer;
+    }
+
+    static void release(float[] buffer) {
+        if (!enabled || buffer.length == 0)
+            return;
+        long size = sizeInBytes(buffer);
+        if (pooledBytes.addAndGet(size) > maxPooledBytes) {
+            pooledBytes.addAndGet(-size);
+            return;
+        }
+        pool.computeIfAbsent(buffer.length, length -> new ConcurrentLinkedDeque<>()).offerFirst(buffer);
+        // the pool may have been disabled (and cleared) while the buffer was being queued
+        if (!enabled)
+            clear();
+    }
+
+    private static long sizeInBytes(float[] buffer) {
+        return (long) buffer.length * Float.BYTES;
+    }
+
+    /**
+     * Backing array shared by an array and the arrays created by reshaping it. It is returned to the pool
+     * only when the last of them is released.
+     */
+    static final class SharedBuffer {
+        final float[] data;
+        private final AtomicInteger owners = new AtomicInteger(1);
+
+        SharedBuffer(float[] data) {
+            this.data = data;
+        }
+
+        /**
+         * Registers a new owner of the buffer.
+         */
+        SharedBuffer share() {
+            owners.incrementAndGet();
+            return this;
+        }
+
+        /**
+         * Drops an owner of the buffer, and returns the buffer to the pool if it was the last one.
+         */
+        void release() {
+            if (owners.decrementAndGet() == 0)
+                BartArrayPool.release(data);
+        }
+    }
+
+}
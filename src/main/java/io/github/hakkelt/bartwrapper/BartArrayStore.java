@@ -0,0 +1,251 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.github.hakkelt.ndarrays.NDArray;
+
+/**
+ * Persistent, content-addressed store of arrays that are passed to many BART invocations unchanged,
+ * like trajectories and density compensation weights of non-Cartesian acquisitions.
+ *
+ * <p>Each array is saved once to a .ra file in the directory of the store, named after the SHA-256 hash
+ * of its content, and the returned {@link BartStoredArray} can be passed to {@link Bart#run(Object...)} and the
+ * other methods in place of the array: BART reads the file directly, so the array is not saved to a temp file
+ * again for each invocation. The output of a command that has no array arguments (e.g. {@code bart traj}) can be
+ * stored by {@link #run(Object...)}, which runs the command only if its output is not in the store yet.</p>
+ *
+ * <p>The store survives restarts of the JVM. When its size exceeds the limit, the least recently accessed
+ * files are deleted; handles of deleted files cannot be used any more, so the limit should leave room for all
+ * arrays in use. Files deleted outside of the store are forgotten when they are next looked up, and their
+ * arrays can be stored again.</p>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartArrayStore store = new BartArrayStore(new File("/var/cache/bart-arrays"), 4L << 30);
+BartStoredArray trajectory = store.run("traj", "-r", "-x", 256, "-y", 64);
+for (BartNDArray frame : frames)
+    images.add(Bart.run("pics", "-t", trajectory, frame, sensitivities));
+ * }</pre></blockquote>
+ */
+public class BartArrayStore {
+    private static final String EXTENSION = ".ra";
+    private static final String COMMAND_PREFIX = "cmd-";
+    private static final String TEMP_PREFIX = "store_";
+    private static final int HASH_BYTES = 16;
+
+    private final File directory;
+    private final long maxBytes;
+    /** Sizes of the stored files by key, in the order of last access */
+    private final Map<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+
+    /**
+     * Opens the store in the given directory, which is created if needed. Files left there by
+     * earlier sessions are kept, in the order of their last access.
+     *
+     * @param directory the directory of the store
+     * @param maxBytes the limit of the total size of the stored files
+     * @throws IOException when the directory cannot be created or listed
+     */
+    public BartArrayStore(File directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "size limit", maxBytes));
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory.toPath());
+        File[] existing = directory.listFiles((dir, name) -> name.endsWith(EXTENSION) && !name.startsWith(TEMP_PREFIX));
+        if (existing == null)
+            throw new IOException(directory + " is not a directory!");
+        Arrays.sort(existing, Comparator.comparingLong(File::lastModified));
+        for (File file : existing) {
+            files.put(file.getName().substring(0, file.getName().length() - EXTENSION.length()), file.length());
+            size += file.length();
+        }
+    }
+
+    /**
+     * Saves the array to the store, unless an array of the same content is already stored.
+     *
+     * @param array the array to be stored
+     * @return handle of the stored array
+     * @throws IOException when saving the array fails
+     */
+    public BartStoredArray put(NDArray<?> array) throws IOException {
+        File temp = File.createTempFile(TEMP_PREFIX, EXTENSION, directory);
+        try {
+            BartNDArray.save(array, temp);
+            String key = hash(temp);
+            synchronized (this) {
+                if (!contains(key))
+                    add(key, temp);
+                return access(key);
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Returns the stored output of the command, running the command and storing its output only if it
+     * is not in the store yet. The output is looked up by the command line, so the command must be
+     * deterministic and its arguments can be strings and numbers only.
+     *
+     * @param args name of BART command and its arguments
+     * @return handle of the stored output
+     * @throws BartException when running BART fails
+     */
+    public BartStoredArray run(Object... args) throws BartException {
+        StringBuilder commandLine = new StringBuilder();
+        for (Object arg : args) {
+            if (!(arg instanceof String || arg instanceof Number))
+                throw new IllegalArgumentException(
+                    String.format(BartErrors.INPUT_UNSUPPORTED_TYPE, arg, arg == null ? null : arg.getClass()));
+            commandLine.append(arg).append('\0');
+        }
+        String key = COMMAND_PREFIX + hash(commandLine.toString().getBytes(StandardCharsets.UTF_8));
+        synchronized (this) {
+            if (contains(key))
+                return access(key);
+        }
+        BartNDArray output = Bart.run(args);
+        try {
+            File temp = File.createTempFile(TEMP_PREFIX, EXTENSION, directory);
+            try {
+                BartNDArray.save(output, temp);
+                synchronized (this) {
+                    if (!contains(key))
+                        add(key, temp);
+                    return access(key);
+                }
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+        } catch (IOException e) {
+            throw new BartException(e.getMessage());
+        } finally {
+            output.release();
+        }
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized int getCount() {
+        return files.size();
+    }
+
+    /**
+     * Returns the file of the stored array, and marks it as recently accessed.
+     */
+    synchronized File resolve(BartStoredArray array) {
+        if (!contains(array.getKey()))
+            throw new IllegalArgumentException(String.format(BartErrors.STORED_ARRAY_EVICTED, array.getKey()));
+        return access(array.getKey()).getFile();
+    }
+
+    File fileOf(String key) {
+        return new File(directory, key + EXTENSION);
+    }
+
+    private void add(String key, File temp) throws IOException {
+        long length = temp.length();
+        Files.move(temp.toPath(), fileOf(key).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        files.put(key, length);
+        size += length;
+        evict(key);
+    }
+
+    private BartStoredArray access(String key) {
+        files.get(key);
+        fileOf(key).setLastModified(System.currentTimeMillis());
+        return new BartStoredArray(this, key);
+    }
+
+    /**
+     * Checks whether the array is in the store. If its file was deleted outside of the store (e.g. by a temp
+     * cleaner), the entry is dropped, so that the array can be stored again.
+     */
+    private boolean contains(String key) {
+        Long length = files.get(key);
+        if (length == null)
+            return false;
+        if (fileOf(key).isFile())
+            return true;
+        files.remove(key);
+        size -= length;
+        return false;
+    }
+
+    /**
+     * Deletes the least recently accessed files (except the given one) until the size is within the limit.
+     */
+    private void evict(String keep) throws IOException {
+        Iterator<Map.Entry<String, Long>> iterator = files.entrySet().iterator();
+        while (size > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (entry.getKey().equals(keep))
+                continue;
+            Files.deleteIfExists(fileOf(entry.getKey()).toPath());
+            size -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Hashes the content of the file through a memory mapping, so it isn't copied to the heap.
+     */
+    private static String hash(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MessageDigest digest = newDigest();
+            long position = 0;
+            long length = channel.size();
+            while (position < length) {
+                long count = Math.min(Integer.MAX_VALUE, length - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, count);
+                digest.update(buffer);
+                position += count;
+            }
+            return toHex(digest.digest());
+        }
+    }
+
+    private static String hash(byte[] bytes) {
+        return toHex(newDigest().digest(bytes));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < HASH_BYTES; i++)
+            hex.append(String.format("%02x", digest[i]));
+        return hex.toString();
+    }
+
+}
@@ -0,0 +1,239 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.github.hakkelt.ndarrays.NDArray;
+
+/**
+ * Runs a BART command independently for each position along some BART dimensions (e.g. for each slice
+ * of a multi-slice acquisition).
+ *
+ * <p>The array arguments are split along the dimensions, the command is run for each piece in parallel, and
+ * the outputs are joined. Arrays whose size along a dimension is 1 (e.g. coil sensitivities shared by all slices)
+ * are passed to each piece unchanged.</p>
+ *
+ * <p>{@code pics} has a batch mode ({@code -L <flags>}) that processes all positions in a single invocation,
+ * but it uses the sensitivities and the weights of the first position for all positions, and a single data
+ * scaling estimated from all positions. So the batch mode is used only when it gives the same result as the
+ * split: when all array arguments other than the k-space are NDArrays of size 1 along the dimensions, the scaling is fixed
+ * by {@code -w}, none of the options it doesn't support ({@code -t}, {@code -W}, {@code -T}, {@code -M}) is
+ * given, and the dimensions don't include {@link BartDimsEnum#_03_COIL}.</p>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartBatch batch = new BartBatch(BartDimsEnum._13_SLICE);
+// single invocation with -L8192 if the sensitivities have a single slice, one invocation per slice otherwise
+BartNDArray images = batch.run("pics", "-l2", "-r0.01", "-w", 1, kspace, sensitivities);
+BartNDArray coilImages = batch.run("fft", "-i", 7, kspace); // one invocation per slice, in parallel
+ * }</pre></blockquote>
+ */
+public class BartBatch {
+    /** Options of the commands that set the loop flags of their batch mode */
+    private static final Map<String, String> LOOP_FLAG_OPTIONS = Map.of("pics", "-L");
+    /** Options of pics that take a value, so the rest of an option cluster is not an option */
+    private static final String PICS_OPTIONS_WITH_VALUE = "lrRsitGpbTWdOouCqfwLBP";
+    /** Options of pics that its batch mode doesn't support */
+    private static final String PICS_OPTIONS_WITHOUT_BATCH_MODE = "tWTM";
+    /** Options of pics whose value is an array */
+    private static final String PICS_ARRAY_OPTIONS = "pB";
+    private static final String PICS_SCALING_OPTION = "w";
+
+    private final BartDimsEnum[] dims;
+    private BartExecutor executor = BartExecutor.LOCAL;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Creates a batch that loops over the given BART dimensions.
+     *
+     * @param dims the dimensions to loop over
+     */
+    public BartBatch(BartDimsEnum... dims) {
+        this.dims = Arrays.stream(dims).distinct().toArray(BartDimsEnum[]::new);
+    }
+
+    /**
+     * Sets the executor that runs the invocations. The default is {@link BartExecutor#LOCAL}.
+     *
+     * @param executor the executor
+     * @return this batch
+     */
+    public BartBatch executor(BartExecutor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the maximal number of pieces run at the same time when the command has no batch mode.
+     * The default is the number of available processors.
+     *
+     * @param parallelism the maximal number of concurrent invocations
+     * @return this batch
+     */
+    public BartBatch parallelism(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "parallelism", parallelism));
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Returns the loop flags passed to commands with batch mode.
+     *
+     * @return bitmask of the dimensions to loop over
+     */
+    public long getLoopFlags() {
+        return BartDimsEnum.bitmask(dims);
+    }
+
+    /**
+     * Tells whether the command can loop over dimensions given by flags by itself. Whether the batch mode is
+     * used for an invocation also depends on its arguments.
+     *
+     * @param command name of BART command
+     * @return true if the command has a batch mode
+     */
+    public static boolean supportsLoopFlags(String command) {
+        return LOOP_FLAG_OPTIONS.containsKey(command);
+    }
+
+    /**
+     * Runs the command for each position along the dimensions of the batch, and returns the joined output.
+     *
+     * @param args name of BART command and its arguments
+     * @return NDArray that holds the output of the BART command for all positions
+     * @throws BartException when running BART fails for any position
+     */
+    public BartNDArray run(Object... args) throws BartException {
+        return run(new BartOptions(), args);
+    }
+
+    /**
+     * Runs the command for each position along the dimensions of the batch with the given per-call options,
+     * and returns the joined output.
+     *
+     * @param options timeout and resource limits of each invocation
+     * @param args name of BART command and its arguments
+     * @return NDArray that holds the output of the BART command for all positions
+     * @throws BartException when running BART fails for any position
+     */
+    public BartNDArray run(BartOptions options, Object... args) throws BartException {
+        if (dims.length == 0)
+            return executor.run(options, args);
+        String loopFlagOption = LOOP_FLAG_OPTIONS.get(String.valueOf(args[0]));
+        if (loopFlagOption != null && canUseLoopFlags(args)) {
+            Object[] batchArgs = new Object[args.length + 1];
+            batchArgs[0] = args[0];
+            batchArgs[1] = loopFlagOption + getLoopFlags();
+            System.arraycopy(args, 1, batchArgs, 2, args.length - 1);
+            return executor.run(options, batchArgs);
+        }
+        Piece root = new Piece(args, 0);
+        List<Piece> leaves = new ArrayList<>();
+        root.collectLeaves(leaves);
+        if (leaves.size() == 1)
+            return executor.run(options, args);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, leaves.size()), runnable -> {
+            Thread thread = new Thread(runnable, "bart-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<BartNDArray>> futures = new ArrayList<>(leaves.size());
+            for (Piece leaf : leaves)
+                futures.add(pool.submit(() -> executor.run(options, leaf.args)));
+            return root.join(BartDistributedExecutor.await(futures, args[0]).iterator());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Tells whether the batch mode of pics gives the same result as running it for each position.
+     */
+    private boolean canUseLoopFlags(Object[] args) {
+        if (Arrays.asList(dims).contains(BartDimsEnum._03_COIL) || !(args[args.length - 1] instanceof NDArray))
+            return false;
+        boolean fixedScaling = false;
+        // the positional arguments of pics are the k-space and the sensitivities
+        int kspace = args.length - 2;
+        for (int i = 1; i < args.length; i++) {
+            if (i == kspace)
+                continue;
+            if (args[i] instanceof String) {
+                String arg = (String) args[i];
+                if (hasOption(arg, PICS_OPTIONS_WITHOUT_BATCH_MODE))
+                    return false;
+                // the sizes of arrays given as file names are unknown
+                if (hasOption(arg, PICS_ARRAY_OPTIONS)
+                        && (PICS_ARRAY_OPTIONS.indexOf(arg.charAt(arg.length() - 1)) < 0 || !(args[i + 1] instanceof NDArray)))
+                    return false;
+                fixedScaling |= hasOption(arg, PICS_SCALING_OPTION);
+            } else if (args[i] instanceof File || args[i] instanceof BartStoredArray) {
+                return false;
+            } else if (args[i] instanceof NDArray) {
+                for (BartDimsEnum dim : dims)
+                    if (BartSplitter.sizeAlong((NDArray<?>) args[i], dim) != 1)
+                        return false;
+            }
+        }
+        return fixedScaling;
+    }
+
+    /**
+     * Tells whether the argument is a cluster of short options of pics that contains any of the given ones.
+     */
+    private static boolean hasOption(String arg, String options) {
+        if (arg.length() < 2 || arg.charAt(0) != '-' || !Character.isLetter(arg.charAt(1)))
+            return false;
+        for (int i = 1; i < arg.length(); i++) {
+            if (options.indexOf(arg.charAt(i)) >= 0)
+                return true;
+            if (PICS_OPTIONS_WITH_VALUE.indexOf(arg.charAt(i)) >= 0)
+                return false;
+        }
+        return false;
+    }
+
+    /**
+     * Arguments split along the dimensions of the batch from the given one onwards.
+     */
+    private class Piece {
+        final Object[] args;
+        final int dim;
+        final List<Piece> children = new ArrayList<>();
+
+        Piece(Object[] args, int dim) {
+            this.args = args;
+            this.dim = dim;
+            if (dim < dims.length)
+                for (Object[] part : BartSplitter.split(dims[dim], args))
+                    children.add(new Piece(part, dim + 1));
+        }
+
+        void collectLeaves(List<Piece> leaves) {
+            if (children.isEmpty())
+                leaves.add(this);
+            for (Piece child : children)
+                child.collectLeaves(leaves);
+        }
+
+        BartNDArray join(Iterator<BartNDArray> results) {
+            if (children.isEmpty())
+                return results.next();
+            List<BartNDArray> parts = new ArrayList<>(children.size());
+            for (Piece child : children)
+                parts.add(child.join(results));
+            return BartSplitter.join(dims[dim], parts);
+        }
+    }
+
+}
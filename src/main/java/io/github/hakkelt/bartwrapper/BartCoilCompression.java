@@ -0,0 +1,319 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import io.github.hakkelt.ndarrays.NDArray;
+
+/**
+ * Coil compression of multi-channel k-space ({@link BartDimsEnum#_03_COIL}) before heavy commands like
+ * {@code pics} and {@code ecalib}, to a given number of virtual coils, or to as many virtual coils as needed to
+ * keep a given fraction of the signal energy.
+ *
+ * <p>The compression matrix is computed by {@code bart cc} once per series, and cached until the series is
+ * invalidated or its number of channels changes. With the default SVD compression, the cached matrix is applied
+ * to the following frames in the JVM, so only the compressed data is passed to the downstream command; geometric
+ * and ESPIRiT compression depend on the readout position, so they are applied by {@code bart ccapply}.</p>
+ *
+ * <p>The sensitivities should be computed from compressed data (e.g. by {@link BartSensitivityCache}), so that
+ * their channels match the virtual coils.</p>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartCoilCompression compression = BartCoilCompression.toEnergy(0.95);
+BartNDArray compressed = compression.compress("subject-17/series-3", kspace);
+BartNDArray image = Bart.run("pics", "-l1", "-r0.01", compressed, Bart.run("ecalib", "-m1", compressed));
+ * }</pre></blockquote>
+ */
+public class BartCoilCompression {
+    private static final String ENERGY_PREFIX = "Energy:";
+    private static final int COIL_DIM = BartDimsEnum._03_COIL.ordinal();
+    private static final String DEBUG_LEVEL = "DEBUG_LEVEL";
+    // cc reports the energy of the virtual coils at the DP_DEBUG1 level
+    private static final String ENERGY_DEBUG_LEVEL = "3";
+
+    /**
+     * Compression methods of {@code bart cc}.
+     */
+    public enum Type {
+        /** Single compression matrix computed by SVD */
+        SVD("-S"),
+        /** Geometric compression: a compression matrix for each readout position */
+        GEOMETRIC("-G"),
+        /** ESPIRiT-based compression */
+        ESPIRIT("-E");
+
+        private final String option;
+
+        Type(String option) {
+            this.option = option;
+        }
+    }
+
+    private final int virtualCoils;
+    private final double energy;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile Type type = Type.SVD;
+    private volatile BartExecutor executor = BartExecutor.LOCAL;
+
+    private BartCoilCompression(int virtualCoils, double energy) {
+        this.virtualCoils = virtualCoils;
+        this.energy = energy;
+    }
+
+    /**
+     * Creates a compression to the given number of virtual coils. Data with fewer channels is not compressed.
+     *
+     * @param virtualCoils the number of virtual coils
+     * @return a new compression
+     */
+    public static BartCoilCompression toCoils(int virtualCoils) {
+        if (virtualCoils <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "number of virtual coils", virtualCoils));
+        return new BartCoilCompression(virtualCoils, Double.NaN);
+    }
+
+    /**
+     * Creates a compression to the smallest number of virtual coils that keep the given fraction of the energy
+     * of the calibration data.
+     *
+     * @param energy the fraction of the energy to keep, greater than 0 and at most 1
+     * @return a new compression
+     */
+    public static BartCoilCompression toEnergy(double energy) {
+        if (!(energy > 0 && energy <= 1))
+            throw new IllegalArgumentException(String.format(BartErrors.INVALID_ENERGY_FRACTION, energy));
+        return new BartCoilCompression(0, energy);
+    }
+
+    /**
+     * Sets the compression method. The default is {@link Type#SVD}.
+     *
+     * @param type the compression method
+     * @return this compression
+     */
+    public BartCoilCompression type(Type type) {
+        checkType(type);
+        this.type = type;
+        return this;
+    }
+
+    /**
+     * Sets the executor that runs cc and ccapply. The default is {@link BartExecutor#LOCAL}. The energy of the
+     * virtual coils is read from the debug output of cc (enabled by the {@code DEBUG_LEVEL} environment variable),
+     * so compression to an energy fraction needs an executor that applies the environment and passes the output
+     * of BART to the output consumer of {@link BartOptions}, like the local and the remote ones.
+     *
+     * @param executor the executor
+     * @return this compression
+     */
+    public BartCoilCompression executor(BartExecutor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Compresses the k-space of a frame of the series, computing the compression matrix from it if there is no
+     * matrix for the series yet. Concurrent calls with the same series wait for each other, calls with different
+     * series run in parallel.
+     *
+     * @param series identifies the series
+     * @param kspace the multi-channel k-space
+     * @return the k-space of the virtual coils, or the given k-space itself if it has no more channels
+     *         than the number of virtual coils
+     * @throws BartException when running cc or ccapply fails, or cc did not report the energy of the virtual coils
+     *         when compressing to an energy fraction
+     */
+    public BartNDArray compress(String series, NDArray<?> kspace) throws BartException {
+        Matrix matrix = matrixOf(series, kspace);
+        if (matrix.virtualCoils == matrix.channels)
+            return kspace instanceof BartNDArray ? (BartNDArray) kspace : new BartComplexFloatNDArray(kspace);
+        if (matrix.type == Type.SVD)
+            return apply(kspace, matrix.coefficients, matrix.virtualCoils);
+        return executor.run("ccapply", "-p", matrix.virtualCoils, matrix.type.option, kspace, matrix.coefficients);
+    }
+
+    /**
+     * Returns a pipeline stage that compresses the frames of the series.
+     *
+     * @param series identifies the series
+     * @return stage for {@link BartPipeline#stage(String, BartPipeline.Stage)}
+     */
+    public BartPipeline.Stage stage(String series) {
+        return frame -> compress(series, frame);
+    }
+
+    /**
+     * Returns the number of virtual coils of the series.
+     *
+     * @param series identifies the series
+     * @return the number of virtual coils, or 0 if there is no compression matrix for the series yet
+     */
+    public int getVirtualCoils(String series) {
+        Entry entry = entries.get(series);
+        if (entry == null)
+            return 0;
+        synchronized (entry) {
+            return entry.matrix == null ? 0 : entry.matrix.virtualCoils;
+        }
+    }
+
+    /**
+     * Drops the compression matrix of the series, so that it is recomputed from the next frame.
+     *
+     * @param series identifies the series
+     */
+    public void invalidate(String series) {
+        entries.remove(series);
+    }
+
+    /**
+     * Drops all compression matrices.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    private Matrix matrixOf(String series, NDArray<?> kspace) throws BartException {
+        NDArray<?> prepared = kspace instanceof BartNDArray ? BartNDArray.prepareToSave((BartNDArray) kspace) : kspace;
+        int channels = prepared.ndim() > COIL_DIM ? prepared.shape()[COIL_DIM] : 1;
+        Type currentType = type;
+        checkType(currentType);
+        Entry entry = entries.computeIfAbsent(series, k -> new Entry());
+        synchronized (entry) {
+            if (entry.matrix != null && entry.matrix.channels == channels && entry.matrix.type == currentType) {
+                hits.incrementAndGet();
+                return entry.matrix;
+            }
+            misses.incrementAndGet();
+            List<double[]> energies = new ArrayList<>();
+            BartOptions options = new BartOptions().outputConsumer(line -> {
+                if (line.startsWith(ENERGY_PREFIX))
+                    energies.add(parseEnergies(line));
+            });
+            if (virtualCoils == 0)
+                options.environment(DEBUG_LEVEL, ENERGY_DEBUG_LEVEL);
+            BartNDArray coefficients = executor.run(options, "cc", "-M", currentType.option, kspace);
+            if (virtualCoils == 0 && energies.isEmpty())
+                throw new BartException(BartErrors.ENERGY_NOT_RECEIVED);
+            entry.matrix = new Matrix(coefficients, currentType, channels, virtualCoils > 0
+                ? Math.min(virtualCoils, channels)
+                : selectByEnergy(energies, channels, energy));
+            return entry.matrix;
+        }
+    }
+
+    /**
+     * Returns the smallest number of virtual coils whose energy (averaged over the readout positions of
+     * geometric compression) reaches the given fraction.
+     */
+    static int selectByEnergy(List<double[]> energies, int channels, double fraction) {
+        double cumulative = 0;
+        for (int i = 0; i < channels; i++) {
+            double sum = 0;
+            for (double[] line : energies)
+                sum += i < line.length ? line[i] : 0;
+            cumulative += sum / energies.size();
+            if (cumulative >= fraction - 1e-6)
+                return i + 1;
+        }
+        return channels;
+    }
+
+    /**
+     * Checks that the compression method reports the energies if they are needed.
+     */
+    private void checkType(Type type) {
+        if (type == Type.ESPIRIT && virtualCoils == 0)
+            throw new IllegalArgumentException(BartErrors.ENERGY_NOT_REPORTED);
+    }
+
+    static double[] parseEnergies(String line) {
+        return Stream.of(line.substring(ENERGY_PREFIX.length()).trim().split("\\s+"))
+            .filter(token -> !token.isEmpty())
+            .mapToDouble(Double::parseDouble)
+            .toArray();
+    }
+
+    /**
+     * Applies the SVD compression matrix to the k-space, like {@code bart ccapply -S}: virtual coil j is the
+     * sum of the channels weighted by the conjugate of column j of the matrix.
+     */
+    static BartNDArray apply(NDArray<?> kspace, BartNDArray matrix, int virtualCoils) {
+        NDArray<?> prepared = kspace instanceof BartNDArray ? BartNDArray.prepareToSave((BartNDArray) kspace) : kspace;
+        BartComplexFloatNDArray denseKspace = dense(prepared);
+        BartComplexFloatNDArray denseMatrix = dense(matrix);
+        float[] in = denseKspace.data;
+        float[] m = denseMatrix.data;
+        int[] shape = prepared.shape();
+        int channels = shape[COIL_DIM];
+        int inner = 1;
+        for (int i = 0; i < COIL_DIM; i++)
+            inner *= shape[i];
+        int outer = prepared.length() / (inner * channels);
+        shape[COIL_DIM] = virtualCoils;
+        BartComplexFloatNDArray result = new BartComplexFloatNDArray(shape);
+        float[] out = result.data;
+        for (int o = 0; o < outer; o++)
+            for (int j = 0; j < virtualCoils; j++) {
+                int outBase = 2 * (o * virtualCoils + j) * inner;
+                for (int i = 0; i < channels; i++) {
+                    float re = m[2 * (i + channels * j)];
+                    float im = -m[2 * (i + channels * j) + 1];
+                    int inBase = 2 * (o * channels + i) * inner;
+                    for (int k = 0; k < 2 * inner; k += 2) {
+                        float x = in[inBase + k];
+                        float y = in[inBase + k + 1];
+                        out[outBase + k] += re * x - im * y;
+                        out[outBase + k + 1] += re * y + im * x;
+                    }
+                }
+            }
+        if (denseKspace != prepared)
+            denseKspace.release();
+        if (denseMatrix != matrix)
+            denseMatrix.release();
+        result.setBartDims(Stream.of(BartDimsEnum.values()).limit(shape.length).toArray(BartDimsEnum[]::new));
+        return result;
+    }
+
+    private static BartComplexFloatNDArray dense(NDArray<?> array) {
+        return array.getClass() == BartComplexFloatNDArray.class
+            ? (BartComplexFloatNDArray) array
+            : new BartComplexFloatNDArray(array);
+    }
+
+    private static final class Entry {
+        Matrix matrix;
+    }
+
+    private static final class Matrix {
+        final BartNDArray coefficients;
+        final Type type;
+        final int channels;
+        final int virtualCoils;
+
+        Matrix(BartNDArray coefficients, Type type, int channels, int virtualCoils) {
+            this.coefficients = coefficients;
+            this.type = type;
+            this.channels = channels;
+            this.virtualCoils = virtualCoils;
+        }
+    }
+
+}
@@ -0,0 +1,700 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.hakkelt.ndarrays.NDArray;
+
+/**
+ * Typed builder of a BART command with a fixed number of inputs and outputs. Options are validated against
+ * the option table of the command (a copy of the {@code OPT_*} table in the corresponding source file of BART)
+ * when they are set, and the required inputs are checked before the process is launched, so mistakes are reported
+ * without running BART.
+ *
+ * <p>Builders of the most frequently used commands can be created by {@link Bart#fft(long)}, {@link Bart#fmac()},
+ * {@link Bart#pics()}, {@link Bart#ecalib()} and {@link Bart#nufft()}. Options without a typed setter can be set by
+ * {@link #option(String)} and {@link #option(String, Object)}.</p>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartNDArray image = Bart.pics().l1Wavelet().lambda(0.01f).iter(50).kspace(kspace).sens(sensitivities).run();
+BartNDArray[] calibration = Bart.ecalib().maps(2).kspace(kspace).runMulti(); // sensitivities and eigenvalue maps
+ * }</pre></blockquote>
+ *
+ * @param <T> type of the builder
+ */
+public abstract class BartCommand<T extends BartCommand<T>> {
+
+    /** Types of option arguments, following the {@code OPT_*} macros of BART. */
+    enum Kind {
+        /** {@code OPT_SET}, {@code OPT_CLEAR} and {@code OPT_SELECT}: no argument */
+        FLAG("no value"),
+        /** {@code OPT_INT} */
+        INT("an integer"),
+        /** {@code OPT_UINT} */
+        UINT("a non-negative integer"),
+        /** {@code OPT_LONG} */
+        LONG("an integer"),
+        /** {@code OPT_FLOAT} */
+        FLOAT("a finite number"),
+        /** {@code OPT_VEC3}: written as x:y:z */
+        VEC3("three non-negative integers"),
+        /** {@code OPT_INFILE}: an array or a file */
+        FILE("an NDArray, a File or a BartStoredArray"),
+        /** {@code OPT_STRING} */
+        STRING("a string"),
+        /** {@code OPT_SPECIAL}: a string that can be given multiple times */
+        SPECIAL("a string");
+
+        private final String expected;
+
+        Kind(String expected) {
+            this.expected = expected;
+        }
+    }
+
+    private final String name;
+    private final Map<String, Kind> table;
+    private final String[] inputNames;
+    private final int requiredInputs;
+    private final int outputs;
+    private final Object[] inputs;
+    private final Map<String, List<Object>> options = new LinkedHashMap<>();
+
+    BartCommand(String name, Map<String, Kind> table, String[] inputNames, int requiredInputs, int outputs) {
+        this.name = name;
+        this.table = table;
+        this.inputNames = inputNames;
+        this.requiredInputs = requiredInputs;
+        this.outputs = outputs;
+        this.inputs = new Object[inputNames.length];
+    }
+
+    /**
+     * Sets a flag (an option without argument) of the command.
+     *
+     * @param option name of the option without the leading dashes (e.g. "S" or "lowmem")
+     * @return this builder
+     * @throws IllegalArgumentException if the command has no such option, or the option needs an argument
+     */
+    public T option(String option) {
+        return set(option, null);
+    }
+
+    /**
+     * Sets an option of the command. If the option was already set, its argument is replaced,
+     * except for options that can be given multiple times (e.g. the regularization terms of pics).
+     *
+     * @param option name of the option without the leading dashes (e.g. "r" or "wavelet")
+     * @param value the argument of the option: a Number, an int[3] vector, an NDArray or File, or a String
+     * @return this builder
+     * @throws IllegalArgumentException if the command has no such option, or the argument is not valid for the option
+     */
+    public T option(String option, Object value) {
+        if (value == null)
+            throw invalid(option, null);
+        return set(option, value);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of input arrays the command accepts (including the optional ones).
+     *
+     * @return the number of inputs
+     */
+    public int getInputCount() {
+        return inputs.length;
+    }
+
+    /**
+     * Returns the number of output arrays of the command (including the optional ones).
+     *
+     * @return the number of outputs
+     */
+    public int getOutputCount() {
+        return outputs;
+    }
+
+    /**
+     * Returns the arguments of the command in the form accepted by {@link Bart#run(Object...)},
+     * i.e. the name of the command, the options and the inputs, without the outputs.
+     *
+     * @return name of BART command and its arguments
+     * @throws IllegalArgumentException if a required input is not set
+     */
+    public Object[] toArgs() {
+        for (int i = 0; i < requiredInputs; i++)
+            if (inputs[i] == null)
+                throw new IllegalArgumentException(String.format(BartErrors.MISSING_COMMAND_INPUT, inputNames[i], name));
+        List<Object> args = new ArrayList<>(2 * options.size() + inputs.length + 1);
+        args.add(name);
+        options.forEach((option, values) -> {
+            for (Object value : values)
+                addOption(args, option, value);
+        });
+        addArguments(args);
+        return args.toArray();
+    }
+
+    /**
+     * Runs the command and returns its first output.
+     *
+     * @return the first output of the command
+     * @throws BartException when running BART fails for any reason
+     */
+    public BartNDArray run() throws BartException {
+        return Bart.run(toArgs());
+    }
+
+    /**
+     * Runs the command with the given per-call options and returns its first output.
+     *
+     * @param options timeout, resource limits and output consumer of the invocation
+     * @return the first output of the command
+     * @throws BartException when running BART fails for any reason
+     */
+    public BartNDArray run(BartOptions options) throws BartException {
+        return Bart.run(options, toArgs());
+    }
+
+    /**
+     * Runs the command on the given executor and returns its first output.
+     *
+     * @param executor executes the command
+     * @return the first output of the command
+     * @throws BartException when running BART fails for any reason
+     */
+    public BartNDArray runOn(BartExecutor executor) throws BartException {
+        return executor.run(toArgs());
+    }
+
+    /**
+     * Runs the command and returns all of its outputs (see {@link #getOutputCount()}).
+     *
+     * @return the outputs of the command
+     * @throws BartException when running BART fails for any reason
+     */
+    public BartNDArray[] runMulti() throws BartException {
+        return Bart.runMulti(outputs, toArgs());
+    }
+
+    /**
+     * Runs the command with the given per-call options and returns all of its outputs (see {@link #getOutputCount()}).
+     *
+     * @param options timeout, resource limits and output consumer of the invocation
+     * @return the outputs of the command
+     * @throws BartException when running BART fails for any reason
+     */
+    public BartNDArray[] runMulti(BartOptions options) throws BartException {
+        return Bart.runMulti(options, outputs, toArgs());
+    }
+
+    /** Adds the positional arguments preceding the outputs. */
+    void addArguments(List<Object> args) {
+        for (Object input : inputs)
+            if (input != null)
+                args.add(input);
+    }
+
+    T input(int index, Object value) {
+        if (!(value instanceof NDArray || value instanceof File || value instanceof BartStoredArray))
+            throw new IllegalArgumentException(String.format(BartErrors.INPUT_UNSUPPORTED_TYPE,
+                inputNames[index], value == null ? "null" : value.getClass().getName()));
+        inputs[index] = value;
+        return self();
+    }
+
+    T set(String option, Object value) {
+        Kind kind = table.get(option);
+        if (kind == null)
+            throw new IllegalArgumentException(String.format(BartErrors.UNKNOWN_COMMAND_OPTION, option, name));
+        if (!isValid(kind, value))
+            throw invalid(option, value);
+        if (kind == Kind.SPECIAL)
+            options.computeIfAbsent(option, key -> new ArrayList<>()).add(value);
+        else
+            options.put(option, Collections.singletonList(kind == Kind.VEC3 ? ((int[]) value).clone() : value));
+        return self();
+    }
+
+    /** Sets one of mutually exclusive flags (like OPT_SELECT options) and clears the others. */
+    T select(String option, String... exclusive) {
+        for (String other : exclusive)
+            options.remove(other);
+        return set(option, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T self() {
+        return (T) this;
+    }
+
+    private IllegalArgumentException invalid(String option, Object value) {
+        Kind kind = table.get(option);
+        if (kind == null)
+            return new IllegalArgumentException(String.format(BartErrors.UNKNOWN_COMMAND_OPTION, option, name));
+        String given = value instanceof int[] ? Arrays.toString((int[]) value) : String.valueOf(value);
+        return new IllegalArgumentException(String.format(BartErrors.INVALID_COMMAND_OPTION, option, name, given, kind.expected));
+    }
+
+    private static boolean isValid(Kind kind, Object value) {
+        switch (kind) {
+            case FLAG:
+                return value == null;
+            case INT:
+                return value instanceof Integer;
+            case UINT:
+                return value instanceof Integer && (Integer) value >= 0;
+            case LONG:
+                return value instanceof Integer || value instanceof Long;
+            case FLOAT:
+                return (value instanceof Float || value instanceof Double || value instanceof Integer)
+                    && Double.isFinite(((Number) value).doubleValue());
+            case VEC3:
+                return value instanceof int[] && ((int[]) value).length == 3
+                    && Arrays.stream((int[]) value).allMatch(x -> x >= 0);
+            case FILE:
+                return value instanceof NDArray || value instanceof File || value instanceof BartStoredArray;
+            default:
+                return value instanceof String;
+        }
+    }
+
+    private static void addOption(List<Object> args, String option, Object value) {
+        boolean isLong = option.length() > 1;
+        String prefix = (isLong ? "--" : "-") + option;
+        if (value == null) {
+            args.add(prefix);
+        } else if (value instanceof NDArray || value instanceof File || value instanceof BartStoredArray || isLong) {
+            args.add(prefix);
+            args.add(value instanceof Number || value instanceof int[] ? format(value) : value);
+        } else {
+            args.add(prefix + format(value));
+        }
+    }
+
+    private static String format(Object value) {
+        if (value instanceof int[]) {
+            int[] vector = (int[]) value;
+            return vector[0] + ":" + vector[1] + ":" + vector[2];
+        }
+        if (value instanceof Double)
+            return Float.toString(((Double) value).floatValue());
+        return value.toString();
+    }
+
+    static Map<String, Kind> table(Object... entries) {
+        Map<String, Kind> table = new HashMap<>();
+        for (int i = 0; i < entries.length; i += 2)
+            table.put((String) entries[i], (Kind) entries[i + 1]);
+        return Collections.unmodifiableMap(table);
+    }
+
+    /**
+     * Builder of {@code bart fft [-u] [-i] [-n] bitmask <input> <output>}.
+     */
+    public static final class Fft extends BartCommand<Fft> {
+        private static final Map<String, Kind> OPTIONS = table(
+            "u", Kind.FLAG, "i", Kind.FLAG, "n", Kind.FLAG);
+
+        private final long bitmask;
+
+        Fft(long bitmask) {
+            super("fft", OPTIONS, new String[]{ "input" }, 1, 1);
+            if (bitmask < 0)
+                throw new IllegalArgumentException(String.format(BartErrors.INVALID_COMMAND_OPTION, "bitmask", "fft", bitmask, Kind.UINT.expected));
+            this.bitmask = bitmask;
+        }
+
+        /** @return this builder */
+        public Fft unitary() {
+            return set("u", null);
+        }
+
+        /** @return this builder */
+        public Fft inverse() {
+            return set("i", null);
+        }
+
+        /** @return this builder */
+        public Fft uncentered() {
+            return set("n", null);
+        }
+
+        /**
+         * @param input the array to be transformed
+         * @return this builder
+         */
+        public Fft input(Object input) {
+            return input(0, input);
+        }
+
+        @Override
+        void addArguments(List<Object> args) {
+            args.add(Long.toString(bitmask));
+            super.addArguments(args);
+        }
+    }
+
+    /**
+     * Builder of {@code bart fmac [-C] [-s b] <input1> [<input2>] <output>}. The -A option (add to the existing
+     * output) is not available, as the output is always a new file.
+     */
+    public static final class Fmac extends BartCommand<Fmac> {
+        private static final Map<String, Kind> OPTIONS = table(
+            "C", Kind.FLAG, "s", Kind.LONG);
+
+        Fmac() {
+            super("fmac", OPTIONS, new String[]{ "input1", "input2" }, 1, 1);
+        }
+
+        /** @return this builder */
+        public Fmac conjugate() {
+            return set("C", null);
+        }
+
+        /**
+         * @param bitmask the dimensions to be summed up
+         * @return this builder
+         */
+        public Fmac squash(long bitmask) {
+            return set("s", bitmask);
+        }
+
+        /**
+         * @param input1 the first factor
+         * @return this builder
+         */
+        public Fmac input1(Object input1) {
+            return input(0, input1);
+        }
+
+        /**
+         * @param input2 the second factor (all-ones if not given)
+         * @return this builder
+         */
+        public Fmac input2(Object input2) {
+            return input(1, input2);
+        }
+    }
+
+    /**
+     * Builder of {@code bart pics [options] <kspace> <sensitivities> <output>}. The --psf_export option is not
+     * available, as it writes an additional output file.
+     */
+    public static final class Pics extends BartCommand<Pics> {
+        private static final Map<String, Kind> OPTIONS = table(
+            "l", Kind.SPECIAL, "r", Kind.FLOAT, "R", Kind.SPECIAL, "c", Kind.FLAG, "s", Kind.FLOAT,
+            "i", Kind.UINT, "t", Kind.FILE, "n", Kind.FLAG, "N", Kind.FLAG, "g", Kind.FLAG,
+            "G", Kind.INT, "p", Kind.FILE, "I", Kind.FLAG, "b", Kind.UINT, "e", Kind.FLAG,
+            "H", Kind.FLAG, "D", Kind.FLAG, "F", Kind.FLAG, "J", Kind.FLAG, "T", Kind.FILE,
+            "W", Kind.FILE, "d", Kind.INT, "O", Kind.INT, "o", Kind.FLOAT, "u", Kind.FLOAT,
+            "C", Kind.UINT, "q", Kind.FLOAT, "f", Kind.FLOAT, "m", Kind.FLAG, "w", Kind.FLOAT,
+            "S", Kind.FLAG, "L", Kind.UINT, "K", Kind.FLAG, "B", Kind.FILE, "P", Kind.FLOAT,
+            "a", Kind.FLAG, "M", Kind.FLAG, "U", Kind.FLAG, "lowmem", Kind.FLAG,
+            "psf_import", Kind.FILE, "wavelet", Kind.STRING);
+
+        Pics() {
+            super("pics", OPTIONS, new String[]{ "kspace", "sensitivities" }, 2, 1);
+        }
+
+        /** Adds l1-wavelet regularization (-l1). @return this builder */
+        public Pics l1Wavelet() {
+            return set("l", "1");
+        }
+
+        /** Adds l2 regularization (-l2). @return this builder */
+        public Pics l2() {
+            return set("l", "2");
+        }
+
+        /**
+         * Adds a generalized regularization term (-R), e.g. "W:7:0:0.01" or "T:1024:0:0.001".
+         *
+         * @param regularization the regularization term
+         * @return this builder
+         */
+        public Pics regularization(String regularization) {
+            return set("R", regularization);
+        }
+
+        /**
+         * @param lambda the regularization parameter (-r)
+         * @return this builder
+         */
+        public Pics lambda(float lambda) {
+            return set("r", lambda);
+        }
+
+        /**
+         * @param iter the maximal number of iterations (-i)
+         * @return this builder
+         */
+        public Pics iter(int iter) {
+            return set("i", iter);
+        }
+
+        /**
+         * @param step the step size of the iterations (-s)
+         * @return this builder
+         */
+        public Pics step(float step) {
+            return set("s", step);
+        }
+
+        /**
+         * @param trajectory the k-space trajectory (-t)
+         * @return this builder
+         */
+        public Pics trajectory(Object trajectory) {
+            return set("t", trajectory);
+        }
+
+        /**
+         * @param pattern the sampling pattern or weights (-p)
+         * @return this builder
+         */
+        public Pics pattern(Object pattern) {
+            return set("p", pattern);
+        }
+
+        /**
+         * @param basis the temporal (or other) basis (-B)
+         * @return this builder
+         */
+        public Pics basis(Object basis) {
+            return set("B", basis);
+        }
+
+        /**
+         * @param image the initial image of the iterations (-W)
+         * @return this builder
+         */
+        public Pics warmStart(Object image) {
+            return set("W", image);
+        }
+
+        /** Selects IST (-I). @return this builder */
+        public Pics ist() {
+            return select("I", "m", "a");
+        }
+
+        /** Selects ADMM (-m). @return this builder */
+        public Pics admm() {
+            return select("m", "I", "a");
+        }
+
+        /** Selects Primal Dual (-a). @return this builder */
+        public Pics primalDual() {
+            return select("a", "I", "m");
+        }
+
+        /** Adds real-value constraint (-c). @return this builder */
+        public Pics realValueConstraint() {
+            return set("c", null);
+        }
+
+        /** Uses GPU (-g). @return this builder */
+        public Pics gpu() {
+            return set("g", null);
+        }
+
+        /** Re-scales the image after reconstruction (-S). @return this builder */
+        public Pics scaleImage() {
+            return set("S", null);
+        }
+
+        /**
+         * @param flags the dimensions to be reconstructed independently (-L)
+         * @return this builder
+         */
+        public Pics loopFlags(int flags) {
+            return set("L", flags);
+        }
+
+        /**
+         * @param level the debug level (-d)
+         * @return this builder
+         */
+        public Pics debugLevel(int level) {
+            return set("d", level);
+        }
+
+        /**
+         * @param kspace the k-space data
+         * @return this builder
+         */
+        public Pics kspace(Object kspace) {
+            return input(0, kspace);
+        }
+
+        /**
+         * @param sensitivities the coil sensitivities
+         * @return this builder
+         */
+        public Pics sens(Object sensitivities) {
+            return input(1, sensitivities);
+        }
+    }
+
+    /**
+     * Builder of {@code bart ecalib [options] <kspace> <sensitivities> [<ev-maps>]}:
+     * {@link #run()} returns the sensitivities, {@link #runMulti()} also returns the eigenvalue maps.
+     */
+    public static final class Ecalib extends BartCommand<Ecalib> {
+        private static final Map<String, Kind> OPTIONS = table(
+            "t", Kind.FLOAT, "c", Kind.FLOAT, "k", Kind.VEC3, "K", Kind.VEC3, "r", Kind.VEC3,
+            "R", Kind.VEC3, "m", Kind.INT, "S", Kind.FLAG, "W", Kind.FLAG, "I", Kind.FLAG,
+            "1", Kind.FLAG, "P", Kind.FLAG, "O", Kind.FLAG, "i", Kind.INT, "orthiter", Kind.INT,
+            "b", Kind.FLOAT, "V", Kind.FLAG, "C", Kind.FLAG, "g", Kind.FLAG, "p", Kind.FLOAT,
+            "n", Kind.INT, "v", Kind.FLOAT, "a", Kind.FLAG, "d", Kind.INT);
+
+        Ecalib() {
+            super("ecalib", OPTIONS, new String[]{ "kspace" }, 1, 2);
+        }
+
+        /**
+         * @param threshold the threshold that determines the size of the null-space (-t)
+         * @return this builder
+         */
+        public Ecalib threshold(float threshold) {
+            return set("t", threshold);
+        }
+
+        /**
+         * @param crop crop the sensitivities where the eigenvalue is smaller than this value (-c)
+         * @return this builder
+         */
+        public Ecalib crop(float crop) {
+            return set("c", crop);
+        }
+
+        /**
+         * @param x kernel size along the first dimension
+         * @param y kernel size along the second dimension
+         * @param z kernel size along the third dimension
+         * @return this builder
+         */
+        public Ecalib kernelSize(int x, int y, int z) {
+            return set("k", new int[]{ x, y, z });
+        }
+
+        /**
+         * @param x size of the calibration region along the first dimension
+         * @param y size of the calibration region along the second dimension
+         * @param z size of the calibration region along the third dimension
+         * @return this builder
+         */
+        public Ecalib calibrationSize(int x, int y, int z) {
+            return set("r", new int[]{ x, y, z });
+        }
+
+        /**
+         * @param maps the number of maps to compute (-m)
+         * @return this builder
+         */
+        public Ecalib maps(int maps) {
+            return set("m", maps);
+        }
+
+        /** Creates maps with smooth transitions (-S). @return this builder */
+        public Ecalib softCrop() {
+            return set("S", null);
+        }
+
+        /** Picks thresholds automatically (-a). @return this builder */
+        public Ecalib automatic() {
+            return set("a", null);
+        }
+
+        /**
+         * @param variance the variance of noise in data (-v)
+         * @return this builder
+         */
+        public Ecalib variance(float variance) {
+            return set("v", variance);
+        }
+
+        /**
+         * @param kspace the k-space data
+         * @return this builder
+         */
+        public Ecalib kspace(Object kspace) {
+            return input(0, kspace);
+        }
+    }
+
+    /**
+     * Builder of {@code bart nufft [options] <traj> <input> <output>}.
+     */
+    public static final class Nufft extends BartCommand<Nufft> {
+        private static final Map<String, Kind> OPTIONS = table(
+            "a", Kind.FLAG, "i", Kind.FLAG, "d", Kind.VEC3, "D", Kind.VEC3, "t", Kind.FLAG,
+            "r", Kind.FLAG, "c", Kind.FLAG, "l", Kind.FLOAT, "m", Kind.UINT, "P", Kind.FLAG,
+            "s", Kind.FLAG, "g", Kind.FLAG, "1", Kind.FLAG, "lowmem", Kind.FLAG);
+
+        Nufft() {
+            super("nufft", OPTIONS, new String[]{ "traj", "input" }, 2, 1);
+        }
+
+        /** Computes the adjoint (-a). @return this builder */
+        public Nufft adjoint() {
+            return select("a", "i");
+        }
+
+        /** Computes the inverse (-i). @return this builder */
+        public Nufft inverse() {
+            return select("i", "a");
+        }
+
+        /**
+         * @param x image size along the first dimension
+         * @param y image size along the second dimension
+         * @param z image size along the third dimension
+         * @return this builder
+         */
+        public Nufft dimensions(int x, int y, int z) {
+            return set("d", new int[]{ x, y, z });
+        }
+
+        /** Uses Toeplitz embedding for the inverse (-t). @return this builder */
+        public Nufft toeplitz() {
+            return select("t", "r");
+        }
+
+        /**
+         * @param lambda l2 regularization of the inverse (-l)
+         * @return this builder
+         */
+        public Nufft lambda(float lambda) {
+            return set("l", lambda);
+        }
+
+        /**
+         * @param trajectory the k-space trajectory
+         * @return this builder
+         */
+        public Nufft trajectory(Object trajectory) {
+            return input(0, trajectory);
+        }
+
+        /**
+         * @param input the k-space data (inverse and adjoint) or the image (forward)
+         * @return this builder
+         */
+        public Nufft input(Object input) {
+            return input(1, input);
+        }
+    }
+
+}
@@ -1,23 +1,15 @@
 package io.github.hakkelt.bartwrapper;
 
+import java.nio.FloatBuffer;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.function.BiFunction;
-import java.util.function.Function;
-import java.util.function.IntFunction;
-import java.util.function.UnaryOperator;
 import java.util.stream.Collector;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.apache.commons.math3.complex.Complex;
 
-import io.github.hakkelt.ndarrays.AbstractComplexNDArray;
-import io.github.hakkelt.ndarrays.ComplexNDArray;
 import io.github.hakkelt.ndarrays.NDArray;
 import io.github.hakkelt.ndarrays.NDArrayUtils;
-import io.github.hakkelt.ndarrays.basic.BasicFloatNDArray;
 import io.github.hakkelt.ndarrays.internal.ComplexNDArrayCollector;
 
 /**
@@ -25,9 +17,11 @@ import io.github.hakkelt.ndarrays.internal.ComplexNDArrayCollector;
  * that is compatible with arrays expected by BART. It also contains some utility functions to
  * help dealing with the 16 dimensions used by BART.
  */
-public class BartComplexFloatNDArray extends AbstractComplexNDArray<Float> implements BartNDArray {
+public class BartComplexFloatNDArray extends AbstractBartNDArray {
     protected float[] data;
-    protected BartDimsEnum[] bartDims = null;
+    private BartArrayPool.SharedBuffer buffer;
+    /** The array this one was created from by reshaping, or null */
+    private BartComplexFloatNDArray origin;
 
     protected BartComplexFloatNDArray() {}
 
@@ -38,7 +32,24 @@ public class BartComplexFloatNDArray extends AbstractComplexNDArray<Float> imple
      */
     public BartComplexFloatNDArray(int... dims) {
         baseConstuctor(dims);
-        this.data = new float[length() * 2];
+        this.data = BartArrayPool.acquire(length() * 2, true);
+        this.buffer = new BartArrayPool.SharedBuffer(data);
+    }
+
+    /**
+     * Constructor that wraps the given array of interleaved real and imaginary parts without copying it.
+     * 
+     * @param data entries stored in column-major order as interleaved real and imaginary parts
+     * @param dims dimensions / shape of the NDArray
+     */
+    protected BartComplexFloatNDArray(float[] data, int... dims) {
+        this(new BartArrayPool.SharedBuffer(data), dims);
+    }
+
+    private BartComplexFloatNDArray(BartArrayPool.SharedBuffer buffer, int... dims) {
+        baseConstuctor(dims);
+        this.data = buffer.data;
+        this.buffer = buffer;
     }
 
     /**
@@ -48,7 +59,8 @@ public class BartComplexFloatNDArray extends AbstractComplexNDArray<Float> imple
      */
     public BartComplexFloatNDArray(NDArray<?> array) {
         baseConstuctor(array.shape());
-        this.data = new float[length() * 2];
+        this.data = BartArrayPool.acquire(length() * 2, false);
+        this.buffer = new BartArrayPool.SharedBuffer(data);
         copyFrom(array);
         if (array instanceof BartNDArray && ((BartNDArray)array).areBartDimsSpecified())
             bartDims = ((BartNDArray)array).getBartDims();
@@ -62,10 +74,22 @@ public class BartComplexFloatNDArray extends AbstractComplexNDArray<Float> imple
      */
     public BartComplexFloatNDArray(NDArray<? extends Number> real, NDArray<? extends Number> imag) {
         baseConstuctor(real.shape());
-        this.data = new float[length() * 2];
+        this.data = BartArrayPool.acquire(length() * 2, false);
+        this.buffer = new BartArrayPool.SharedBuffer(data);
         copyFrom(real, imag);
     }
 
+    /**
+     * Creates an array whose entries are not initialized, so they must be overwritten by the caller.
+     * 
+     * @param dims dimensions / shape of the NDArray
+     * @return an array with unspecified content
+     */
+    static BartComplexFloatNDArray createUninitialized(int... dims) {
+        int length = IntStream.of(dims).reduce(1, (a, b) -> a * b);
+        return new BartComplexFloatNDArray(BartArrayPool.acquire(length * 2, false), dims);
+    }
+
     /**
      * Factory method that creates an NDArray from a list or 1D array of float values.
      * 
@@ -218,7 +242,7 @@ public class BartComplexFloatNDArray extends AbstractComplexNDArray<Float> imple
     public BartComplexFloatNDArray copyFrom(NDArray<?> array) {
         if (array instanceof BartComplexFloatNDArray) {
             NDArrayUtils.checkShapeCompatibility(this, array.shape());
-            data = ((BartComplexFloatNDArray) array).data.clone();
+            System.arraycopy(((BartComplexFloatNDArray) array).data, 0, data, 0, data.length);
         } else
             super.copyFrom(array);
         return this;
@@ -234,45 +258,51 @@ public class BartComplexFloatNDArray extends AbstractComplexNDArray<Float> imple
         return new BartComplexFloatNDArray(this);
     }
 
+    /**
+     * Returns a BartComplexFloatNDArray of the given shape that shares its entries with this array.
+     * Reshaping doesn't change the column-major order of entries, so no view is needed to translate indices.
+     * Reshaping back to the shape of the origin returns the origin itself (unless it was released).
+     */
     @Override
-    public Float getRealUnchecked(int linearIndex) {
-        return data[linearIndex * 2];
-    }
-
-    @Override
-    public Float getRealUnchecked(int... indices) {
-        return getRealUncheckedDefault(indices);
-    }
-
-    @Override
-    public Float getImagUnchecked(int linearIndex) {
-        return data[linearIndex * 2 + 1];
-    }
-
-    @Override
-    public Float getImagUnchecked(int... indices) {
-        return getImagUncheckedDefault(indices);
+    public BartNDArray reshape(int... newShape) {
+        if (Arrays.equals(shape, newShape)) return this;
+        BartComplexFloatNDArray base = origin != null && origin.data != null ? origin : this;
+        if (Arrays.equals(base.shape, newShape)) return base;
+        if (IntStream.of(newShape).reduce(1, (a, b) -> a * b) != length())
+            throw new IllegalArgumentException(
+                String.format(BartErrors.RESHAPE_LENGTH_MISMATCH, Arrays.toString(shape), Arrays.toString(newShape)));
+        BartComplexFloatNDArray reshaped = new BartComplexFloatNDArray(buffer.share(), newShape);
+        reshaped.origin = base;
+        return reshaped;
     }
 
+    /**
+     * Returns the backing storage to {@link BartArrayPool} if pooling is enabled. Arrays created by reshaping
+     * share the storage of their origin, so it is returned only when the origin and all of its reshaped
+     * arrays are released.
+     */
     @Override
-    protected Complex getUnchecked(int linearIndex) {
-        return new Complex(getRealUnchecked(linearIndex), getImagUnchecked(linearIndex));
+    public void release() {
+        if (buffer != null)
+            buffer.release();
+        buffer = null;
+        data = null;
+        origin = null;
     }
 
     @Override
-    protected Complex getUnchecked(int... indices) {
-        return getUncheckedDefault(indices);
+    protected void writeTo(FloatBuffer buffer) {
+        buffer.put(data);
     }
 
     @Override
-    protected void setUnchecked(Complex value, int linearIndex) {
-        setRealUnchecked((float) value.getReal(), linearIndex);
-        setImagUnchecked((float) value.getImaginary(), linearIndex);
+    public Float getRealUnchecked(int linearIndex) {
+        return data[linearIndex * 2];
     }
 
     @Override
-    protected void setUnchecked(Complex value, int... indices) {
-        setUncheckedDefault(value, indices);
+    public Float getImagUnchecked(int linearIndex) {
+        return data[linearIndex * 2 + 1];
     }
 
     @Override
@@ -280,126 +310,26 @@ public class BartComplexFloatNDArray extends AbstractComplexNDArray<Float> imple
         data[linearIndex * 2] = value;
     }
 
-    @Override
-    protected void setRealUnchecked(Float value, int... indices) {
-        setRealUncheckedDefault(value, indices);
-    }
-
     @Override
     protected void setImagUnchecked(Float value, int linearIndex) {
         data[linearIndex * 2 + 1] = value;
     }
 
-    @Override
-    protected void setImagUnchecked(Float value, int... indices) {
-        setImagUncheckedDefault(value, indices);
-    }
-
     public static Collector<Object, List<Object>, NDArray<Complex>> getCollector(int... dims) {
         return new ComplexNDArrayCollector<>(new BartComplexFloatNDArray(dims));
     }
 
-    public boolean areBartDimsSpecified() {
-        return bartDims != null;
-    }
-    
-    public BartDimsEnum[] getBartDims() {
-        if (bartDims == null)
-            throw new UnsupportedOperationException(BartErrors.UNINITIALIZED_BART_DIMS);
-        return bartDims;
-    }
-    
-    public void setBartDims(BartDimsEnum... bartDims) {
-        if (bartDims.length != ndim())
-            throw new IllegalArgumentException(String.format(BartErrors.SET_BART_DIMS_SIZE_MISMATCH, ndim()));
-        int[] intBartDims = IntStream.range(0, bartDims.length).map(i -> bartDims[i].ordinal()).toArray();
-        if (hasDuplicates(intBartDims))
-            throw new IllegalArgumentException(BartErrors.SET_BART_DIMS_DUPLICATES);
-        this.bartDims = bartDims;
-    }
-
-    protected static boolean hasDuplicates(int[] array) {
-        List<Integer> set = IntStream.of(array).boxed().collect(Collectors.toList());
-        return IntStream.of(array).anyMatch(num -> Collections.frequency(set, num) > 1);
-    }
-
+    @Override
     protected BartComplexFloatNDArray createNewNDArrayOfSameTypeAsMe(int... dims) {
         return new BartComplexFloatNDArray(dims);
     }
 
-    protected NDArray<Float> createNewRealNDArrayOfSameTypeAsMe(int... dims) {
-        return new BasicFloatNDArray(dims);
-    }
-
-    protected boolean areBartDimsEqual(BartNDArray array) {
-        return Arrays.equals(bartDims, array.getBartDims());
-    }
-
     @Override
     public boolean equals(Object obj) {
-        if (obj instanceof BartNDArray && areBartDimsSpecified() != ((BartNDArray)obj).areBartDimsSpecified())
-            return false;
-        if (obj instanceof BartNDArray && areBartDimsSpecified() && !areBartDimsEqual((BartNDArray)obj))
-            return false;
-        if (!(obj instanceof BartNDArray) && areBartDimsSpecified())
-            return false;
-        if (obj instanceof BartComplexFloatNDArray)
-            return Arrays.equals(data, ((BartComplexFloatNDArray) obj).data);
+        if (obj instanceof BartComplexFloatNDArray && areBartDimsCompatible(obj))
+            return Arrays.equals(shape, ((BartComplexFloatNDArray) obj).shape) &&
+                Arrays.equals(data, ((BartComplexFloatNDArray) obj).data);
         return super.equals(obj);
     }
 
-    @Override
-    public int hashCode() {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public String getNamePrefix() {
-        return "bart";
-    }
-    
-    @Override
-    public BartNDArray apply(UnaryOperator<Complex> func) {
-        super.apply(func);
-        return this;
-    }
-    
-    @Override
-    public BartNDArray applyWithLinearIndices(BiFunction<Complex, Integer, Complex> func) {
-        super.applyWithLinearIndices(func);
-        return this;
-    }
-    
-    @Override
-    public BartNDArray applyWithCartesianIndices(BiFunction<Complex, int[], Complex> func) {
-        super.applyWithCartesianIndices(func);
-        return this;
-    }
-    
-    @Override
-    public BartNDArray fillUsingLinearIndices(IntFunction<Complex> func) {
-        super.fillUsingLinearIndices(func);
-        return this;
-    }
-    
-    @Override
-    public BartNDArray fillUsingCartesianIndices(Function<int[], Complex> func) {
-        super.fillUsingCartesianIndices(func);
-        return this;
-    }
-
-    @Override
-    public BartNDArray applyOnComplexSlices(BiFunction<ComplexNDArray<Float>,int[],NDArray<?>> func, int... iterationDims) {
-        super.applyOnComplexSlices(func, iterationDims);
-        return this;
-    }
-
-    @Override
-    public BartNDArray mapOnComplexSlices(BiFunction<ComplexNDArray<Float>,int[],NDArray<?>> func, int... iterationDims) {
-        BartNDArray newInstance = copy();
-        newInstance.applyOnComplexSlices(func, iterationDims);
-        return newInstance;
-    }
-    
 }
-
@@ -0,0 +1,174 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import io.github.hakkelt.ndarrays.NDArray;
+import io.github.hakkelt.ndarrays.NDArrayUtils;
+
+/**
+ * Implementation of BartNDArray that stores the real and imaginary parts as half-precision
+ * (IEEE 754 binary16) floating point values, so it takes half as much memory as BartComplexFloatNDArray.
+ * Half precision has 11 significant bits and a range of about ±65504, which suits intermediates that
+ * don't need full precision. Entries are expanded to complex floats only when the array is saved for BART.
+ */
+public class BartComplexHalfNDArray extends AbstractBartNDArray {
+    private static final float[] HALF_TO_FLOAT = new float[1 << 16];
+    static {
+        for (int i = 0; i < HALF_TO_FLOAT.length; i++)
+            HALF_TO_FLOAT[i] = computeHalfToFloat(i);
+    }
+
+    protected short[] data;
+
+    /**
+     * Simple constructor that defines only the shape of the NDArray and fills it with zeros.
+     *
+     * @param dims dimensions / shape of the NDArray
+     */
+    public BartComplexHalfNDArray(int... dims) {
+        baseConstuctor(dims);
+        this.data = new short[length() * 2];
+    }
+
+    /**
+     * Copy constructor. Entries are rounded to the nearest half-precision value.
+     *
+     * @param array NDArray from which entries are copied from.
+     */
+    public BartComplexHalfNDArray(NDArray<?> array) {
+        baseConstuctor(array.shape());
+        this.data = new short[length() * 2];
+        copyFrom(array);
+        if (array instanceof BartNDArray && ((BartNDArray)array).areBartDimsSpecified())
+            bartDims = ((BartNDArray)array).getBartDims();
+    }
+
+    @Override
+    public BartComplexHalfNDArray copyFrom(NDArray<?> array) {
+        if (array instanceof BartComplexHalfNDArray) {
+            NDArrayUtils.checkShapeCompatibility(this, array.shape());
+            System.arraycopy(((BartComplexHalfNDArray) array).data, 0, data, 0, data.length);
+        } else if (array instanceof BartComplexFloatNDArray) {
+            NDArrayUtils.checkShapeCompatibility(this, array.shape());
+            float[] source = ((BartComplexFloatNDArray) array).data;
+            for (int i = 0; i < data.length; i++)
+                data[i] = floatToHalf(source[i]);
+        } else
+            super.copyFrom(array);
+        return this;
+    }
+
+    @Override
+    public BartNDArray similar() {
+        return new BartComplexHalfNDArray(shape);
+    }
+
+    @Override
+    public BartNDArray copy() {
+        return new BartComplexHalfNDArray(this);
+    }
+
+    @Override
+    protected void writeTo(FloatBuffer buffer) {
+        float[] chunk = new float[Math.min(data.length, CONVERSION_CHUNK_SIZE * 2)];
+        for (int start = 0; start < data.length; start += chunk.length) {
+            int end = Math.min(start + chunk.length, data.length);
+            for (int i = start; i < end; i++)
+                chunk[i - start] = HALF_TO_FLOAT[data[i] & 0xffff];
+            buffer.put(chunk, 0, end - start);
+        }
+    }
+
+    @Override
+    public Float getRealUnchecked(int linearIndex) {
+        return HALF_TO_FLOAT[data[linearIndex * 2] & 0xffff];
+    }
+
+    @Override
+    public Float getImagUnchecked(int linearIndex) {
+        return HALF_TO_FLOAT[data[linearIndex * 2 + 1] & 0xffff];
+    }
+
+    @Override
+    protected void setRealUnchecked(Float value, int linearIndex) {
+        data[linearIndex * 2] = floatToHalf(value);
+    }
+
+    @Override
+    protected void setImagUnchecked(Float value, int linearIndex) {
+        data[linearIndex * 2 + 1] = floatToHalf(value);
+    }
+
+    @Override
+    protected BartComplexHalfNDArray createNewNDArrayOfSameTypeAsMe(int... dims) {
+        return new BartComplexHalfNDArray(dims);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof BartComplexHalfNDArray && areBartDimsCompatible(obj))
+            return Arrays.equals(shape, ((BartComplexHalfNDArray) obj).shape) &&
+                Arrays.equals(data, ((BartComplexHalfNDArray) obj).data);
+        return super.equals(obj);
+    }
+
+    /**
+     * Converts a single-precision value to the nearest half-precision value (ties to even).
+     *
+     * @param value single-precision value
+     * @return bits of the half-precision value
+     */
+    static short floatToHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int floatExponent = (bits >>> 23) & 0xff;
+        int mantissa = bits & 0x7fffff;
+        if (floatExponent == 0xff) // infinity or NaN
+            return (short) (sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0));
+        int exponent = floatExponent - 127 + 15;
+        if (exponent >= 0x1f) // overflow
+            return (short) (sign | 0x7c00);
+        if (exponent <= 0) { // subnormal half-precision value
+            if (exponent < -10)
+                return (short) sign;
+            int fullMantissa = mantissa | 0x800000;
+            int shift = 14 - exponent;
+            int half = fullMantissa >> shift;
+            int remainder = fullMantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (remainder > halfway || (remainder == halfway && (half & 1) != 0))
+                half++;
+            return (short) (sign | half);
+        }
+        int half = sign | (exponent << 10) | (mantissa >> 13);
+        int remainder = mantissa & 0x1fff;
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0))
+            half++; // a carry correctly rounds up to the next exponent or to infinity
+        return (short) half;
+    }
+
+    /**
+     * Converts a half-precision value to single precision.
+     *
+     * @param half bits of the half-precision value
+     * @return the same value in single precision
+     */
+    static float halfToFloat(short half) {
+        return HALF_TO_FLOAT[half & 0xffff];
+    }
+
+    private static float computeHalfToFloat(int bits) {
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1f;
+        int mantissa = bits & 0x3ff;
+        if (exponent == 0x1f)
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        if (exponent == 0) {
+            float value = mantissa * 0x1p-24f;
+            return sign == 0 ? value : -value;
+        }
+        return Float.intBitsToFloat(sign | ((exponent + 127 - 15) << 23) | (mantissa << 13));
+    }
+
+}
@@ -0,0 +1,163 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import org.apache.commons.math3.complex.Complex;
+
+import io.github.hakkelt.ndarrays.ComplexNDArray;
+import io.github.hakkelt.ndarrays.NDArray;
+import io.github.hakkelt.ndarrays.NDArrayUtils;
+
+/**
+ * Implementation of BartNDArray that stores the real and imaginary parts as 16 bit integers
+ * multiplied by a common scale factor, so it takes half as much memory as BartComplexFloatNDArray.
+ * Values are rounded to the nearest multiple of the scale factor, and values outside of the range
+ * ±32767 × scale are saturated. Entries are expanded to complex floats only when the array is saved for BART.
+ */
+public class BartComplexInt16NDArray extends AbstractBartNDArray {
+    protected short[] data;
+    protected final float scale;
+
+    /**
+     * Simple constructor that defines the scale factor and the shape of the NDArray, and fills it with zeros.
+     *
+     * @param scale value of the least significant bit
+     * @param dims dimensions / shape of the NDArray
+     */
+    public BartComplexInt16NDArray(float scale, int... dims) {
+        checkScale(scale);
+        baseConstuctor(dims);
+        this.scale = scale;
+        this.data = new short[length() * 2];
+    }
+
+    /**
+     * Copy constructor that chooses the scale factor so that the largest real or imaginary part
+     * (in absolute value) of the given array maps to the largest 16 bit integer.
+     *
+     * @param array NDArray from which entries are copied from.
+     */
+    public BartComplexInt16NDArray(NDArray<?> array) {
+        this(array, computeScale(array));
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param array NDArray from which entries are copied from.
+     * @param scale value of the least significant bit
+     */
+    public BartComplexInt16NDArray(NDArray<?> array, float scale) {
+        checkScale(scale);
+        baseConstuctor(array.shape());
+        this.scale = scale;
+        this.data = new short[length() * 2];
+        copyFrom(array);
+        if (array instanceof BartNDArray && ((BartNDArray)array).areBartDimsSpecified())
+            bartDims = ((BartNDArray)array).getBartDims();
+    }
+
+    /**
+     * Returns the scale factor, i.e. the value of the least significant bit.
+     *
+     * @return the scale factor
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    @Override
+    public BartComplexInt16NDArray copyFrom(NDArray<?> array) {
+        if (array instanceof BartComplexInt16NDArray && ((BartComplexInt16NDArray) array).scale == scale) {
+            NDArrayUtils.checkShapeCompatibility(this, array.shape());
+            System.arraycopy(((BartComplexInt16NDArray) array).data, 0, data, 0, data.length);
+        } else if (array instanceof BartComplexFloatNDArray) {
+            NDArrayUtils.checkShapeCompatibility(this, array.shape());
+            float[] source = ((BartComplexFloatNDArray) array).data;
+            for (int i = 0; i < data.length; i++)
+                data[i] = quantize(source[i]);
+        } else
+            super.copyFrom(array);
+        return this;
+    }
+
+    @Override
+    public BartNDArray similar() {
+        return new BartComplexInt16NDArray(scale, shape);
+    }
+
+    @Override
+    public BartNDArray copy() {
+        return new BartComplexInt16NDArray(this, scale);
+    }
+
+    @Override
+    protected void writeTo(FloatBuffer buffer) {
+        float[] chunk = new float[Math.min(data.length, CONVERSION_CHUNK_SIZE * 2)];
+        for (int start = 0; start < data.length; start += chunk.length) {
+            int end = Math.min(start + chunk.length, data.length);
+            for (int i = start; i < end; i++)
+                chunk[i - start] = data[i] * scale;
+            buffer.put(chunk, 0, end - start);
+        }
+    }
+
+    @Override
+    public Float getRealUnchecked(int linearIndex) {
+        return data[linearIndex * 2] * scale;
+    }
+
+    @Override
+    public Float getImagUnchecked(int linearIndex) {
+        return data[linearIndex * 2 + 1] * scale;
+    }
+
+    @Override
+    protected void setRealUnchecked(Float value, int linearIndex) {
+        data[linearIndex * 2] = quantize(value);
+    }
+
+    @Override
+    protected void setImagUnchecked(Float value, int linearIndex) {
+        data[linearIndex * 2 + 1] = quantize(value);
+    }
+
+    @Override
+    protected BartComplexInt16NDArray createNewNDArrayOfSameTypeAsMe(int... dims) {
+        return new BartComplexInt16NDArray(scale, dims);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof BartComplexInt16NDArray && ((BartComplexInt16NDArray) obj).scale == scale
+                && areBartDimsCompatible(obj))
+            return Arrays.equals(shape, ((BartComplexInt16NDArray) obj).shape) &&
+                Arrays.equals(data, ((BartComplexInt16NDArray) obj).data);
+        return super.equals(obj);
+    }
+
+    private short quantize(float value) {
+        float quantized = Math.round(value / scale);
+        return (short) Math.max(-Short.MAX_VALUE, Math.min(Short.MAX_VALUE, quantized));
+    }
+
+    private static void checkScale(float scale) {
+        if (!(scale > 0) || Float.isInfinite(scale))
+            throw new IllegalArgumentException(String.format(BartErrors.INVALID_SCALE_FACTOR, scale));
+    }
+
+    private static float computeScale(NDArray<?> array) {
+        double maxAbs;
+        if (array.dtype() == Complex.class)
+            maxAbs = ((ComplexNDArray<?>) array).stream()
+                .mapToDouble(value -> Math.max(Math.abs(value.getReal()), Math.abs(value.getImaginary())))
+                .max().orElse(0);
+        else
+            maxAbs = array.stream()
+                .mapToDouble(value -> Math.abs(((Number) value).doubleValue()))
+                .max().orElse(0);
+        return maxAbs > 0 && Double.isFinite(maxAbs) ? (float) (maxAbs / Short.MAX_VALUE) : 1f;
+    }
+
+}
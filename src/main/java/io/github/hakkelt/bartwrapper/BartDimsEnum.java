@@ -35,5 +35,19 @@ public enum BartDimsEnum {
     /** Averaging dimension */
     _14_AVG,    // NOSONAR
     /** Unused dimension */
-    _15_UNUSED, // NOSONAR
+    _15_UNUSED; // NOSONAR
+
+    /**
+     * Computes the bitmask of the given dimensions, as expected by the flags arguments of BART commands
+     * (e.g. {@code bart fft <bitmask>} or {@code bart pics -L <flags>}).
+     *
+     * @param dims the selected dimensions
+     * @return bitmask with the bits of the selected dimensions set
+     */
+    public static long bitmask(BartDimsEnum... dims) {
+        long bitmask = 0;
+        for (BartDimsEnum dim : dims)
+            bitmask |= 1L << dim.ordinal();
+        return bitmask;
+    }
 }
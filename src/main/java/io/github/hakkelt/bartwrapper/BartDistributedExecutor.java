@@ -0,0 +1,256 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads BART commands over a group of workers (usually {@link BartRemoteExecutor}s).
+ *
+ * <p>Each invocation is sent to the available worker with the fewest invocations in flight. If a worker fails
+ * ({@link BartTransportException}), it is skipped for a while and the invocation is retried on another worker,
+ * at most {@code maxRetries} times. Failures of the BART command itself are not retried.</p>
+ *
+ * <p>{@link #runSplit(BartDimsEnum, BartOptions, Object...)} splits the array arguments along a BART dimension
+ * (e.g. the slices of a multi-slice acquisition), runs the pieces on the workers in parallel, and joins the outputs.</p>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+try (BartDistributedExecutor executor = new BartDistributedExecutor(List.of(
+        new BartRemoteExecutor(BartTransport.socket("worker-1", 9123)),
+        new BartRemoteExecutor(BartTransport.socket("worker-2", 9123))))) {
+    BartNDArray images = executor.runSplit(BartDimsEnum._13_SLICE, "pics", "-l1", "-r0.01", kspace, sensitivities);
+}
+ * }</pre></blockquote>
+ */
+public class BartDistributedExecutor implements BartExecutor, AutoCloseable {
+    /** Default number of times a failed invocation is retried on another worker */
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    /** Default time for which a failed worker is skipped */
+    public static final Duration DEFAULT_QUARANTINE = Duration.ofSeconds(30);
+
+    private final List<Worker> workers = new ArrayList<>();
+    private final ExecutorService pieces = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "bart-distributed");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+    private volatile Duration quarantine = DEFAULT_QUARANTINE;
+    private int nextWorker = 0;
+
+    /**
+     * Creates an executor that spreads the invocations over the given workers.
+     *
+     * @param workers the workers
+     */
+    public BartDistributedExecutor(List<? extends BartExecutor> workers) {
+        if (workers.isEmpty())
+            throw new IllegalArgumentException(BartErrors.NO_WORKERS);
+        for (BartExecutor executor : workers)
+            this.workers.add(new Worker(executor));
+    }
+
+    /**
+     * Sets how many times a failed invocation is retried on another worker.
+     *
+     * @param maxRetries the number of retries
+     * @return this executor
+     */
+    public BartDistributedExecutor maxRetries(int maxRetries) {
+        if (maxRetries < 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "number of retries", maxRetries));
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Sets how long a failed worker is skipped.
+     *
+     * @param quarantine the duration
+     * @return this executor
+     */
+    public BartDistributedExecutor quarantine(Duration quarantine) {
+        if (quarantine == null || quarantine.isNegative())
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "quarantine", quarantine));
+        this.quarantine = quarantine;
+        return this;
+    }
+
+    @Override
+    public BartNDArray run(BartOptions options, Object... args) throws BartException {
+        return invoke(executor -> executor.run(options, args));
+    }
+
+    @Override
+    public String read(BartOptions options, Object... args) throws BartException {
+        return invoke(executor -> executor.read(options, args));
+    }
+
+    @Override
+    public BartNDArray[] runMulti(BartOptions options, int outputs, Object... args) throws BartException {
+        return invoke(executor -> executor.runMulti(options, outputs, args));
+    }
+
+    /**
+     * Splits the array arguments along the given BART dimension, runs the command for each piece in parallel,
+     * and joins the outputs along the same dimension. Arrays whose size along the dimension is 1 (e.g. coil
+     * sensitivities shared by all slices) are passed to each piece unchanged.
+     *
+     * @param dim the dimension to split along, e.g. {@link BartDimsEnum#_13_SLICE}
+     * @param args name of BART command and its arguments
+     * @return NDArray that holds the joined output of the BART command
+     * @throws BartException when running BART fails for any piece
+     */
+    public BartNDArray runSplit(BartDimsEnum dim, Object... args) throws BartException {
+        return runSplit(dim, new BartOptions(), args);
+    }
+
+    /**
+     * Splits the array arguments along the given BART dimension, runs the command for each piece in parallel,
+     * and joins the outputs along the same dimension. Arrays whose size along the dimension is 1 (e.g. coil
+     * sensitivities shared by all slices) are passed to each piece unchanged.
+     *
+     * @param dim the dimension to split along, e.g. {@link BartDimsEnum#_13_SLICE}
+     * @param options timeout and resource limits of the invocation of each piece
+     * @param args name of BART command and its arguments
+     * @return NDArray that holds the joined output of the BART command
+     * @throws BartException when running BART fails for any piece
+     */
+    public BartNDArray runSplit(BartDimsEnum dim, BartOptions options, Object... args) throws BartException {
+        Object[][] pieceArgs = BartSplitter.split(dim, args);
+        if (pieceArgs.length == 1)
+            return run(options, args);
+        List<Future<BartNDArray>> futures = new ArrayList<>();
+        for (Object[] piece : pieceArgs)
+            futures.add(pieces.submit(() -> run(options, piece)));
+        return BartSplitter.join(dim, await(futures, args[0]));
+    }
+
+    /**
+     * Runs the commands of the spec on each worker in parallel (see {@link Bart#warmUp(BartWarmUpSpec)}).
+     *
+     * @param spec the commands and input shapes to run
+     * @throws BartException when running any of the commands fails on any worker
+     */
+    public void warmUp(BartWarmUpSpec spec) throws BartException {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Worker worker : workers)
+            futures.add(pieces.submit(() -> {
+                spec.runOn(worker.executor);
+                return null;
+            }));
+        await(futures, "warm-up");
+    }
+
+    /**
+     * Returns the number of invocations in flight on each worker.
+     *
+     * @return the number of invocations in flight, in the order of the workers
+     */
+    public int[] getLoad() {
+        return workers.stream().mapToInt(worker -> worker.inFlight.get()).toArray();
+    }
+
+    /**
+     * Stops the threads that run the pieces of split invocations.
+     */
+    @Override
+    public void close() {
+        pieces.shutdownNow();
+    }
+
+    /**
+     * Waits for all futures and returns their results. If any of them fails, the others are cancelled.
+     */
+    static <T> List<T> await(List<Future<T>> futures, Object command) throws BartException {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : futures)
+                results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BartException(String.format(BartErrors.BART_INTERRUPTED, command));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BartException)
+                throw (BartException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new BartException(e.getCause().getMessage());
+        } finally {
+            for (Future<T> future : futures)
+                future.cancel(true);
+        }
+        return results;
+    }
+
+    private <T> T invoke(Invocation<T> invocation) throws BartException {
+        Set<Worker> tried = new HashSet<>();
+        BartTransportException failure = null;
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            Worker worker = select(tried);
+            if (worker == null)
+                break;
+            tried.add(worker);
+            worker.inFlight.incrementAndGet();
+            try {
+                return invocation.apply(worker.executor);
+            } catch (BartTransportException e) {
+                worker.failedUntil = System.nanoTime() + quarantine.toNanos();
+                failure = e;
+            } finally {
+                worker.inFlight.decrementAndGet();
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Selects the worker with the fewest invocations in flight among those not tried yet, preferring the ones
+     * that have not failed recently. Ties are broken in round-robin order.
+     */
+    private synchronized Worker select(Set<Worker> tried) {
+        long now = System.nanoTime();
+        Worker selected = null;
+        boolean selectedIsHealthy = false;
+        for (int i = 0; i < workers.size(); i++) {
+            Worker worker = workers.get((nextWorker + i) % workers.size());
+            if (tried.contains(worker))
+                continue;
+            boolean healthy = now - worker.failedUntil >= 0;
+            if (selected == null || (healthy && !selectedIsHealthy)
+                    || (healthy == selectedIsHealthy && worker.inFlight.get() < selected.inFlight.get())) {
+                selected = worker;
+                selectedIsHealthy = healthy;
+            }
+        }
+        if (selected != null)
+            nextWorker = (workers.indexOf(selected) + 1) % workers.size();
+        return selected;
+    }
+
+    @FunctionalInterface
+    private interface Invocation<T> {
+        T apply(BartExecutor executor) throws BartException;
+    }
+
+    private static class Worker {
+        final BartExecutor executor;
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile long failedUntil;
+
+        Worker(BartExecutor executor) {
+            this.executor = executor;
+            this.failedUntil = System.nanoTime();
+        }
+    }
+
+}
@@ -24,5 +24,91 @@ public class BartErrors {
         "The extension of the file must be '.ra'!";
     public static final String LOAD_FILE_UNSUPPORTED_FORMAT =
         "Cannot load file %s: unsupported format.";
+    public static final String RESHAPE_LENGTH_MISMATCH =
+        "Cannot reshape array of shape %s to shape %s: the number of entries differs!";
+    public static final String NEGATIVE_POOL_SIZE =
+        "The size limit of the array pool must be non-negative, but %d was given!";
+    public static final String REAL_ARRAY_NONZERO_IMAGINARY_PART =
+        "Cannot store a value with nonzero imaginary part in a real-valued array!";
+    public static final String INVALID_SCALE_FACTOR =
+        "The scale factor must be a positive finite number, but %s was given!";
+    public static final String INVALID_QUANTILE =
+        "The quantile must be between 0 and 1, but %s was given!";
+    public static final String BART_TIMEOUT =
+        "BART command %s did not finish within %s and was killed!";
+    public static final String BART_INTERRUPTED =
+        "BART command %s was interrupted!";
+    public static final String INVALID_TIMEOUT =
+        "The time limit of BART commands must be a positive ISO-8601 duration (e.g. PT10M), but %s was given!";
+    public static final String NON_POSITIVE_LIMIT =
+        "The %s must be positive, but %s was given!";
+    public static final String RESOURCE_LIMITS_UNSUPPORTED =
+        "Resource limits require the prlimit utility, but it was not found on the PATH!";
+    public static final String SCHEDULER_CLOSED =
+        "The scheduler is closed and does not accept new jobs!";
+    public static final String REMOTE_FILE_ARGUMENT =
+        "Cannot pass file %s to a remote BART worker; pass its content as an NDArray instead!";
+    public static final String INVALID_WORKER_REQUEST =
+        "Invalid request was received from a BART client!";
+    public static final String INVALID_WORKER_RESPONSE =
+        "Invalid response was received from a BART worker!";
+    public static final String WORKER_FAILED =
+        "Communication with BART worker %s failed: %s";
+    public static final String WORKER_TIMED_OUT =
+        "no response within the time limit of the invocation";
+    public static final String WORKER_ALREADY_STARTED =
+        "The BART worker is already started!";
+    public static final String NO_WORKERS =
+        "At least one worker must be given!";
+    public static final String SPLIT_SIZE_MISMATCH =
+        "Cannot split the inputs along %s: their sizes (%d and %d) differ!";
+    public static final String SPLIT_RESULT_SHAPE_MISMATCH =
+        "Cannot join the outputs: shapes %s and %s don't match!";
+    public static final String TOO_MANY_DIMS_TO_SPLIT =
+        "Cannot split an array with %d dimensions; BART supports at most %d dimensions!";
+    public static final String BART_EXECUTABLE_NOT_FOUND =
+        "The BART executable was not found: set the bartwrapper.exe system property, or put bart.exe on the class path!";
+    public static final String CANNOT_MAKE_EXECUTABLE =
+        "Cannot make %s executable!";
+    public static final String UNKNOWN_COMMAND_OPTION =
+        "Option %s is not supported by BART command %s!";
+    public static final String INVALID_COMMAND_OPTION =
+        "Invalid argument for option %s of BART command %s: %s was given, but the option expects %s!";
+    public static final String MISSING_COMMAND_INPUT =
+        "Input %s of BART command %s is not given!";
+    public static final String STORED_ARRAY_EVICTED =
+        "The stored array %s was evicted from the store!";
+    public static final String INVALID_ITERATION_LIMITS =
+        "The maximal number of iterations (%d) must not be less than the minimal number (%d)!";
+    public static final String DUPLICATE_STAGE =
+        "The pipeline already has a stage named %s!";
+    public static final String UNKNOWN_STAGE =
+        "The pipeline has no stage named %s!";
+    public static final String PIPELINE_ALREADY_STARTED =
+        "The pipeline is already started!";
+    public static final String PIPELINE_NOT_RUNNING =
+        "The pipeline is not started or its input is already finished!";
+    public static final String DUPLICATE_WORKFLOW_NODE =
+        "The workflow already has a node named %s!";
+    public static final String UNKNOWN_WORKFLOW_NODE =
+        "The workflow has no node named %s!";
+    public static final String UNKNOWN_WORKFLOW_INPUT =
+        "Node %s, used by node %s, is not defined in the workflow!";
+    public static final String INVALID_WORKFLOW_OUTPUT =
+        "Output %d of workflow node %s does not exist!";
+    public static final String WORKFLOW_CYCLE =
+        "The workflow has a cycle through node %s!";
+    public static final String SWEEP_AXES_MISMATCH =
+        "The sweep stacks the outputs along %d dimensions, but %d parameters were given!";
+    public static final String DUPLICATE_SWEEP_DIMENSION =
+        "The sweep stacks more than one parameter along %s!";
+    public static final String EMPTY_SWEEP_AXIS =
+        "No values were given for the parameter stacked along %s!";
+    public static final String INVALID_ENERGY_FRACTION =
+        "The fraction of energy must be greater than 0 and at most 1, but %s was given!";
+    public static final String ENERGY_NOT_REPORTED =
+        "ESPIRiT coil compression does not report the energy of the virtual coils, so it needs a number of virtual coils!";
+    public static final String ENERGY_NOT_RECEIVED =
+        "cc did not report the energy of the virtual coils; the executor must apply the environment and forward the output of BART!";
 
 }
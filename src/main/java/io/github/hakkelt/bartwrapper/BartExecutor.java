@@ -0,0 +1,101 @@
+package io.github.hakkelt.bartwrapper;
+
+/**
+ * Something that can run BART commands: the local BART executable ({@link #LOCAL}), a remote worker
+ * ({@link BartRemoteExecutor}) or a group of workers ({@link BartDistributedExecutor}).
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartExecutor executor = new BartRemoteExecutor(BartTransport.socket("worker-1", 9123));
+BartNDArray image = executor.run("pics", "-l1", "-r0.01", kspace, sensitivities);
+ * }</pre></blockquote>
+ */
+public interface BartExecutor {
+
+    /** Runs commands by the local BART executable, i.e. by {@link Bart#run(BartOptions, Object...)} and {@link Bart#read(BartOptions, Object...)} */
+    public static final BartExecutor LOCAL = new BartExecutor() {
+        @Override
+        public BartNDArray run(BartOptions options, Object... args) throws BartException {
+            return Bart.run(options, args);
+        }
+
+        @Override
+        public String read(BartOptions options, Object... args) throws BartException {
+            return Bart.read(options, args);
+        }
+
+        @Override
+        public BartNDArray[] runMulti(BartOptions options, int outputs, Object... args) throws BartException {
+            return Bart.runMulti(options, outputs, args);
+        }
+    };
+
+    /**
+     * Executes a BART command and returns its output array (see {@link Bart#run(BartOptions, Object...)}).
+     *
+     * @param options timeout and resource limits of the invocation
+     * @param args name of BART command and its arguments
+     * @return NDArray that holds the output of the BART command
+     * @throws BartException when running BART fails for any reason
+     */
+    public BartNDArray run(BartOptions options, Object... args) throws BartException;
+
+    /**
+     * Executes a BART command and returns its output as String (see {@link Bart#read(BartOptions, Object...)}).
+     *
+     * @param options timeout and resource limits of the invocation
+     * @param args name of BART command and its arguments
+     * @return result of the BART command
+     * @throws BartException when running BART fails for any reason
+     */
+    public String read(BartOptions options, Object... args) throws BartException;
+
+    /**
+     * Executes a BART command that saves its outputs to several files, and returns all of them
+     * (see {@link Bart#runMulti(BartOptions, int, Object...)}).
+     *
+     * @param options timeout and resource limits of the invocation
+     * @param outputs the number of output files
+     * @param args name of BART command and its arguments
+     * @return NDArrays that hold the outputs of the BART command, in the order of the output files
+     * @throws BartException when running BART fails for any reason
+     */
+    public BartNDArray[] runMulti(BartOptions options, int outputs, Object... args) throws BartException;
+
+    /**
+     * Executes a BART command that saves its outputs to several files, and returns all of them
+     * (see {@link Bart#runMulti(int, Object...)}).
+     *
+     * @param outputs the number of output files
+     * @param args name of BART command and its arguments
+     * @return NDArrays that hold the outputs of the BART command, in the order of the output files
+     * @throws BartException when running BART fails for any reason
+     */
+    public default BartNDArray[] runMulti(int outputs, Object... args) throws BartException {
+        return runMulti(new BartOptions(), outputs, args);
+    }
+
+    /**
+     * Executes a BART command and returns its output array (see {@link Bart#run(Object...)}).
+     *
+     * @param args name of BART command and its arguments
+     * @return NDArray that holds the output of the BART command
+     * @throws BartException when running BART fails for any reason
+     */
+    public default BartNDArray run(Object... args) throws BartException {
+        return run(new BartOptions(), args);
+    }
+
+    /**
+     * Executes a BART command and returns its output as String (see {@link Bart#read(Object...)}).
+     *
+     * @param args name of BART command and its arguments
+     * @return result of the BART command
+     * @throws BartException when running BART fails for any reason
+     */
+    public default String read(Object... args) throws BartException {
+        return read(new BartOptions(), args);
+    }
+
+}
@@ -0,0 +1,205 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simple in-memory implementation of {@link BartMetrics} that keeps a histogram of the duration of
+ * each phase and of the whole invocation for each BART command.
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartHistogramMetrics metrics = new BartHistogramMetrics();
+Bart.setMetrics(metrics);
+Bart.run("cabs", array);
+double medianWallTime = metrics.getHistogram("cabs", BartPhase.BART_WALL_TIME).getPercentile(0.5);
+ * }</pre></blockquote>
+ */
+public class BartHistogramMetrics implements BartMetrics {
+    private final Map<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordPhase(String command, BartPhase phase, long nanos) {
+        getCommandMetrics(command).phases[phase.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void recordBytesWritten(String command, long bytes) {
+        getCommandMetrics(command).bytesWritten.add(bytes);
+    }
+
+    @Override
+    public void recordInvocation(String command, long nanos, boolean successful) {
+        CommandMetrics metrics = getCommandMetrics(command);
+        metrics.total.record(nanos);
+        if (!successful)
+            metrics.failures.increment();
+    }
+
+    /**
+     * Returns the histogram of the durations of the given phase of the given command.
+     *
+     * @param command name of the BART command
+     * @param phase the phase of the invocation
+     * @return histogram of durations in nanoseconds
+     */
+    public Histogram getHistogram(String command, BartPhase phase) {
+        return getCommandMetrics(command).phases[phase.ordinal()];
+    }
+
+    /**
+     * Returns the histogram of the total durations of the invocations of the given command.
+     * The number of invocations is given by {@link Histogram#getCount()}.
+     *
+     * @param command name of the BART command
+     * @return histogram of durations in nanoseconds
+     */
+    public Histogram getTotalHistogram(String command) {
+        return getCommandMetrics(command).total;
+    }
+
+    /**
+     * Returns the number of bytes written to temp files to pass input arrays to the given command.
+     *
+     * @param command name of the BART command
+     * @return number of bytes written
+     */
+    public long getBytesWritten(String command) {
+        return getCommandMetrics(command).bytesWritten.sum();
+    }
+
+    /**
+     * Returns the number of invocations of the given command that failed.
+     *
+     * @param command name of the BART command
+     * @return number of failed invocations
+     */
+    public long getFailureCount(String command) {
+        return getCommandMetrics(command).failures.sum();
+    }
+
+    /**
+     * Discards everything recorded so far.
+     */
+    public void reset() {
+        commands.clear();
+    }
+
+    private CommandMetrics getCommandMetrics(String command) {
+        return commands.computeIfAbsent(command, key -> new CommandMetrics());
+    }
+
+    private static class CommandMetrics {
+        final Histogram[] phases = new Histogram[BartPhase.values().length];
+        final Histogram total = new Histogram();
+        final LongAdder bytesWritten = new LongAdder();
+        final LongAdder failures = new LongAdder();
+
+        CommandMetrics() {
+            for (int i = 0; i < phases.length; i++)
+                phases[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Thread-safe histogram of non-negative values with logarithmic buckets. Each power of two is divided
+     * into 16 buckets, so the relative error of the reported percentiles is at most 1/16.
+     */
+    public static class Histogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Records a value. Negative values are recorded as zero.
+         *
+         * @param value the value to record
+         */
+        public void record(long value) {
+            value = Math.max(0, value);
+            counts.incrementAndGet(bucketIndex(value));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        /**
+         * Returns the number of recorded values.
+         *
+         * @return the number of recorded values
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Returns the mean of the recorded values, or NaN if nothing has been recorded.
+         *
+         * @return the mean of the recorded values
+         */
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? Double.NaN : sum.doubleValue() / n;
+        }
+
+        /**
+         * Returns the largest recorded value, or 0 if nothing has been recorded.
+         *
+         * @return the largest recorded value
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Returns an approximation of the given percentile of the recorded values (the upper bound of the bucket
+         * that contains it), or NaN if nothing has been recorded.
+         *
+         * @param quantile the percentile as a number between 0 and 1, e.g. 0.99 for the 99th percentile
+         * @return approximation of the percentile
+         */
+        public double getPercentile(double quantile) {
+            if (quantile < 0 || quantile > 1)
+                throw new IllegalArgumentException(String.format(BartErrors.INVALID_QUANTILE, quantile));
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++)
+                n += counts.get(i);
+            if (n == 0)
+                return Double.NaN;
+            long rank = Math.max(1, (long) Math.ceil(quantile * n));
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += counts.get(i);
+                if (cumulative >= rank)
+                    return Math.min(bucketUpperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        static int bucketIndex(long value) {
+            if (value < SUB_BUCKETS)
+                return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long bucketUpperBound(int index) {
+            if (index < SUB_BUCKETS)
+                return index;
+            int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long width = 1L << (exponent - SUB_BUCKET_BITS);
+            return (SUB_BUCKETS + index % SUB_BUCKETS) * width + width - 1;
+        }
+    }
+
+}
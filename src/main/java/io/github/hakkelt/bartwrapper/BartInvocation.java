@@ -0,0 +1,61 @@
+package io.github.hakkelt.bartwrapper;
+
+/**
+ * Collects the timers and counters of a single BART invocation and reports them
+ * to the {@link BartMetrics} in use and to JDK Flight Recorder.
+ */
+final class BartInvocation {
+    private final BartMetrics metrics;
+    private final String command;
+    private final long start;
+    private final long[] durations = new long[BartPhase.values().length];
+    private long bytesWritten = 0;
+    private final BartInvocationEvent event = new BartInvocationEvent();
+
+    BartInvocation(BartMetrics metrics, Object... args) {
+        this.metrics = metrics;
+        this.command = args.length > 0 ? String.valueOf(args[0]) : "";
+        event.begin();
+        start = System.nanoTime();
+    }
+
+    /**
+     * Records the end of a phase.
+     * 
+     * @param phase the phase that ended
+     * @param phaseStart value of System.nanoTime() at the start of the phase
+     * @return the current value of System.nanoTime(), i.e. the start of the next phase
+     */
+    long endPhase(BartPhase phase, long phaseStart) {
+        long now = System.nanoTime();
+        durations[phase.ordinal()] += now - phaseStart;
+        metrics.recordPhase(command, phase, now - phaseStart);
+        return now;
+    }
+
+    String getCommand() {
+        return command;
+    }
+
+    void addBytesWritten(long bytes) {
+        bytesWritten += bytes;
+    }
+
+    void finish(boolean successful) {
+        long end = System.nanoTime();
+        metrics.recordBytesWritten(command, bytesWritten);
+        metrics.recordInvocation(command, end - start, successful);
+        event.end();
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.convertInputs = durations[BartPhase.CONVERT_INPUTS.ordinal()];
+            event.processStart = durations[BartPhase.PROCESS_START.ordinal()];
+            event.bartWallTime = durations[BartPhase.BART_WALL_TIME.ordinal()];
+            event.loadOutput = durations[BartPhase.LOAD_OUTPUT.ordinal()];
+            event.cleanUp = durations[BartPhase.CLEAN_UP.ordinal()];
+            event.bytesWritten = bytesWritten;
+            event.successful = successful;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.github.hakkelt.bartwrapper;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event that is committed for every BART invocation.
+ */
+@Name("io.github.hakkelt.bartwrapper.BartInvocation")
+@Label("BART Invocation")
+@Category("BART")
+@Description("Execution of a BART command by the Java driver")
+class BartInvocationEvent extends Event {
+    @Label("Command")
+    String command;
+
+    @Label("Input Conversion")
+    @Timespan(Timespan.NANOSECONDS)
+    long convertInputs;
+
+    @Label("Process Start")
+    @Timespan(Timespan.NANOSECONDS)
+    long processStart;
+
+    @Label("BART Wall Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long bartWallTime;
+
+    @Label("Output Load")
+    @Timespan(Timespan.NANOSECONDS)
+    long loadOutput;
+
+    @Label("Clean Up")
+    @Timespan(Timespan.NANOSECONDS)
+    long cleanUp;
+
+    @Label("Temp File Bytes Written")
+    @DataAmount
+    long bytesWritten;
+
+    @Label("Successful")
+    boolean successful;
+}
@@ -0,0 +1,591 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.nio.FloatBuffer;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.complex.Complex;
+
+import io.github.hakkelt.ndarrays.NDArray;
+import io.github.hakkelt.ndarrays.NDArrayUtils;
+
+/**
+ * BartNDArray whose entries are defined by an arithmetic expression of other arrays and scalars.
+ *
+ * <p>The non-inplace arithmetic methods (add, subtract, multiply, divide) don't compute anything,
+ * they only extend the expression. The expression is evaluated in a single pass, chunk by chunk, when
+ * the entries are first accessed, when the array is copied, or when it is saved (e.g. passed to
+ * {@link Bart#run}), so no full-size intermediate array is allocated for the individual operations.
+ * {@link #abs()} is also fused into the same pass. Operands are referenced, not copied, so they must not
+ * be modified until the expression is evaluated.</p>
+ *
+ * <p>Lazy arrays are created by calling {@link BartNDArray#lazy()} on any BartNDArray.</p>
+ */
+public class BartLazyNDArray extends AbstractBartNDArray {
+    /** Number of entries evaluated at once; the chunk buffers of a moderately deep expression fit in cache */
+    protected static final int EVALUATION_CHUNK_SIZE = 4096;
+
+    protected Expression expression;
+    protected BartComplexFloatNDArray evaluated = null;
+    protected boolean parallel = false;
+
+    /**
+     * Creates a lazy array that refers to the given array.
+     *
+     * @param array the array wrapped by the expression
+     */
+    public BartLazyNDArray(BartNDArray array) {
+        baseConstuctor(array.shape());
+        if (array instanceof BartLazyNDArray) {
+            BartLazyNDArray lazyArray = (BartLazyNDArray) array;
+            expression = lazyArray.evaluated != null ? new Source(lazyArray.evaluated) : lazyArray.expression;
+            parallel = lazyArray.parallel;
+        } else
+            expression = new Source(array);
+        if (array.areBartDimsSpecified())
+            bartDims = array.getBartDims();
+    }
+
+    protected BartLazyNDArray(BartLazyNDArray other, Expression expression) {
+        baseConstuctor(other.shape);
+        this.expression = expression;
+        this.parallel = other.parallel;
+        this.bartDims = other.bartDims;
+    }
+
+    /**
+     * Sets whether the chunks of the expression are evaluated in parallel.
+     * Arrays derived from this array by arithmetic operations inherit this setting.
+     *
+     * @param parallel true if the chunks should be evaluated in parallel
+     * @return this array
+     */
+    public BartLazyNDArray parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Checks if the expression has already been evaluated.
+     *
+     * @return true if the entries are already computed and stored
+     */
+    public boolean isEvaluated() {
+        return evaluated != null;
+    }
+
+    /**
+     * Evaluates the expression (if it hasn't been evaluated yet) and returns the computed entries.
+     * The returned array is the storage of this array, so changes to it are reflected in this array.
+     *
+     * @return the computed entries
+     */
+    public BartComplexFloatNDArray evaluate() {
+        if (evaluated == null) {
+            BartComplexFloatNDArray result = BartComplexFloatNDArray.createUninitialized(shape);
+            evaluateChunks((start, length, values) -> System.arraycopy(values, 0, result.data, start * 2, length * 2));
+            evaluated = result;
+            expression = new Source(result); // operands are no longer needed
+        }
+        return evaluated;
+    }
+
+    @Override
+    public BartLazyNDArray lazy() {
+        return this;
+    }
+
+    @Override
+    public BartNDArray similar() {
+        return new BartComplexFloatNDArray(shape);
+    }
+
+    @Override
+    public BartNDArray copy() {
+        if (evaluated != null)
+            return evaluated.copy();
+        BartComplexFloatNDArray result = BartComplexFloatNDArray.createUninitialized(shape);
+        evaluateChunks((start, length, values) -> System.arraycopy(values, 0, result.data, start * 2, length * 2));
+        result.bartDims = bartDims;
+        return result;
+    }
+
+    @Override
+    public BartLazyNDArray copyFrom(NDArray<?> array) {
+        evaluate().copyFrom(array);
+        return this;
+    }
+
+    @Override
+    public void release() {
+        if (evaluated != null)
+            evaluated.release();
+        evaluated = null;
+        expression = null;
+    }
+
+    @Override
+    protected void writeTo(FloatBuffer buffer) {
+        if (evaluated != null) {
+            evaluated.writeTo(buffer);
+            return;
+        }
+        int base = buffer.position();
+        evaluateChunks((start, length, values) -> buffer.duplicate().position(base + start * 2).put(values, 0, length * 2));
+        buffer.position(base + length() * 2);
+    }
+
+    @Override
+    public NDArray<Float> abs() {
+        if (evaluated != null)
+            return evaluated.abs();
+        float[] result = new float[length()];
+        evaluateChunks((start, length, values) -> {
+            for (int i = 0; i < length; i++)
+                result[start + i] = (float) abs(values[i * 2], values[i * 2 + 1]);
+        });
+        return createNewRealNDArrayOfSameTypeAsMe(shape).copyFrom(result);
+    }
+
+    @Override
+    public Float getRealUnchecked(int linearIndex) {
+        return evaluate().getRealUnchecked(linearIndex);
+    }
+
+    @Override
+    public Float getImagUnchecked(int linearIndex) {
+        return evaluate().getImagUnchecked(linearIndex);
+    }
+
+    @Override
+    protected void setRealUnchecked(Float value, int linearIndex) {
+        evaluate().setRealUnchecked(value, linearIndex);
+    }
+
+    @Override
+    protected void setImagUnchecked(Float value, int linearIndex) {
+        evaluate().setImagUnchecked(value, linearIndex);
+    }
+
+    @Override
+    protected BartComplexFloatNDArray createNewNDArrayOfSameTypeAsMe(int... dims) {
+        return new BartComplexFloatNDArray(dims);
+    }
+
+    @Override
+    public BartNDArray add(byte addend) {
+        return combine(Operation.ADD, new Constant(addend, 0));
+    }
+
+    @Override
+    public BartNDArray add(short addend) {
+        return combine(Operation.ADD, new Constant(addend, 0));
+    }
+
+    @Override
+    public BartNDArray add(int addend) {
+        return combine(Operation.ADD, new Constant(addend, 0));
+    }
+
+    @Override
+    public BartNDArray add(long addend) {
+        return combine(Operation.ADD, new Constant(addend, 0));
+    }
+
+    @Override
+    public BartNDArray add(float addend) {
+        return combine(Operation.ADD, new Constant(addend, 0));
+    }
+
+    @Override
+    public BartNDArray add(double addend) {
+        return combine(Operation.ADD, new Constant(addend, 0));
+    }
+
+    @Override
+    public BartNDArray add(NDArray<?> addend) {
+        return combine(Operation.ADD, operand(addend));
+    }
+
+    @Override
+    public BartNDArray add(Object... addends) {
+        if (!areOperandsSupported(addends))
+            return copy().addInplace(addends);
+        return combine(Operation.ADD, addends);
+    }
+
+    @Override
+    public BartNDArray subtract(byte substrahend) {
+        return combine(Operation.SUBTRACT, new Constant(substrahend, 0));
+    }
+
+    @Override
+    public BartNDArray subtract(short substrahend) {
+        return combine(Operation.SUBTRACT, new Constant(substrahend, 0));
+    }
+
+    @Override
+    public BartNDArray subtract(int substrahend) {
+        return combine(Operation.SUBTRACT, new Constant(substrahend, 0));
+    }
+
+    @Override
+    public BartNDArray subtract(long substrahend) {
+        return combine(Operation.SUBTRACT, new Constant(substrahend, 0));
+    }
+
+    @Override
+    public BartNDArray subtract(float substrahend) {
+        return combine(Operation.SUBTRACT, new Constant(substrahend, 0));
+    }
+
+    @Override
+    public BartNDArray subtract(double substrahend) {
+        return combine(Operation.SUBTRACT, new Constant(substrahend, 0));
+    }
+
+    @Override
+    public BartNDArray subtract(NDArray<?> substrahend) {
+        return combine(Operation.SUBTRACT, operand(substrahend));
+    }
+
+    @Override
+    public BartNDArray subtract(Object... substrahends) {
+        if (!areOperandsSupported(substrahends))
+            return copy().subtractInplace(substrahends);
+        return combine(Operation.SUBTRACT, substrahends);
+    }
+
+    @Override
+    public BartNDArray multiply(byte multiplicand) {
+        return combine(Operation.MULTIPLY, new Constant(multiplicand, 0));
+    }
+
+    @Override
+    public BartNDArray multiply(short multiplicand) {
+        return combine(Operation.MULTIPLY, new Constant(multiplicand, 0));
+    }
+
+    @Override
+    public BartNDArray multiply(int multiplicand) {
+        return combine(Operation.MULTIPLY, new Constant(multiplicand, 0));
+    }
+
+    @Override
+    public BartNDArray multiply(long multiplicand) {
+        return combine(Operation.MULTIPLY, new Constant(multiplicand, 0));
+    }
+
+    @Override
+    public BartNDArray multiply(float multiplicand) {
+        return combine(Operation.MULTIPLY, new Constant(multiplicand, 0));
+    }
+
+    @Override
+    public BartNDArray multiply(double multiplicand) {
+        return combine(Operation.MULTIPLY, new Constant(multiplicand, 0));
+    }
+
+    @Override
+    public BartNDArray multiply(NDArray<?> multiplicand) {
+        return combine(Operation.MULTIPLY, operand(multiplicand));
+    }
+
+    @Override
+    public BartNDArray multiply(Object... multiplicands) {
+        if (!areOperandsSupported(multiplicands))
+            return copy().multiplyInplace(multiplicands);
+        return combine(Operation.MULTIPLY, multiplicands);
+    }
+
+    @Override
+    public BartNDArray divide(byte divisor) {
+        return combine(Operation.DIVIDE, new Constant(divisor, 0));
+    }
+
+    @Override
+    public BartNDArray divide(short divisor) {
+        return combine(Operation.DIVIDE, new Constant(divisor, 0));
+    }
+
+    @Override
+    public BartNDArray divide(int divisor) {
+        return combine(Operation.DIVIDE, new Constant(divisor, 0));
+    }
+
+    @Override
+    public BartNDArray divide(long divisor) {
+        return combine(Operation.DIVIDE, new Constant(divisor, 0));
+    }
+
+    @Override
+    public BartNDArray divide(float divisor) {
+        return combine(Operation.DIVIDE, new Constant(divisor, 0));
+    }
+
+    @Override
+    public BartNDArray divide(double divisor) {
+        return combine(Operation.DIVIDE, new Constant(divisor, 0));
+    }
+
+    @Override
+    public BartNDArray divide(NDArray<?> divisor) {
+        return combine(Operation.DIVIDE, operand(divisor));
+    }
+
+    @Override
+    public BartNDArray divide(Object... divisors) {
+        if (!areOperandsSupported(divisors))
+            return copy().divideInplace(divisors);
+        return combine(Operation.DIVIDE, divisors);
+    }
+
+    private BartLazyNDArray combine(Operation operation, Expression right) {
+        return new BartLazyNDArray(this, new Binary(operation, evaluated != null ? new Source(evaluated) : expression, right));
+    }
+
+    private BartLazyNDArray combine(Operation operation, Object... operands) {
+        BartLazyNDArray result = this;
+        for (Object operand : operands)
+            result = result.combine(operation, operand instanceof NDArray ? operand((NDArray<?>) operand) : constant(operand));
+        return result;
+    }
+
+    private Expression operand(NDArray<?> array) {
+        NDArrayUtils.checkShapeCompatibility(this, array.shape());
+        if (array instanceof BartLazyNDArray && ((BartLazyNDArray) array).evaluated == null)
+            return ((BartLazyNDArray) array).expression;
+        if (array instanceof BartLazyNDArray)
+            return new Source(((BartLazyNDArray) array).evaluated);
+        return new Source(array);
+    }
+
+    private static Expression constant(Object value) {
+        if (value instanceof Complex)
+            return new Constant(((Complex) value).getReal(), ((Complex) value).getImaginary());
+        return new Constant(((Number) value).doubleValue(), 0);
+    }
+
+    private static boolean areOperandsSupported(Object... operands) {
+        for (Object operand : operands)
+            if (!(operand instanceof NDArray || operand instanceof Complex || operand instanceof Number))
+                return false;
+        return true;
+    }
+
+    private void evaluateChunks(ChunkConsumer consumer) {
+        final Expression root = expression;
+        final int length = length();
+        final int buffers = root.getScratchBufferCount() + 1;
+        ThreadLocal<float[][]> scratch = ThreadLocal.withInitial(() -> new float[buffers][EVALUATION_CHUNK_SIZE * 2]);
+        IntStream chunks = IntStream.range(0, (length + EVALUATION_CHUNK_SIZE - 1) / EVALUATION_CHUNK_SIZE);
+        if (parallel)
+            chunks = chunks.parallel();
+        chunks.forEach(chunk -> {
+            float[][] buffer = scratch.get();
+            int start = chunk * EVALUATION_CHUNK_SIZE;
+            int chunkLength = Math.min(EVALUATION_CHUNK_SIZE, length - start);
+            root.evaluate(start, chunkLength, buffer[0], buffer, 1);
+            consumer.accept(start, chunkLength, buffer[0]);
+        });
+    }
+
+    /**
+     * Same formula as {@link Complex#abs()}, so that the fused result matches the eager one.
+     */
+    private static double abs(double real, double imag) {
+        if (Double.isNaN(real) || Double.isNaN(imag))
+            return Double.NaN;
+        if (Double.isInfinite(real) || Double.isInfinite(imag))
+            return Double.POSITIVE_INFINITY;
+        if (Math.abs(real) < Math.abs(imag)) {
+            if (imag == 0.0)
+                return Math.abs(real);
+            double q = real / imag;
+            return Math.abs(imag) * Math.sqrt(1 + q * q);
+        } else {
+            if (real == 0.0)
+                return Math.abs(imag);
+            double q = imag / real;
+            return Math.abs(real) * Math.sqrt(1 + q * q);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkConsumer {
+        void accept(int start, int length, float[] values);
+    }
+
+    /**
+     * Node of the expression tree. Evaluating a node writes the entries from index start to start + length
+     * to out as interleaved real and imaginary parts.
+     */
+    protected abstract static class Expression {
+        abstract void evaluate(int start, int length, float[] out, float[][] scratch, int depth);
+
+        int getScratchBufferCount() {
+            return 0;
+        }
+    }
+
+    private static class Source extends Expression {
+        private final NDArray<?> array;
+
+        Source(NDArray<?> array) {
+            this.array = array;
+        }
+
+        @Override
+        void evaluate(int start, int length, float[] out, float[][] scratch, int depth) {
+            if (array instanceof BartComplexFloatNDArray) {
+                System.arraycopy(((BartComplexFloatNDArray) array).data, start * 2, out, 0, length * 2);
+            } else if (array instanceof BartRealFloatNDArray) {
+                float[] data = ((BartRealFloatNDArray) array).data;
+                for (int i = 0; i < length; i++) {
+                    out[i * 2] = data[start + i];
+                    out[i * 2 + 1] = 0;
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    Object value = array.get(start + i);
+                    if (value instanceof Complex) {
+                        out[i * 2] = (float) ((Complex) value).getReal();
+                        out[i * 2 + 1] = (float) ((Complex) value).getImaginary();
+                    } else {
+                        out[i * 2] = ((Number) value).floatValue();
+                        out[i * 2 + 1] = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Constant extends Expression {
+        private final double real;
+        private final double imag;
+
+        Constant(double real, double imag) {
+            this.real = real;
+            this.imag = imag;
+        }
+
+        @Override
+        void evaluate(int start, int length, float[] out, float[][] scratch, int depth) {
+            for (int i = 0; i < length; i++) {
+                out[i * 2] = (float) real;
+                out[i * 2 + 1] = (float) imag;
+            }
+        }
+    }
+
+    private static class Binary extends Expression {
+        private final Operation operation;
+        private final Expression left;
+        private final Expression right;
+
+        Binary(Operation operation, Expression left, Expression right) {
+            this.operation = operation;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int getScratchBufferCount() {
+            if (right instanceof Constant)
+                return left.getScratchBufferCount();
+            return Math.max(left.getScratchBufferCount(), right.getScratchBufferCount() + 1);
+        }
+
+        @Override
+        void evaluate(int start, int length, float[] out, float[][] scratch, int depth) {
+            left.evaluate(start, length, out, scratch, depth);
+            if (right instanceof Constant) {
+                Constant constant = (Constant) right;
+                for (int i = 0; i < length; i++)
+                    operation.apply(out, i * 2, constant.real, constant.imag);
+            } else {
+                float[] operand = scratch[depth];
+                right.evaluate(start, length, operand, scratch, depth + 1);
+                for (int i = 0; i < length; i++)
+                    operation.apply(out, i * 2, operand[i * 2], operand[i * 2 + 1]);
+            }
+        }
+    }
+
+    /**
+     * Element-wise operations following the same formulas (including the handling of NaN and infinite values)
+     * as the corresponding methods of {@link Complex}, so that the fused result matches the eager one.
+     */
+    private enum Operation {
+        ADD {
+            @Override
+            void apply(float[] values, int index, double c, double d) {
+                double a = values[index];
+                double b = values[index + 1];
+                if (isNaN(a, b) || isNaN(c, d))
+                    store(values, index, Double.NaN, Double.NaN);
+                else
+                    store(values, index, a + c, b + d);
+            }
+        },
+        SUBTRACT {
+            @Override
+            void apply(float[] values, int index, double c, double d) {
+                double a = values[index];
+                double b = values[index + 1];
+                if (isNaN(a, b) || isNaN(c, d))
+                    store(values, index, Double.NaN, Double.NaN);
+                else
+                    store(values, index, a - c, b - d);
+            }
+        },
+        MULTIPLY {
+            @Override
+            void apply(float[] values, int index, double c, double d) {
+                double a = values[index];
+                double b = values[index + 1];
+                if (isNaN(a, b) || isNaN(c, d))
+                    store(values, index, Double.NaN, Double.NaN);
+                else if (isInfinite(a, b) || isInfinite(c, d))
+                    store(values, index, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+                else
+                    store(values, index, a * c - b * d, a * d + b * c);
+            }
+        },
+        DIVIDE {
+            @Override
+            void apply(float[] values, int index, double c, double d) {
+                double a = values[index];
+                double b = values[index + 1];
+                if (isNaN(a, b) || isNaN(c, d) || (c == 0.0 && d == 0.0))
+                    store(values, index, Double.NaN, Double.NaN);
+                else if (isInfinite(c, d) && !isInfinite(a, b))
+                    store(values, index, 0, 0);
+                else if (Math.abs(c) < Math.abs(d)) {
+                    double q = c / d;
+                    double denominator = c * q + d;
+                    store(values, index, (a * q + b) / denominator, (b * q - a) / denominator);
+                } else {
+                    double q = d / c;
+                    double denominator = d * q + c;
+                    store(values, index, (b * q + a) / denominator, (b - a * q) / denominator);
+                }
+            }
+        };
+
+        abstract void apply(float[] values, int index, double real, double imag);
+
+        private static void store(float[] values, int index, double real, double imag) {
+            values[index] = (float) real;
+            values[index + 1] = (float) imag;
+        }
+
+        private static boolean isNaN(double real, double imag) {
+            return Double.isNaN(real) || Double.isNaN(imag);
+        }
+
+        private static boolean isInfinite(double real, double imag) {
+            return !isNaN(real, imag) && (Double.isInfinite(real) || Double.isInfinite(imag));
+        }
+    }
+
+}
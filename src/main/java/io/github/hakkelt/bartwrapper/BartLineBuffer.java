@@ -0,0 +1,60 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread-safe ring buffer that keeps the last lines added to it, so that an output stream of a BART
+ * command can be drained completely without holding all of its content in memory.
+ */
+final class BartLineBuffer {
+    private final String[] lines;
+    private int next = 0;
+    private long count = 0;
+
+    BartLineBuffer(int capacity) {
+        lines = new String[capacity];
+    }
+
+    synchronized void add(String line) {
+        if (lines.length == 0) {
+            count++;
+            return;
+        }
+        lines[next] = line;
+        next = (next + 1) % lines.length;
+        count++;
+    }
+
+    /**
+     * Returns the lines kept in the buffer, oldest first.
+     *
+     * @return the last lines added to the buffer
+     */
+    synchronized List<String> getLines() {
+        int size = (int) Math.min(count, lines.length);
+        List<String> result = new ArrayList<>(size);
+        int first = count > lines.length ? next : 0;
+        for (int i = 0; i < size; i++)
+            result.add(lines[(first + i) % lines.length]);
+        return result;
+    }
+
+    /**
+     * Returns the number of lines that were overwritten by newer ones.
+     *
+     * @return the number of discarded lines
+     */
+    synchronized long getDroppedCount() {
+        return Math.max(0, count - lines.length);
+    }
+
+    @Override
+    public synchronized String toString() {
+        List<String> kept = getLines();
+        long dropped = getDroppedCount();
+        if (dropped > 0)
+            kept.add(0, String.format("... (%d lines omitted)", dropped));
+        return String.join(System.lineSeparator(), kept);
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.hakkelt.bartwrapper;
+
+/**
+ * Receives the timers and counters of BART invocations.
+ * 
+ * <p>The metrics implementation in use can be set by {@link Bart#setMetrics(BartMetrics)}. If it isn't set,
+ * the first implementation found by {@link java.util.ServiceLoader} is used, or {@link #NO_OP} if there is none.
+ * All methods have empty default implementations, so implementations need to override only what they are
+ * interested in. Methods might be called concurrently from multiple threads.</p>
+ * 
+ * @see BartHistogramMetrics
+ */
+public interface BartMetrics {
+
+    /** Implementation that ignores everything */
+    public static final BartMetrics NO_OP = new BartMetrics() {};
+
+    /**
+     * Records the duration of a phase of an invocation.
+     * 
+     * @param command name of the BART command
+     * @param phase the phase of the invocation
+     * @param nanos duration of the phase in nanoseconds
+     */
+    public default void recordPhase(String command, BartPhase phase, long nanos) {}
+
+    /**
+     * Records the number of bytes written to temp files to pass input arrays to BART.
+     * 
+     * @param command name of the BART command
+     * @param bytes number of bytes written
+     */
+    public default void recordBytesWritten(String command, long bytes) {}
+
+    /**
+     * Records a finished invocation.
+     * 
+     * @param command name of the BART command
+     * @param nanos total duration of the invocation in nanoseconds
+     * @param successful false if the invocation failed with an exception
+     */
+    public default void recordInvocation(String command, long nanos, boolean successful) {}
+
+}
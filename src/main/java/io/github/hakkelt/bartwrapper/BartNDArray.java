@@ -1,5 +1,6 @@
 package io.github.hakkelt.bartwrapper;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -37,7 +38,7 @@ import io.github.hakkelt.ndarrays.internal.NormalizedRange;
 import io.github.hakkelt.ndarrays.internal.SliceOperations;
 import io.github.hakkelt.ndarrays.internal.ViewOperations;
 
-public interface BartNDArray extends ComplexNDArray<Float> {
+public interface BartNDArray extends ComplexNDArray<Float>, AutoCloseable {
 
     @Override
     public default BartNDArray copyFrom(float[] array) {
@@ -742,6 +743,35 @@ assertEquals(128, array2.shape(1));
         return selectDims(ViewOperations.getIndicesOfSingletonDims(shape()));
     }
 
+    /**
+     * Returns a lazy array that refers to this array. Arithmetic operations on the returned array
+     * are not computed one by one, but fused and evaluated in a single pass when the result is needed.
+     *
+     * @return a lazy array that refers to this array
+     * @see BartLazyNDArray
+     */
+    public default BartLazyNDArray lazy() {
+        return new BartLazyNDArray(this);
+    }
+
+    /**
+     * Returns the backing storage of this array to {@link BartArrayPool} if pooling is enabled.
+     * 
+     * <p>Neither this array nor any view or reshaped array derived from it may be used after
+     * calling this method. Releasing a view has no effect.</p>
+     */
+    public default void release() {
+        // views don't own any storage
+    }
+
+    /**
+     * Same as {@link #release()}, so that arrays can be used in try-with-resources statements.
+     */
+    @Override
+    public default void close() {
+        release();
+    }
+
     /**
      * Checks if meaning of dimensions are specified in BART or not.
      * 
@@ -772,43 +802,72 @@ assertEquals(128, array2.shape(1));
         try (InputStream stream = new FileInputStream(file)) {
             ByteBuffer buffer = ByteBuffer.wrap(stream.readAllBytes());
             buffer.order(ByteOrder.LITTLE_ENDIAN);
-            int[] shape = readHeader(file, IDENTIFIER_STRING, buffer);
-            BartComplexFloatNDArray array = new BartComplexFloatNDArray(shape);
+            int[] shape = readHeader(file.getName(), IDENTIFIER_STRING, buffer);
+            BartComplexFloatNDArray array = BartComplexFloatNDArray.createUninitialized(shape);
             readComplexFromFile(buffer.asFloatBuffer(), array);
             return array;
         }
     }
 
-    private static int[] readHeader(File file, final String IDENTIFIER_STRING, ByteBuffer buffer) {
+    /**
+     * Reads an array in the rawarray format (the format of .ra files) from a stream.
+     * Exactly one array is consumed from the stream, and the stream is not closed.
+     * 
+     * @param stream the stream to read from
+     * @return the array read from the stream
+     * @throws IOException when reading the stream fails or it ends before the end of the array
+     */
+    public static BartComplexFloatNDArray load(InputStream stream) throws IOException {
+        final String IDENTIFIER_STRING = "rawarray";
+        final String STREAM_NAME = "from stream";
+        DataInputStream input = new DataInputStream(stream);
+        byte[] header = new byte[6 * Long.BYTES];
+        input.readFully(header);
+        long ndim = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN).getLong(5 * Long.BYTES);
+        if (ndim < 0 || ndim > Integer.MAX_VALUE / Long.BYTES - header.length)
+            throw new IllegalArgumentException(String.format(BartErrors.LOAD_FILE_UNSUPPORTED_FORMAT, STREAM_NAME));
+        header = Arrays.copyOf(header, header.length + (int) ndim * Long.BYTES);
+        input.readFully(header, 6 * Long.BYTES, (int) ndim * Long.BYTES);
+        int[] shape = readHeader(STREAM_NAME, IDENTIFIER_STRING, ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN));
+        BartComplexFloatNDArray array = BartComplexFloatNDArray.createUninitialized(shape);
+        byte[] chunk = new byte[(int) Math.min(1 << 16, array.length() * Float.BYTES * 2l)];
+        FloatBuffer floats = ByteBuffer.wrap(chunk).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        for (int offset = 0; offset < array.data.length; offset += chunk.length / Float.BYTES) {
+            int count = Math.min(chunk.length / Float.BYTES, array.data.length - offset);
+            input.readFully(chunk, 0, count * Float.BYTES);
+            floats.position(0);
+            floats.get(array.data, offset, count);
+        }
+        return array;
+    }
+
+    private static int[] readHeader(String name, final String IDENTIFIER_STRING, ByteBuffer buffer) {
         byte[] identifier = new byte[8];
         buffer.get(identifier);
         if (!Arrays.equals(IDENTIFIER_STRING.getBytes(StandardCharsets.US_ASCII), identifier))
             throw new IllegalArgumentException(Errors.READ_FROM_FILE_WRONG_FILE_IDENTIFIER);
         if (buffer.getLong() != 0) // flags
             throw new IllegalArgumentException(
-                String.format(BartErrors.LOAD_FILE_UNSUPPORTED_FORMAT, file.getName()));
+                String.format(BartErrors.LOAD_FILE_UNSUPPORTED_FORMAT, name));
         if (buffer.getLong() != 4) // RA_TYPE_COMPLEX
             throw new IllegalArgumentException(
-                String.format(BartErrors.LOAD_FILE_UNSUPPORTED_FORMAT, file.getName()));
+                String.format(BartErrors.LOAD_FILE_UNSUPPORTED_FORMAT, name));
         if (buffer.getLong() != Float.BYTES * 2l) // elbyte (number of bytes for a single entry)
             throw new IllegalArgumentException(
-                String.format(BartErrors.LOAD_FILE_UNSUPPORTED_FORMAT, file.getName()));
+                String.format(BartErrors.LOAD_FILE_UNSUPPORTED_FORMAT, name));
         long size = buffer.getLong() / (Float.BYTES * 2l);
         long ndim = buffer.getLong();
         int[] shape = LongStream.range(0, ndim).mapToInt(i -> (int) buffer.getLong()).toArray();
         if (IntStream.of(shape).reduce(1, (a,b) -> a * b) != size)
             throw new IllegalArgumentException(
-                String.format(BartErrors.LOAD_FILE_UNSUPPORTED_FORMAT, file.getName()));
+                String.format(BartErrors.LOAD_FILE_UNSUPPORTED_FORMAT, name));
         return shape;
     }
 
     private static void readComplexFromFile(FloatBuffer buffer, BartComplexFloatNDArray array) {
         if (buffer.remaining() != array.length() * 2)
             throw new IllegalStateException();
-        array.streamLinearIndices().forEach(i -> {
-            array.setReal(buffer.get(i * 2), i);
-            array.setImag(buffer.get(i * 2 + 1), i);
-        });
+        buffer.get(array.data);
     }
 
     public static File saveToTemp(NDArray<?> array) throws IOException {
@@ -818,27 +877,62 @@ assertEquals(128, array2.shape(1));
     }
 
     public static void save(NDArray<?> array, File file) throws IOException {
-        if (array instanceof BartNDArray)
-            array = prepareToSave((BartNDArray) array);
         if (!file.getName().endsWith(".ra"))
             throw new IllegalArgumentException(BartErrors.NAME_EXTENSION_IS_NOT_RA);
         try(OutputStream stream = new FileOutputStream(file)) {
-            ByteBuffer buffer = ByteBuffer.allocate(calculateBufferSize(array));
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            writeFileHeader(buffer, array);
-            if (array.dtype() == Complex.class) {
-                ((ComplexNDArray<?>) array).stream().forEachOrdered(value -> {
-                    buffer.putFloat((float) value.getReal());
-                    buffer.putFloat((float) value.getImaginary());
-                });
-            } else {
-                array.stream().forEachOrdered(value -> {
-                    buffer.putFloat(((Number) value).floatValue());
-                    buffer.putFloat(0.f);
-                });
-            }
-            stream.write(buffer.array());
+            stream.write(encode(array).array());
+        }
+    }
+
+    /**
+     * Writes an array in the rawarray format (the format of .ra files) to a stream.
+     * The stream is not closed.
+     * 
+     * @param array the array to be written
+     * @param stream the stream to write to
+     * @throws IOException when writing to the stream fails
+     */
+    public static void save(NDArray<?> array, OutputStream stream) throws IOException {
+        ByteBuffer buffer = encode(array);
+        stream.write(buffer.array(), 0, buffer.capacity() - 1 /* without the EOF character */);
+    }
+
+    private static ByteBuffer encode(NDArray<?> array) {
+        if (array instanceof BartNDArray)
+            array = prepareToSave((BartNDArray) array);
+        ByteBuffer buffer = ByteBuffer.allocate(calculateBufferSize(array));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        writeFileHeader(buffer, array);
+        if (!writeDataInBulk(buffer, array))
+            writeDataElementwise(buffer, array);
+        return buffer;
+    }
+
+    private static void writeDataElementwise(ByteBuffer buffer, NDArray<?> array) {
+        if (array.dtype() == Complex.class) {
+            ((ComplexNDArray<?>) array).stream().forEachOrdered(value -> {
+                buffer.putFloat((float) value.getReal());
+                buffer.putFloat((float) value.getImaginary());
+            });
+        } else {
+            array.stream().forEachOrdered(value -> {
+                buffer.putFloat(((Number) value).floatValue());
+                buffer.putFloat(0.f);
+            });
+        }
+    }
+
+    private static boolean writeDataInBulk(ByteBuffer buffer, NDArray<?> array) {
+        // Reshaping doesn't change the column-major order of entries, so the parent can be written instead
+        while (array instanceof BartNDArrayReshapeView)
+            array = ((BartNDArrayReshapeView) array).getParent();
+        if (array instanceof AbstractBartNDArray) {
+            ((AbstractBartNDArray) array).writeTo(buffer.asFloatBuffer());
+            return true;
         }
+        if (array instanceof BartNDArraySliceView)
+            return ((BartNDArraySliceView) array).writeTo(buffer.asFloatBuffer());
+        return false;
     }
 
     private static void writeFileHeader(ByteBuffer buffer, NDArray<?> array) {
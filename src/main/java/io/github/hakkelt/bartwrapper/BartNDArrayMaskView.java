@@ -56,8 +56,8 @@ public class BartNDArrayMaskView extends ComplexNDArrayMaskView<Float> implement
 
     @Override
     public BartNDArray createNewNDArrayOfSameTypeAsMe(int... shape) {
-        if (parent instanceof BartComplexFloatNDArray)
-            return ((BartComplexFloatNDArray)parent).createNewNDArrayOfSameTypeAsMe(shape);
+        if (parent instanceof AbstractBartNDArray)
+            return ((AbstractBartNDArray)parent).createNewNDArrayOfSameTypeAsMe(shape);
         else
             return ((BartNDArrayView)parent).createNewNDArrayOfSameTypeAsMe(shape);
     }
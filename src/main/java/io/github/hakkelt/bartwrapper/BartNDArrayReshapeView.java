@@ -46,8 +46,8 @@ public class BartNDArrayReshapeView extends ComplexNDArrayReshapeView<Float> imp
 
     @Override
     public BartNDArray createNewNDArrayOfSameTypeAsMe(int... shape) {
-        if (parent instanceof BartComplexFloatNDArray)
-            return ((BartComplexFloatNDArray)parent).createNewNDArrayOfSameTypeAsMe(shape);
+        if (parent instanceof AbstractBartNDArray)
+            return ((AbstractBartNDArray)parent).createNewNDArrayOfSameTypeAsMe(shape);
         else
             return ((BartNDArrayView)parent).createNewNDArrayOfSameTypeAsMe(shape);
     }
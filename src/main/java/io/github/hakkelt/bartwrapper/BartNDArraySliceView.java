@@ -1,5 +1,6 @@
 package io.github.hakkelt.bartwrapper;
 
+import java.nio.FloatBuffer;
 import java.util.Arrays;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -11,14 +12,18 @@ import org.apache.commons.math3.complex.Complex;
 
 import io.github.hakkelt.ndarrays.ComplexNDArray;
 import io.github.hakkelt.ndarrays.NDArray;
+import io.github.hakkelt.ndarrays.NDArrayUtils;
 import io.github.hakkelt.ndarrays.Range;
+import io.github.hakkelt.ndarrays.internal.ArrayOperations;
 import io.github.hakkelt.ndarrays.internal.ComplexNDArraySliceView;
+import io.github.hakkelt.ndarrays.internal.CopyFromOperations;
 
 /**
  * A view for a ComplexNDArray that slices the parent ComplexNDArray.
  * When slice(...) is called for a ComplexNDArray, an instance of this class is returned.
  */
 public class BartNDArraySliceView extends ComplexNDArraySliceView<Float> implements BartNDArray, BartNDArrayView {
+    private ContiguousRuns contiguousRuns;
     
     public BartNDArraySliceView(BartNDArray parent, Range[] slicingExpressions) {
         super(parent, slicingExpressions);
@@ -31,7 +36,72 @@ public class BartNDArraySliceView extends ComplexNDArraySliceView<Float> impleme
 
     @Override
     public BartNDArray copy() {
-        return similar().copyFrom(this);
+        if (!isParentContiguous())
+            return similar().copyFrom(this);
+        BartComplexFloatNDArray newInstance = ((BartComplexFloatNDArray)parent).createNewNDArrayOfSameTypeAsMe(shape);
+        getContiguousRuns().gather(((BartComplexFloatNDArray)parent).data, newInstance.data);
+        return newInstance;
+    }
+
+    @Override
+    public BartNDArray copyFrom(NDArray<?> array) {
+        if (isParentContiguous() && array instanceof BartComplexFloatNDArray) {
+            NDArrayUtils.checkShapeCompatibility(this, array.shape());
+            getContiguousRuns().scatter(((BartComplexFloatNDArray)array).data, ((BartComplexFloatNDArray)parent).data);
+        } else
+            new CopyFromOperations<Complex,Float>().copyFrom(this, array);
+        return this;
+    }
+
+    @Override
+    public BartNDArray fill(Complex value) {
+        if (isParentContiguous())
+            getContiguousRuns().fill(((BartComplexFloatNDArray)parent).data, (float) value.getReal(), (float) value.getImaginary());
+        else
+            new ArrayOperations<Complex,Float>().fill(this, value);
+        return this;
+    }
+
+    @Override
+    public BartNDArray fill(Float value) {
+        if (isParentContiguous())
+            getContiguousRuns().fill(((BartComplexFloatNDArray)parent).data, value, 0);
+        else
+            new ArrayOperations<Complex,Float>().fill(this, value);
+        return this;
+    }
+
+    @Override
+    public BartNDArray fill(double value) {
+        if (isParentContiguous())
+            getContiguousRuns().fill(((BartComplexFloatNDArray)parent).data, (float) value, 0);
+        else
+            new ArrayOperations<Complex,Float>().fill(this, value);
+        return this;
+    }
+
+    /**
+     * Writes the interleaved real and imaginary parts of the entries to the buffer in column-major order
+     * if the parent stores its entries in a single float array.
+     * 
+     * @param buffer buffer to write the entries to
+     * @return false if the parent is not backed by a float array and nothing was written
+     */
+    boolean writeTo(FloatBuffer buffer) {
+        if (!isParentContiguous())
+            return false;
+        getContiguousRuns().writeTo(((BartComplexFloatNDArray)parent).data, buffer);
+        return true;
+    }
+
+    protected boolean isParentContiguous() {
+        return parent instanceof BartComplexFloatNDArray;
+    }
+
+    protected ContiguousRuns getContiguousRuns() {
+        if (contiguousRuns == null)
+            contiguousRuns = new ContiguousRuns(parent.shape(), slicingExpression.getExpressions(), shape, length());
+        return contiguousRuns;
     }
 
     @Override
@@ -54,8 +124,8 @@ public class BartNDArraySliceView extends ComplexNDArraySliceView<Float> impleme
 
     @Override
     public BartNDArray createNewNDArrayOfSameTypeAsMe(int... dims) {
-        if (parent instanceof BartComplexFloatNDArray)
-            return ((BartComplexFloatNDArray)parent).createNewNDArrayOfSameTypeAsMe(dims);
+        if (parent instanceof AbstractBartNDArray)
+            return ((AbstractBartNDArray)parent).createNewNDArrayOfSameTypeAsMe(dims);
         else
             return ((BartNDArrayView)parent).createNewNDArrayOfSameTypeAsMe(dims);
     }
@@ -123,4 +193,79 @@ public class BartNDArraySliceView extends ComplexNDArraySliceView<Float> impleme
         return newInstance;
     }
     
+    /**
+     * Run-length structure of the slice in the column-major storage of its parent:
+     * the slice is the union of equally long runs of consecutive parent entries.
+     */
+    static class ContiguousRuns {
+        private final int runLength;
+        private final int[] runOffsets;
+
+        ContiguousRuns(int[] parentShape, Range[] expressions, int[] sliceShape, int sliceLength) {
+            int[] lengths = new int[expressions.length];
+            int[] steps = new int[expressions.length];
+            int[] multipliers = new int[expressions.length];
+            int base = 0;
+            int multiplier = 1;
+            int sliceDim = 0;
+            for (int i = 0; i < expressions.length; i++) {
+                lengths[i] = expressions[i].isScalar() ? 1 : sliceShape[sliceDim++];
+                steps[i] = expressions[i].isScalar() ? 0 : expressions[i].getStep();
+                multipliers[i] = multiplier;
+                base += expressions[i].getStart() * multiplier;
+                multiplier *= parentShape[i];
+            }
+            // Leading dimensions that are traversed with unit step and span the whole parent dimension
+            // (except for the last of them) form a single run of consecutive entries
+            int length = 1;
+            int firstOuterDim = 0;
+            for (; firstOuterDim < expressions.length; firstOuterDim++) {
+                if (lengths[firstOuterDim] == 1)
+                    continue;
+                if (steps[firstOuterDim] != 1 || multipliers[firstOuterDim] != length)
+                    break;
+                length *= lengths[firstOuterDim];
+            }
+            runLength = length;
+            runOffsets = new int[sliceLength == 0 ? 0 : sliceLength / length];
+            int[] counter = new int[expressions.length];
+            int offset = base;
+            for (int run = 0; run < runOffsets.length; run++) {
+                runOffsets[run] = offset;
+                for (int i = firstOuterDim; i < expressions.length; i++) {
+                    if (++counter[i] < lengths[i]) {
+                        offset += steps[i] * multipliers[i];
+                        break;
+                    }
+                    offset -= (lengths[i] - 1) * steps[i] * multipliers[i];
+                    counter[i] = 0;
+                }
+            }
+        }
+
+        void gather(float[] parentData, float[] sliceData) {
+            for (int run = 0; run < runOffsets.length; run++)
+                System.arraycopy(parentData, runOffsets[run] * 2, sliceData, run * runLength * 2, runLength * 2);
+        }
+
+        void scatter(float[] sliceData, float[] parentData) {
+            for (int run = 0; run < runOffsets.length; run++)
+                System.arraycopy(sliceData, run * runLength * 2, parentData, runOffsets[run] * 2, runLength * 2);
+        }
+
+        void fill(float[] parentData, float real, float imag) {
+            for (int offset : runOffsets) {
+                for (int i = offset * 2; i < (offset + runLength) * 2; i += 2) {
+                    parentData[i] = real;
+                    parentData[i + 1] = imag;
+                }
+            }
+        }
+
+        void writeTo(float[] parentData, FloatBuffer buffer) {
+            for (int offset : runOffsets)
+                buffer.put(parentData, offset * 2, runLength * 2);
+        }
+    }
+    
 }
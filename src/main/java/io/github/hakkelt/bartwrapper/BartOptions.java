@@ -0,0 +1,147 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Per-call options of {@link Bart#run(BartOptions, Object...)}, {@link Bart#execute(BartOptions, Object...)}
+ * and {@link Bart#read(BartOptions, Object...)}.
+ *
+ * <p>Invocations can be cancelled by interrupting the calling thread (e.g. by {@code Future.cancel(true)}):
+ * the process is asked to terminate, and it is killed if it is still running after the grace period.
+ * The same happens when the timeout is exceeded. Temp files are deleted in every case.</p>
+ *
+ * <p>Memory and CPU time limits are applied to the BART process by the {@code prlimit} utility, so they
+ * are available only on Linux systems where it is on the PATH.</p>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartOptions options = new BartOptions()
+    .timeout(Duration.ofMinutes(5))
+    .maxMemory(8L << 30)
+    .outputConsumer(System.out::println);
+BartNDArray image = Bart.run(options, "pics", "-l1", "-r0.01", kspace, sensitivities);
+ * }</pre></blockquote>
+ */
+public class BartOptions {
+    static final Duration DEFAULT_GRACE_PERIOD = Duration.ofSeconds(5);
+
+    private Duration timeout;
+    private Duration gracePeriod = DEFAULT_GRACE_PERIOD;
+    private long maxMemory = 0;
+    private Duration maxCpuTime;
+    private Consumer<String> outputConsumer;
+    private final Map<String, String> environment = new LinkedHashMap<>();
+
+    /**
+     * Sets the wall-clock time limit of the invocation. If not set, the limit given by the
+     * {@value Bart#TIMEOUT_PROPERTY} system property applies, if any.
+     *
+     * @param timeout the time limit, or null to use the default
+     * @return these options
+     */
+    public BartOptions timeout(Duration timeout) {
+        this.timeout = checkPositive("timeout", timeout);
+        return this;
+    }
+
+    /**
+     * Sets how long a process is given to terminate after it was asked to (because of a timeout or an interrupt)
+     * before it is killed forcibly. The default is 5 seconds.
+     *
+     * @param gracePeriod the grace period, or null to use the default
+     * @return these options
+     */
+    public BartOptions gracePeriod(Duration gracePeriod) {
+        this.gracePeriod = gracePeriod != null ? checkPositive("grace period", gracePeriod) : DEFAULT_GRACE_PERIOD;
+        return this;
+    }
+
+    /**
+     * Limits the address space of the BART process.
+     *
+     * @param bytes the limit in bytes, or 0 for no limit
+     * @return these options
+     */
+    public BartOptions maxMemory(long bytes) {
+        if (bytes < 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "memory limit", bytes));
+        this.maxMemory = bytes;
+        return this;
+    }
+
+    /**
+     * Limits the CPU time of the BART process (summed over all threads), rounded up to whole seconds.
+     *
+     * @param maxCpuTime the limit, or null for no limit
+     * @return these options
+     */
+    public BartOptions maxCpuTime(Duration maxCpuTime) {
+        this.maxCpuTime = checkPositive("CPU time limit", maxCpuTime);
+        return this;
+    }
+
+    /**
+     * Sets the function that receives the output of the BART command line by line. Remote executors forward
+     * the output of the worker to it; without an output consumer, they discard the output.
+     *
+     * @param outputConsumer the output consumer, or null to print the output to the standard output
+     * @return these options
+     */
+    public BartOptions outputConsumer(Consumer<String> outputConsumer) {
+        this.outputConsumer = outputConsumer;
+        return this;
+    }
+
+    /**
+     * Sets an environment variable of the BART process, e.g. {@code DEBUG_LEVEL} to make BART print more details.
+     * Remote executors set the variables on the worker.
+     *
+     * @param name the name of the variable
+     * @param value the value of the variable
+     * @return these options
+     */
+    public BartOptions environment(String name, String value) {
+        environment.put(name, value);
+        return this;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public Duration getGracePeriod() {
+        return gracePeriod;
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    public Duration getMaxCpuTime() {
+        return maxCpuTime;
+    }
+
+    public Consumer<String> getOutputConsumer() {
+        return outputConsumer;
+    }
+
+    public Map<String, String> getEnvironment() {
+        return Collections.unmodifiableMap(environment);
+    }
+
+    boolean hasResourceLimits() {
+        return maxMemory > 0 || maxCpuTime != null;
+    }
+
+    private static Duration checkPositive(String name, Duration duration) {
+        if (duration != null && (duration.isNegative() || duration.isZero()))
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, name, duration));
+        return duration;
+    }
+
+}
@@ -0,0 +1,124 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the debug output of BART commands (see {@code debug_printf} calls in BART and the {@code DEBUG_LEVEL}
+ * environment variable) into {@link BartProgressEvent}s. Recognized lines:
+ *
+ * <ul>
+ * <li>iteration monitor: {@code [Iter 0012] Objective: 1.5, Error: 0.1}</li>
+ * <li>iterative algorithms: {@code #It 012: 0.5}, {@code #It 003 relative residual r / r_0: 0.5},
+ *     {@code #12: 0.5}, {@code Step: 3, Res: 0.4}, and the rows of the ADMM table</li>
+ * <li>timing: {@code Total Time: 1.5}, {@code Total time: 1.50 s}, {@code Reconstruction time: 1.5 seconds.}</li>
+ * </ul>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartNDArray image = Bart.run(BartOutputParser.listen(event -> {
+        if (event.getType() == BartProgressEvent.Type.ITERATION)
+            System.out.println(event.getIteration() + ": " + event.getObjective());
+    }), "pics", "-d5", "-l1", "-r0.01", kspace, sensitivities);
+ * }</pre></blockquote>
+ */
+public class BartOutputParser {
+
+    private static final String NUMBER = "([-+]?(?:\\d+\\.?\\d*|\\.\\d+)(?:[eE][-+]?\\d+)?|[-+]?(?:nan|inf(?:inity)?))";
+    private static final Pattern LOG_PREFIX = Pattern.compile("^\\[[^\\]]*\\] \\[[A-Z0-9]+\\] - ");
+    private static final Pattern MONITOR = Pattern.compile(
+        "^\\[Iter (\\d+)\\] Objective: " + NUMBER + ", Error: " + NUMBER + "$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RESIDUAL = Pattern.compile(
+        "^#It\\s+(\\d+):?\\s*(?:relative residual r / r_0:)?\\s*" + NUMBER + "(?:\\s+" + NUMBER + ")?$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CG = Pattern.compile("^#(\\d+): " + NUMBER + "$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern STEP = Pattern.compile("^Step: (\\d+), Res: " + NUMBER + "$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ADMM = Pattern.compile("^\\d+(?:\\t\\s*\\S+){9}$");
+    private static final Pattern TIMING = Pattern.compile(
+        "^(.*?\\b[Tt]ime)\\s*[:=]\\s*" + NUMBER + "\\s*(?:s|sec|seconds)?\\.?$", Pattern.CASE_INSENSITIVE);
+
+    private BartOutputParser() {}
+
+    /**
+     * Parses a line of the output of a BART command.
+     *
+     * @param line a line of the output
+     * @return the parsed line
+     */
+    public static BartProgressEvent parse(String line) {
+        String text = LOG_PREFIX.matcher(line.trim()).replaceFirst("");
+        Matcher matcher = MONITOR.matcher(text);
+        if (matcher.matches())
+            return BartProgressEvent.iteration(line, Integer.parseInt(matcher.group(1)),
+                parseNumber(matcher.group(2)), Double.NaN, parseNumber(matcher.group(3)));
+        matcher = RESIDUAL.matcher(text);
+        if (!matcher.matches())
+            matcher = CG.matcher(text);
+        if (!matcher.matches())
+            matcher = STEP.matcher(text);
+        if (matcher.matches())
+            return BartProgressEvent.iteration(line, Integer.parseInt(matcher.group(1)),
+                Double.NaN, parseNumber(matcher.group(2)), Double.NaN);
+        if (ADMM.matcher(text).matches())
+            return parseAdmmRow(line, text);
+        matcher = TIMING.matcher(text);
+        if (matcher.matches())
+            return BartProgressEvent.timing(line, matcher.group(1).trim(), parseNumber(matcher.group(2)));
+        return BartProgressEvent.message(line);
+    }
+
+    /**
+     * Creates an output consumer for {@link Bart#run(Consumer, Object...)} and {@link Bart#execute(Consumer, Object...)}
+     * that parses each line and passes the result to the listener.
+     *
+     * @param listener receives the parsed lines
+     * @return output consumer that can be passed to Bart.run or Bart.execute
+     */
+    public static Consumer<String> listen(BartProgressListener listener) {
+        return line -> listener.onEvent(parse(line));
+    }
+
+    /**
+     * Creates an output consumer for {@link Bart#run(Consumer, Object...)} and {@link Bart#execute(Consumer, Object...)}
+     * that parses each line and passes the result to the listener, and also passes the raw lines to outputConsumer.
+     *
+     * @param listener receives the parsed lines
+     * @param outputConsumer receives the raw lines
+     * @return output consumer that can be passed to Bart.run or Bart.execute
+     */
+    public static Consumer<String> listen(BartProgressListener listener, Consumer<String> outputConsumer) {
+        return line -> {
+            outputConsumer.accept(line);
+            listener.onEvent(parse(line));
+        };
+    }
+
+    /**
+     * Columns of the ADMM table: iter, cgiter, rho, tau, r norm, eps pri, s norm, eps dual, obj, relMSE.
+     * Objective and error are -1 if no monitor is used.
+     */
+    private static BartProgressEvent parseAdmmRow(String line, String text) {
+        String[] columns = text.split("\\t");
+        try {
+            double objective = parseNumber(columns[8].trim());
+            double error = parseNumber(columns[9].trim());
+            return BartProgressEvent.iteration(line, Integer.parseInt(columns[0].trim()),
+                objective == -1 ? Double.NaN : objective,
+                parseNumber(columns[4].trim()),
+                error == -1 ? Double.NaN : error);
+        } catch (NumberFormatException e) {
+            return BartProgressEvent.message(line);
+        }
+    }
+
+    private static double parseNumber(String str) {
+        String lower = str.toLowerCase();
+        if (lower.endsWith("nan"))
+            return Double.NaN;
+        if (lower.endsWith("inf") || lower.endsWith("infinity"))
+            return lower.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        return Double.parseDouble(str);
+    }
+
+}
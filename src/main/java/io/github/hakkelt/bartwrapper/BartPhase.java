@@ -0,0 +1,17 @@
+package io.github.hakkelt.bartwrapper;
+
+/**
+ * Phases of a BART invocation that are timed by the driver and reported to {@link BartMetrics}.
+ */
+public enum BartPhase {
+    /** Converting the arguments to strings, including saving the input arrays to temp files */
+    CONVERT_INPUTS,
+    /** Starting the BART process */
+    PROCESS_START,
+    /** From the start of the BART process until its termination, including the handling of its output */
+    BART_WALL_TIME,
+    /** Loading the output array of the BART command */
+    LOAD_OUTPUT,
+    /** Deleting the temp files */
+    CLEAN_UP
+}
@@ -0,0 +1,437 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Continuous frame-in, image-out processing: frames pass through a chain of stages (Java functions or BART
+ * commands), each running on its own thread, so the stages of consecutive frames overlap in time.
+ *
+ * <p>The stages are connected by bounded queues, so the memory held by the pipeline is bounded. When a queue is full
+ * (because a later stage or the consumer falls behind), the overflow policy decides whether the producer waits
+ * ({@link OverflowPolicy#BLOCK}), the new frame is skipped ({@link OverflowPolicy#DROP_NEWEST}), or the oldest
+ * queued frame is discarded to make room ({@link OverflowPolicy#DROP_OLDEST}, which keeps the latency low in
+ * real-time use). Frames whose processing fails are logged and skipped.</p>
+ *
+ * <p>The processing time of each stage and the end-to-end latency of the frames are recorded in histograms.</p>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartPipeline pipeline = new BartPipeline(display::show)
+    .queueCapacity(2)
+    .overflowPolicy(BartPipeline.OverflowPolicy.DROP_OLDEST)
+    .stage("whiten", frame -> whiten(frame))
+    .command("pics", "pics", "-l1", "-r0.01", BartPipeline.FRAME, sensitivities)
+    .command("rss", "rss", 8, BartPipeline.FRAME)
+    .start();
+scanner.subscribe(pipeline.subscriber()); // the input is finished when the scanner completes
+pipeline.awaitTermination();
+System.out.println(pipeline.getLatency("pics").getPercentile(0.99) / 1e6 + " ms");
+ * }</pre></blockquote>
+ */
+public class BartPipeline implements AutoCloseable {
+    /** Placeholder of the frame in the arguments of {@link #command(String, Object...)} */
+    public static final Object FRAME = new Object() {
+        @Override
+        public String toString() {
+            return "FRAME";
+        }
+    };
+    /** Default capacity of the queues between the stages */
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    private static final Logger LOGGER = Logger.getLogger(BartPipeline.class.getName());
+    private static final Item END = new Item(null, 0);
+
+    /**
+     * What happens to a frame when the queue of the next stage is full.
+     */
+    public enum OverflowPolicy {
+        /** The producer waits until there is room in the queue (backpressure). */
+        BLOCK,
+        /** The new frame is skipped. */
+        DROP_NEWEST,
+        /** The oldest frame in the queue is discarded to make room for the new one. */
+        DROP_OLDEST
+    }
+
+    /**
+     * A processing step of the pipeline.
+     */
+    @FunctionalInterface
+    public interface Stage {
+        /**
+         * Processes a frame.
+         *
+         * @param frame the output of the previous stage
+         * @return the input of the next stage
+         * @throws BartException when running BART fails
+         */
+        BartNDArray apply(BartNDArray frame) throws BartException;
+    }
+
+    private final Consumer<BartNDArray> sink;
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final Map<String, BartHistogramMetrics.Histogram> latencies = new LinkedHashMap<>();
+    private final BartHistogramMetrics.Histogram endToEnd = new BartHistogramMetrics.Histogram();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final List<Thread> threads = new ArrayList<>();
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private BartExecutor executor = BartExecutor.LOCAL;
+    private volatile BlockingQueue<Item> input;
+    private volatile boolean inputFinished = false;
+    /** Held by submitters while they queue a frame, and exclusively by finish(), so that no frame follows the end marker */
+    private final ReadWriteLock inputLock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates an empty pipeline that passes the processed frames to the given consumer.
+     *
+     * @param sink receives the output of the last stage, on a thread of its own
+     */
+    public BartPipeline(Consumer<BartNDArray> sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Sets the capacity of the queues between the stages. The default is {@value #DEFAULT_QUEUE_CAPACITY}.
+     *
+     * @param capacity the number of frames a queue can hold
+     * @return this pipeline
+     */
+    public BartPipeline queueCapacity(int capacity) {
+        checkNotStarted();
+        if (capacity <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "queue capacity", capacity));
+        this.queueCapacity = capacity;
+        return this;
+    }
+
+    /**
+     * Sets what happens to a frame when the queue of the next stage is full. The default is {@link OverflowPolicy#BLOCK}.
+     *
+     * @param policy the overflow policy
+     * @return this pipeline
+     */
+    public BartPipeline overflowPolicy(OverflowPolicy policy) {
+        checkNotStarted();
+        this.overflowPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Sets the executor that runs the BART commands of the stages added by {@link #command(String, Object...)}.
+     * The default is {@link BartExecutor#LOCAL}.
+     *
+     * @param executor the executor
+     * @return this pipeline
+     */
+    public BartPipeline executor(BartExecutor executor) {
+        checkNotStarted();
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Appends a stage to the pipeline.
+     *
+     * @param name name of the stage, unique within the pipeline
+     * @param stage the processing step
+     * @return this pipeline
+     */
+    public BartPipeline stage(String name, Stage stage) {
+        checkNotStarted();
+        if (stages.containsKey(name))
+            throw new IllegalArgumentException(String.format(BartErrors.DUPLICATE_STAGE, name));
+        stages.put(name, stage);
+        latencies.put(name, new BartHistogramMetrics.Histogram());
+        return this;
+    }
+
+    /**
+     * Appends a stage that runs a BART command, passing the frame in place of {@link #FRAME} in the arguments.
+     *
+     * @param name name of the stage, unique within the pipeline
+     * @param args name of BART command and its arguments
+     * @return this pipeline
+     */
+    public BartPipeline command(String name, Object... args) {
+        Object[] template = args.clone();
+        return stage(name, frame -> {
+            Object[] actual = template.clone();
+            for (int i = 0; i < actual.length; i++)
+                if (actual[i] == FRAME)
+                    actual[i] = frame;
+            return executor.run(actual);
+        });
+    }
+
+    /**
+     * Starts the threads of the stages and of the consumer.
+     *
+     * @return this pipeline
+     */
+    public synchronized BartPipeline start() {
+        checkNotStarted();
+        input = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Item> queue = input;
+        for (Map.Entry<String, Stage> entry : stages.entrySet()) {
+            BlockingQueue<Item> next = new ArrayBlockingQueue<>(queueCapacity);
+            startThread(entry.getKey(), queue, next, entry.getValue(), latencies.get(entry.getKey()));
+            queue = next;
+        }
+        startThread("sink", queue, null, frame -> {
+            sink.accept(frame);
+            return frame;
+        }, null);
+        return this;
+    }
+
+    /**
+     * Passes a frame to the first stage, applying the overflow policy if its queue is full.
+     *
+     * @param frame the frame
+     * @return false if the frame was skipped
+     * @throws InterruptedException when interrupted while waiting for room in the queue
+     */
+    public boolean submit(BartNDArray frame) throws InterruptedException {
+        inputLock.readLock().lockInterruptibly();
+        try {
+            if (input == null || inputFinished)
+                throw new IllegalStateException(BartErrors.PIPELINE_NOT_RUNNING);
+            return offer(input, new Item(frame, System.nanoTime()));
+        } finally {
+            inputLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes all frames of the iterator to the pipeline, then waits until they are processed.
+     *
+     * @param frames the frames
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public void process(Iterator<? extends BartNDArray> frames) throws InterruptedException {
+        while (frames.hasNext())
+            submit(frames.next());
+        finish();
+        awaitTermination();
+    }
+
+    /**
+     * Returns a subscriber that passes the frames of a publisher to the pipeline. It requests one frame at a time,
+     * so with the {@link OverflowPolicy#BLOCK} policy the publisher is slowed down to the pace of the pipeline.
+     * The input of the pipeline is finished when the publisher completes.
+     *
+     * @return subscriber for the publisher of frames
+     */
+    public Flow.Subscriber<BartNDArray> subscriber() {
+        return new Flow.Subscriber<BartNDArray>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(BartNDArray frame) {
+                try {
+                    submit(frame);
+                    subscription.request(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    subscription.cancel();
+                    finish();
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                LOGGER.log(Level.WARNING, "The publisher of the pipeline failed.", throwable);
+                finish();
+            }
+
+            @Override
+            public void onComplete() {
+                finish();
+            }
+        };
+    }
+
+    /**
+     * Signals that no more frames are submitted. Frames already submitted are still processed; concurrent
+     * submissions are waited for.
+     */
+    public void finish() {
+        inputLock.writeLock().lock();
+        try {
+            if (input == null || inputFinished)
+                return;
+            inputFinished = true;
+            putEnd(input);
+        } finally {
+            inputLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until all submitted frames are processed. Must be preceded by {@link #finish()}.
+     *
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public void awaitTermination() throws InterruptedException {
+        for (Thread thread : threads)
+            thread.join();
+    }
+
+    /**
+     * Finishes the input and waits until all submitted frames are processed.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        finish();
+        awaitTermination();
+    }
+
+    /**
+     * Returns the histogram of the processing time of the stage, in nanoseconds.
+     *
+     * @param stage name of the stage
+     * @return the histogram of processing times
+     */
+    public BartHistogramMetrics.Histogram getLatency(String stage) {
+        BartHistogramMetrics.Histogram histogram = latencies.get(stage);
+        if (histogram == null)
+            throw new IllegalArgumentException(String.format(BartErrors.UNKNOWN_STAGE, stage));
+        return histogram;
+    }
+
+    /**
+     * Returns the histogram of the time from the submission of the frames until they are passed to the consumer,
+     * in nanoseconds.
+     *
+     * @return the histogram of end-to-end latencies
+     */
+    public BartHistogramMetrics.Histogram getEndToEndLatency() {
+        return endToEnd;
+    }
+
+    /**
+     * Returns the number of frames skipped or discarded because of full queues.
+     *
+     * @return the number of dropped frames
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of frames whose processing failed.
+     *
+     * @return the number of failed frames
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    private void startThread(String name, BlockingQueue<Item> from, BlockingQueue<Item> to, Stage stage,
+            BartHistogramMetrics.Histogram latency) {
+        Thread thread = new Thread(() -> {
+            try {
+                for (Item item = from.take(); item != END; item = from.take()) {
+                    long start = System.nanoTime();
+                    BartNDArray result;
+                    try {
+                        result = stage.apply(item.frame);
+                    } catch (BartException | RuntimeException e) {
+                        failed.incrementAndGet();
+                        LOGGER.log(Level.WARNING, String.format("Stage %s of the pipeline failed.", name), e);
+                        continue;
+                    }
+                    long end = System.nanoTime();
+                    if (latency != null)
+                        latency.record(end - start);
+                    if (to != null)
+                        offer(to, new Item(result, item.submitted));
+                    else
+                        endToEnd.record(end - item.submitted);
+                }
+                if (to != null)
+                    putEnd(to);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "bart-pipeline-" + name);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+    }
+
+    private boolean offer(BlockingQueue<Item> queue, Item item) throws InterruptedException {
+        switch (overflowPolicy) {
+            case BLOCK:
+                queue.put(item);
+                return true;
+            case DROP_NEWEST:
+                if (queue.offer(item))
+                    return true;
+                dropped.incrementAndGet();
+                return false;
+            default:
+                while (!queue.offer(item))
+                    if (queue.poll() != null)
+                        dropped.incrementAndGet();
+                return true;
+        }
+    }
+
+    /**
+     * The end marker is never dropped: it is put only after the last frame of the queue, so the drop loop of
+     * {@link OverflowPolicy#DROP_OLDEST} never reaches it.
+     */
+    private static void putEnd(BlockingQueue<Item> queue) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(END);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private void checkNotStarted() {
+        if (input != null)
+            throw new IllegalStateException(BartErrors.PIPELINE_ALREADY_STARTED);
+    }
+
+    private static final class Item {
+        final BartNDArray frame;
+        final long submitted;
+
+        Item(BartNDArray frame, long submitted) {
+            this.frame = frame;
+            this.submitted = submitted;
+        }
+    }
+
+}
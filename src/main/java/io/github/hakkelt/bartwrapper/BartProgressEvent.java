@@ -0,0 +1,130 @@
+package io.github.hakkelt.bartwrapper;
+
+/**
+ * A line of the output of a BART command, parsed by {@link BartOutputParser}.
+ * 
+ * <p>Numeric values that are not present in the line are NaN (or -1 for the iteration number).</p>
+ */
+public class BartProgressEvent {
+
+    /** Kind of the output line */
+    public enum Type {
+        /** Progress of an iterative algorithm (iteration number, objective, residual, error) */
+        ITERATION,
+        /** Elapsed time of a stage of the computation */
+        TIMING,
+        /** Any other line */
+        MESSAGE
+    }
+
+    private final Type type;
+    private final String line;
+    private final int iteration;
+    private final double objective;
+    private final double residual;
+    private final double error;
+    private final String stage;
+    private final double seconds;
+
+    private BartProgressEvent(Type type, String line, int iteration, double objective, double residual,
+            double error, String stage, double seconds) {
+        this.type = type;
+        this.line = line;
+        this.iteration = iteration;
+        this.objective = objective;
+        this.residual = residual;
+        this.error = error;
+        this.stage = stage;
+        this.seconds = seconds;
+    }
+
+    static BartProgressEvent iteration(String line, int iteration, double objective, double residual, double error) {
+        return new BartProgressEvent(Type.ITERATION, line, iteration, objective, residual, error, null, Double.NaN);
+    }
+
+    static BartProgressEvent timing(String line, String stage, double seconds) {
+        return new BartProgressEvent(Type.TIMING, line, -1, Double.NaN, Double.NaN, Double.NaN, stage, seconds);
+    }
+
+    static BartProgressEvent message(String line) {
+        return new BartProgressEvent(Type.MESSAGE, line, -1, Double.NaN, Double.NaN, Double.NaN, null, Double.NaN);
+    }
+
+    /**
+     * Returns the kind of the output line.
+     * 
+     * @return the kind of the output line
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the original output line.
+     * 
+     * @return the original output line
+     */
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the iteration number of an ITERATION event.
+     * 
+     * @return the iteration number, or -1 if it is not an ITERATION event
+     */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * Returns the value of the objective function reported by the iteration monitor.
+     * 
+     * @return the value of the objective function, or NaN if not reported
+     */
+    public double getObjective() {
+        return objective;
+    }
+
+    /**
+     * Returns the (typically relative) residual reported by the iterative algorithm.
+     * 
+     * @return the residual, or NaN if not reported
+     */
+    public double getResidual() {
+        return residual;
+    }
+
+    /**
+     * Returns the error compared to the ground truth reported by the iteration monitor.
+     * 
+     * @return the error, or NaN if not reported
+     */
+    public double getError() {
+        return error;
+    }
+
+    /**
+     * Returns the name of the stage of a TIMING event, e.g. "Total Time".
+     * 
+     * @return the name of the stage, or null if it is not a TIMING event
+     */
+    public String getStage() {
+        return stage;
+    }
+
+    /**
+     * Returns the elapsed time of a TIMING event.
+     * 
+     * @return the elapsed time in seconds, or NaN if it is not a TIMING event
+     */
+    public double getSeconds() {
+        return seconds;
+    }
+
+    @Override
+    public String toString() {
+        return type + ": " + line;
+    }
+
+}
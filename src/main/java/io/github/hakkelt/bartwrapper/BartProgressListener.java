@@ -0,0 +1,18 @@
+package io.github.hakkelt.bartwrapper;
+
+/**
+ * Receives the progress events parsed from the output of a BART command.
+ * 
+ * @see BartOutputParser#listen(BartProgressListener)
+ */
+@FunctionalInterface
+public interface BartProgressListener {
+
+    /**
+     * Called for each line of the output of the BART command.
+     * 
+     * @param event the parsed line
+     */
+    public void onEvent(BartProgressEvent event);
+
+}
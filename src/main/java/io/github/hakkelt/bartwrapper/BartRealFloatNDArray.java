@@ -0,0 +1,129 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import io.github.hakkelt.ndarrays.NDArray;
+import io.github.hakkelt.ndarrays.NDArrayUtils;
+
+/**
+ * Implementation of BartNDArray that stores only the real part of the entries as single-precision floats,
+ * so it takes half as much memory as BartComplexFloatNDArray. It is meant for masks, sampling patterns,
+ * magnitude images and other intermediates with zero imaginary part. Entries are expanded to complex floats
+ * only when the array is saved for BART.
+ */
+public class BartRealFloatNDArray extends AbstractBartNDArray {
+    protected float[] data;
+    private BartArrayPool.SharedBuffer buffer;
+
+    /**
+     * Simple constructor that defines only the shape of the NDArray and fills it with zeros.
+     *
+     * @param dims dimensions / shape of the NDArray
+     */
+    public BartRealFloatNDArray(int... dims) {
+        baseConstuctor(dims);
+        this.data = BartArrayPool.acquire(length(), true);
+        this.buffer = new BartArrayPool.SharedBuffer(data);
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param array NDArray from which entries are copied from. Its imaginary part must be zero.
+     */
+    public BartRealFloatNDArray(NDArray<?> array) {
+        baseConstuctor(array.shape());
+        this.data = BartArrayPool.acquire(length(), false);
+        this.buffer = new BartArrayPool.SharedBuffer(data);
+        copyFrom(array);
+        if (array instanceof BartNDArray && ((BartNDArray)array).areBartDimsSpecified())
+            bartDims = ((BartNDArray)array).getBartDims();
+    }
+
+    @Override
+    public BartRealFloatNDArray copyFrom(NDArray<?> array) {
+        if (array instanceof BartRealFloatNDArray) {
+            NDArrayUtils.checkShapeCompatibility(this, array.shape());
+            System.arraycopy(((BartRealFloatNDArray) array).data, 0, data, 0, data.length);
+        } else if (array instanceof BartComplexFloatNDArray) {
+            NDArrayUtils.checkShapeCompatibility(this, array.shape());
+            float[] source = ((BartComplexFloatNDArray) array).data;
+            for (int i = 0; i < data.length; i++) {
+                if (source[i * 2 + 1] != 0)
+                    throw new IllegalArgumentException(BartErrors.REAL_ARRAY_NONZERO_IMAGINARY_PART);
+                data[i] = source[i * 2];
+            }
+        } else
+            super.copyFrom(array);
+        return this;
+    }
+
+    @Override
+    public BartNDArray similar() {
+        return new BartRealFloatNDArray(shape);
+    }
+
+    @Override
+    public BartNDArray copy() {
+        return new BartRealFloatNDArray(this);
+    }
+
+    /**
+     * Returns the backing storage to {@link BartArrayPool} if pooling is enabled, under the same ownership
+     * rule as {@link BartComplexFloatNDArray#release()}.
+     */
+    @Override
+    public void release() {
+        if (buffer != null)
+            buffer.release();
+        buffer = null;
+        data = null;
+    }
+
+    @Override
+    protected void writeTo(FloatBuffer buffer) {
+        float[] chunk = new float[Math.min(data.length, CONVERSION_CHUNK_SIZE) * 2];
+        for (int start = 0; start < data.length; start += CONVERSION_CHUNK_SIZE) {
+            int end = Math.min(start + CONVERSION_CHUNK_SIZE, data.length);
+            for (int i = start; i < end; i++)
+                chunk[(i - start) * 2] = data[i];
+            buffer.put(chunk, 0, (end - start) * 2);
+        }
+    }
+
+    @Override
+    public Float getRealUnchecked(int linearIndex) {
+        return data[linearIndex];
+    }
+
+    @Override
+    public Float getImagUnchecked(int linearIndex) {
+        return 0f;
+    }
+
+    @Override
+    protected void setRealUnchecked(Float value, int linearIndex) {
+        data[linearIndex] = value;
+    }
+
+    @Override
+    protected void setImagUnchecked(Float value, int linearIndex) {
+        if (value != 0)
+            throw new IllegalArgumentException(BartErrors.REAL_ARRAY_NONZERO_IMAGINARY_PART);
+    }
+
+    @Override
+    protected BartRealFloatNDArray createNewNDArrayOfSameTypeAsMe(int... dims) {
+        return new BartRealFloatNDArray(dims);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof BartRealFloatNDArray && areBartDimsCompatible(obj))
+            return Arrays.equals(shape, ((BartRealFloatNDArray) obj).shape) &&
+                Arrays.equals(data, ((BartRealFloatNDArray) obj).data);
+        return super.equals(obj);
+    }
+
+}
@@ -0,0 +1,86 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+
+/**
+ * Runs BART commands on a remote worker (see {@link BartWorkerServer}). Array arguments are sent to the worker
+ * in the rawarray format, and the output array is sent back the same way. Files cannot be passed as arguments.
+ * The environment variables of the options are set for the BART process on the worker, and if the options have an
+ * output consumer, the output lines of the command are forwarded to it as they are printed; otherwise the output
+ * is discarded.
+ *
+ * <p>If the worker cannot be reached or the connection fails, {@link BartTransportException} is thrown;
+ * if the command fails on the worker, {@link BartException} is thrown with the error message of BART.
+ * The response is waited for at most as long as the time limit of the invocation (see {@link BartOptions#timeout}
+ * and {@value Bart#TIMEOUT_PROPERTY}) plus the grace period and {@link #READ_TIMEOUT_MARGIN}; without a time limit,
+ * it is waited for indefinitely.</p>
+ */
+public class BartRemoteExecutor implements BartExecutor {
+    /** Time allowed for queueing on the worker and for transferring the arrays, on top of the time limit */
+    static final Duration READ_TIMEOUT_MARGIN = Duration.ofSeconds(30);
+
+    private final BartTransport transport;
+
+    /**
+     * Creates an executor that sends the commands to the worker reached by the transport.
+     *
+     * @param transport opens connections to the worker
+     */
+    public BartRemoteExecutor(BartTransport transport) {
+        this.transport = transport;
+    }
+
+    @Override
+    public BartNDArray run(BartOptions options, Object... args) throws BartException {
+        return runMulti(options, 1, args)[0];
+    }
+
+    @Override
+    public String read(BartOptions options, Object... args) throws BartException {
+        return ((String) exchange(BartWireProtocol.READ, 0, options, args)).trim();
+    }
+
+    @Override
+    public BartNDArray[] runMulti(BartOptions options, int outputs, Object... args) throws BartException {
+        if (outputs <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "number of outputs", outputs));
+        BartNDArray[] results = (BartNDArray[]) exchange(BartWireProtocol.RUN, outputs, options, args);
+        if (results.length != outputs)
+            throw new BartTransportException(String.format(BartErrors.WORKER_FAILED, transport, BartErrors.INVALID_WORKER_RESPONSE));
+        return results;
+    }
+
+    @Override
+    public String toString() {
+        return transport.toString();
+    }
+
+    private Object exchange(byte kind, int outputs, BartOptions options, Object... args) throws BartException {
+        try (BartTransport.Connection connection = transport.connect()) {
+            connection.setReadTimeout(readTimeout(options));
+            OutputStream output = new BufferedOutputStream(connection.getOutputStream());
+            BartWireProtocol.writeRequest(output, kind, outputs, options, args);
+            output.flush();
+            return BartWireProtocol.readResponse(new BufferedInputStream(connection.getInputStream()), options.getOutputConsumer());
+        } catch (SocketTimeoutException e) {
+            throw new BartTransportException(String.format(BartErrors.WORKER_FAILED, transport, BartErrors.WORKER_TIMED_OUT));
+        } catch (IOException e) {
+            throw new BartTransportException(String.format(BartErrors.WORKER_FAILED, transport, e.getMessage()));
+        }
+    }
+
+    /**
+     * Returns how long the response may be waited for: the time limit of the invocation (or the default one)
+     * plus the grace period and a margin, or null if there is no time limit.
+     */
+    static Duration readTimeout(BartOptions options) {
+        Duration timeout = options.getTimeout() != null ? options.getTimeout() : Bart.getTimeout();
+        return timeout == null ? null : timeout.plus(options.getGracePeriod()).plus(READ_TIMEOUT_MARGIN);
+    }
+
+}
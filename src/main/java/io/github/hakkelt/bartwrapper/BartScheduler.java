@@ -0,0 +1,446 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.hakkelt.ndarrays.NDArray;
+
+/**
+ * Runs BART jobs on a fixed number of worker threads, ordered by priority and shared fairly between tenants,
+ * and admits a job only while the total estimated memory footprint of the running jobs stays within a budget.
+ *
+ * <p>Jobs with higher priority are started first. Among the jobs of equal priority, the tenant with the fewest
+ * running jobs is served first, and then the one that was served least recently, so a tenant submitting many
+ * jobs cannot starve the others. Within a tenant, jobs of equal priority are started in submission order.
+ * A job that does not fit into the memory budget blocks the jobs queued behind it until enough memory is
+ * freed, so large jobs are not starved by a stream of small ones. A job larger than the whole budget is
+ * started when no other job is running.</p>
+ *
+ * <p>The memory footprint of a job is estimated from the size of its inputs (NDArrays and files)
+ * multiplied by a per-command multiplier (see {@link #setMultiplier(String, double)}).</p>
+ *
+ * <p>Running jobs can be cancelled by {@code Future.cancel(true)}, which interrupts the BART invocation
+ * (see {@link BartOptions}).</p>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartScheduler scheduler = new BartScheduler(8, 32L << 30);
+scheduler.setMultiplier("pics", 6);
+Future<BartNDArray> preview = scheduler.run("alice", 10, "pics", "-l1", "-r0.01", slice, sensitivities);
+Future<BartNDArray> batch = scheduler.run("bob", 0, "pics", "-l1", "-r0.01", volume, sensitivities);
+ * }</pre></blockquote>
+ */
+public class BartScheduler implements AutoCloseable {
+    /** Multiplier used for commands that are not in the multiplier table */
+    public static final double DEFAULT_MULTIPLIER = 3;
+
+    private static final Comparator<Job<?>> JOB_ORDER = Comparator
+        .<Job<?>>comparingInt(job -> -job.priority)
+        .thenComparingLong(job -> job.sequence);
+
+    private final int maxConcurrency;
+    private final long memoryBudget;
+    private final ExecutorService workers;
+    private final Map<String, Double> multipliers = new ConcurrentHashMap<>();
+    private volatile double defaultMultiplier = DEFAULT_MULTIPLIER;
+
+    private final Object lock = new Object();
+    private final Map<String, Tenant> tenants = new LinkedHashMap<>();
+    private long memoryInUse = 0;
+    private int running = 0;
+    private int queued = 0;
+    private long sequence = 0;
+    private long dispatchCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param maxConcurrency the maximum number of jobs running at the same time
+     * @param memoryBudget upper limit of the total estimated memory footprint of running jobs in bytes
+     */
+    public BartScheduler(int maxConcurrency, long memoryBudget) {
+        if (maxConcurrency <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "number of concurrent jobs", maxConcurrency));
+        if (memoryBudget <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "memory budget", memoryBudget));
+        this.maxConcurrency = maxConcurrency;
+        this.memoryBudget = memoryBudget;
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "bart-scheduler-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the ratio of the memory footprint of the given command to the total size of its inputs.
+     *
+     * @param command name of the BART command
+     * @param multiplier the ratio of the memory footprint to the size of the inputs
+     */
+    public void setMultiplier(String command, double multiplier) {
+        multipliers.put(command, checkMultiplier(multiplier));
+    }
+
+    /**
+     * Sets the multiplier used for commands that are not in the multiplier table.
+     *
+     * @param multiplier the ratio of the memory footprint to the size of the inputs
+     */
+    public void setDefaultMultiplier(double multiplier) {
+        defaultMultiplier = checkMultiplier(multiplier);
+    }
+
+    /**
+     * Estimates the memory footprint of a BART invocation as the total size of its inputs (NDArrays are
+     * counted as complex float arrays, and files by their size) multiplied by the multiplier of the command.
+     *
+     * @param args name of BART command and its arguments
+     * @return the estimated memory footprint in bytes
+     */
+    public long estimateFootprint(Object... args) {
+        long inputBytes = 0;
+        for (Object arg : args) {
+            if (arg instanceof NDArray)
+                inputBytes += (long) ((NDArray<?>) arg).length() * 2 * Float.BYTES;
+            else if (arg instanceof File)
+                inputBytes += ((File) arg).length();
+            else if (arg instanceof BartStoredArray)
+                inputBytes += ((BartStoredArray) arg).getFile().length();
+        }
+        double multiplier = args.length > 0
+            ? multipliers.getOrDefault(String.valueOf(args[0]), defaultMultiplier)
+            : defaultMultiplier;
+        return (long) Math.ceil(inputBytes * multiplier);
+    }
+
+    /**
+     * Schedules {@link Bart#run(Object...)}.
+     *
+     * @param tenant the tenant that submits the job
+     * @param priority priority of the job; jobs with higher priority are started first
+     * @param args name of BART command and its arguments
+     * @return the future result of the BART command
+     */
+    public Future<BartNDArray> run(String tenant, int priority, Object... args) {
+        return run(tenant, priority, new BartOptions(), args);
+    }
+
+    /**
+     * Schedules {@link Bart#run(BartOptions, Object...)}.
+     *
+     * @param tenant the tenant that submits the job
+     * @param priority priority of the job; jobs with higher priority are started first
+     * @param options timeout, resource limits and output consumer of the invocation
+     * @param args name of BART command and its arguments
+     * @return the future result of the BART command
+     */
+    public Future<BartNDArray> run(String tenant, int priority, BartOptions options, Object... args) {
+        return submit(tenant, priority, estimateFootprint(args), () -> Bart.run(options, args));
+    }
+
+    /**
+     * Schedules {@link Bart#runMulti(int, Object...)}.
+     *
+     * @param tenant the tenant that submits the job
+     * @param priority priority of the job; jobs with higher priority are started first
+     * @param outputs the number of output files
+     * @param args name of BART command and its arguments
+     * @return the future results of the BART command
+     */
+    public Future<BartNDArray[]> runMulti(String tenant, int priority, int outputs, Object... args) {
+        return runMulti(tenant, priority, new BartOptions(), outputs, args);
+    }
+
+    /**
+     * Schedules {@link Bart#runMulti(BartOptions, int, Object...)}.
+     *
+     * @param tenant the tenant that submits the job
+     * @param priority priority of the job; jobs with higher priority are started first
+     * @param options timeout, resource limits and output consumer of the invocation
+     * @param outputs the number of output files
+     * @param args name of BART command and its arguments
+     * @return the future results of the BART command
+     */
+    public Future<BartNDArray[]> runMulti(String tenant, int priority, BartOptions options, int outputs, Object... args) {
+        return submit(tenant, priority, estimateFootprint(args), () -> Bart.runMulti(options, outputs, args));
+    }
+
+    /**
+     * Schedules {@link Bart#read(Object...)}.
+     *
+     * @param tenant the tenant that submits the job
+     * @param priority priority of the job; jobs with higher priority are started first
+     * @param args name of BART command and its arguments
+     * @return the future output of the BART command
+     */
+    public Future<String> read(String tenant, int priority, Object... args) {
+        return read(tenant, priority, new BartOptions(), args);
+    }
+
+    /**
+     * Schedules {@link Bart#read(BartOptions, Object...)}.
+     *
+     * @param tenant the tenant that submits the job
+     * @param priority priority of the job; jobs with higher priority are started first
+     * @param options timeout and resource limits of the invocation
+     * @param args name of BART command and its arguments
+     * @return the future output of the BART command
+     */
+    public Future<String> read(String tenant, int priority, BartOptions options, Object... args) {
+        return submit(tenant, priority, estimateFootprint(args), () -> Bart.read(options, args));
+    }
+
+    /**
+     * Schedules {@link Bart#execute(Object...)}.
+     *
+     * @param tenant the tenant that submits the job
+     * @param priority priority of the job; jobs with higher priority are started first
+     * @param args name of BART command and its arguments
+     * @return future that completes when the BART command finished
+     */
+    public Future<Void> execute(String tenant, int priority, Object... args) {
+        return execute(tenant, priority, new BartOptions(), args);
+    }
+
+    /**
+     * Schedules {@link Bart#execute(BartOptions, Object...)}.
+     *
+     * @param tenant the tenant that submits the job
+     * @param priority priority of the job; jobs with higher priority are started first
+     * @param options timeout, resource limits and output consumer of the invocation
+     * @param args name of BART command and its arguments
+     * @return future that completes when the BART command finished
+     */
+    public Future<Void> execute(String tenant, int priority, BartOptions options, Object... args) {
+        return submit(tenant, priority, estimateFootprint(args), () -> {
+            Bart.execute(options, args);
+            return null;
+        });
+    }
+
+    /**
+     * Schedules an arbitrary task, e.g. a sequence of BART invocations.
+     *
+     * @param <T> type of the result of the task
+     * @param tenant the tenant that submits the job
+     * @param priority priority of the job; jobs with higher priority are started first
+     * @param memoryFootprint estimated memory footprint of the task in bytes
+     * @param task the task to run
+     * @return the future result of the task
+     */
+    public <T> Future<T> submit(String tenant, int priority, long memoryFootprint, Callable<T> task) {
+        if (memoryFootprint < 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "memory footprint", memoryFootprint));
+        synchronized (lock) {
+            if (closed)
+                throw new RejectedExecutionException(BartErrors.SCHEDULER_CLOSED);
+            Tenant owner = tenants.computeIfAbsent(String.valueOf(tenant), Tenant::new);
+            Job<T> job = new Job<>(task, owner, priority, memoryFootprint, sequence++);
+            owner.queue.add(job);
+            queued++;
+            dispatch();
+            return job;
+        }
+    }
+
+    /**
+     * Returns the total estimated memory footprint of the running jobs.
+     *
+     * @return memory footprint in bytes
+     */
+    public long getMemoryInUse() {
+        synchronized (lock) {
+            return memoryInUse;
+        }
+    }
+
+    /**
+     * Returns the number of running jobs.
+     *
+     * @return the number of running jobs
+     */
+    public int getRunningCount() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    /**
+     * Returns the number of jobs waiting to be started.
+     *
+     * @return the number of queued jobs
+     */
+    public int getQueuedCount() {
+        synchronized (lock) {
+            return queued;
+        }
+    }
+
+    /**
+     * Cancels all queued jobs and interrupts the running ones.
+     */
+    public void cancelAll() {
+        List<Job<?>> jobs = new ArrayList<>();
+        synchronized (lock) {
+            for (Tenant tenant : tenants.values()) {
+                jobs.addAll(tenant.queue);
+                jobs.addAll(tenant.running);
+            }
+        }
+        for (Job<?> job : jobs)
+            job.cancel(true);
+    }
+
+    /**
+     * Stops accepting new jobs, waits until the queued and running jobs finish, and stops the worker threads.
+     * If the calling thread is interrupted while waiting, all jobs are cancelled.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            try {
+                while (running > 0 || queued > 0)
+                    lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelAll();
+            }
+        }
+        workers.shutdown();
+    }
+
+    private static double checkMultiplier(double multiplier) {
+        if (!(multiplier > 0) || Double.isInfinite(multiplier))
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "multiplier", multiplier));
+        return multiplier;
+    }
+
+    /**
+     * Starts queued jobs while there are free workers and the next job fits into the memory budget.
+     * Must be called while holding the lock.
+     */
+    private void dispatch() {
+        while (running < maxConcurrency) {
+            Tenant tenant = selectTenant();
+            if (tenant == null)
+                return;
+            Job<?> job = tenant.queue.peek();
+            if (running > 0 && memoryInUse + job.footprint > memoryBudget)
+                return;
+            tenant.queue.poll();
+            tenant.running.add(job);
+            tenant.lastDispatch = ++dispatchCount;
+            job.started = true;
+            queued--;
+            running++;
+            memoryInUse += job.footprint;
+            workers.execute(() -> {
+                try {
+                    job.run();
+                } finally {
+                    finished(job);
+                }
+            });
+        }
+    }
+
+    private Tenant selectTenant() {
+        Tenant selected = null;
+        for (Tenant tenant : tenants.values()) {
+            if (tenant.queue.isEmpty())
+                continue;
+            if (selected == null || isServedBefore(tenant, selected))
+                selected = tenant;
+        }
+        return selected;
+    }
+
+    private static boolean isServedBefore(Tenant tenant, Tenant other) {
+        int priority = tenant.queue.peek().priority;
+        int otherPriority = other.queue.peek().priority;
+        if (priority != otherPriority)
+            return priority > otherPriority;
+        if (tenant.running.size() != other.running.size())
+            return tenant.running.size() < other.running.size();
+        return tenant.lastDispatch < other.lastDispatch;
+    }
+
+    private void finished(Job<?> job) {
+        synchronized (lock) {
+            job.tenant.running.remove(job);
+            running--;
+            memoryInUse -= job.footprint;
+            removeIfIdle(job.tenant);
+            dispatch();
+            lock.notifyAll();
+        }
+    }
+
+    private void cancelledWhileQueued(Job<?> job) {
+        synchronized (lock) {
+            if (job.started || !job.tenant.queue.remove(job))
+                return;
+            queued--;
+            removeIfIdle(job.tenant);
+            dispatch();
+            lock.notifyAll();
+        }
+    }
+
+    private void removeIfIdle(Tenant tenant) {
+        if (tenant.queue.isEmpty() && tenant.running.isEmpty())
+            tenants.remove(tenant.name);
+    }
+
+    private static class Tenant {
+        final String name;
+        final PriorityQueue<Job<?>> queue = new PriorityQueue<>(JOB_ORDER);
+        final List<Job<?>> running = new ArrayList<>();
+        long lastDispatch = 0;
+
+        Tenant(String name) {
+            this.name = name;
+        }
+    }
+
+    private class Job<T> extends FutureTask<T> {
+        final Tenant tenant;
+        final int priority;
+        final long footprint;
+        final long sequence;
+        boolean started = false;
+
+        Job(Callable<T> task, Tenant tenant, int priority, long footprint, long sequence) {
+            super(task);
+            this.tenant = tenant;
+            this.priority = priority;
+            this.footprint = footprint;
+            this.sequence = sequence;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled())
+                cancelledWhileQueued(this);
+        }
+    }
+
+}
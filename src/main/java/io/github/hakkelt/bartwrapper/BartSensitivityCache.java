@@ -0,0 +1,162 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.hakkelt.ndarrays.NDArray;
+
+/**
+ * Session-scoped cache of coil sensitivity maps computed by {@code bart ecalib}, keyed by e.g. subject and series.
+ *
+ * <p>The maps of a key are reused as long as the calibration data passed for that key stays similar to the data
+ * the maps were computed from: the normalized difference {@code ||new - reference|| / ||reference||} must not
+ * exceed the threshold. Otherwise the maps are recomputed, and the new calibration data becomes the reference.
+ * As the reference is not updated by hits, a slow drift of the calibration data also leads to a refresh.</p>
+ *
+ * <p>It is cheapest to pass only the calibration (ACS) region, e.g. the output of {@code bart resize -c}, as it is
+ * compared in full and passed to ecalib. The returned maps are shared between hits, so they must not be modified
+ * or released by the caller.</p>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartSensitivityCache cache = new BartSensitivityCache("-m1").threshold(0.05);
+for (BartNDArray frame : frames) {
+    BartNDArray sensitivities = cache.get("subject-17/series-3", Bart.run("resize", "-c", 0, 24, 1, 24, frame));
+    BartNDArray image = Bart.run("pics", "-l1", "-r0.01", frame, sensitivities);
+}
+ * }</pre></blockquote>
+ */
+public class BartSensitivityCache {
+    /** Default maximal normalized difference between calibration data whose maps can be shared */
+    public static final double DEFAULT_THRESHOLD = 0.05;
+
+    private final Object[] ecalibOptions;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile double threshold = DEFAULT_THRESHOLD;
+    private volatile BartExecutor executor = BartExecutor.LOCAL;
+
+    /**
+     * Creates an empty cache that computes the maps by {@code bart ecalib} with the given options.
+     *
+     * @param ecalibOptions options of ecalib, e.g. "-m1"
+     */
+    public BartSensitivityCache(Object... ecalibOptions) {
+        this.ecalibOptions = ecalibOptions.clone();
+    }
+
+    /**
+     * Sets the maximal normalized difference between the calibration data and the reference data for which
+     * the cached maps are reused. The default is {@value #DEFAULT_THRESHOLD}.
+     *
+     * @param threshold the threshold
+     * @return this cache
+     */
+    public BartSensitivityCache threshold(double threshold) {
+        if (!(threshold > 0) || Double.isInfinite(threshold))
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "threshold", threshold));
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * Sets the executor that runs ecalib. The default is {@link BartExecutor#LOCAL}.
+     *
+     * @param executor the executor
+     * @return this cache
+     */
+    public BartSensitivityCache executor(BartExecutor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Returns the sensitivity maps of the key, computing them from the calibration data if there are no maps
+     * for the key yet, or the calibration data differs too much from the data the cached maps were computed from.
+     * Concurrent calls with the same key wait for each other, calls with different keys run in parallel.
+     *
+     * @param key identifies the subject and series
+     * @param calibration the calibration data (k-space)
+     * @return the sensitivity maps
+     * @throws BartException when running ecalib fails
+     */
+    public BartNDArray get(String key, NDArray<?> calibration) throws BartException {
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        synchronized (entry) {
+            if (entry.sensitivities != null && normalizedDifference(calibration, entry.reference) <= threshold) {
+                hits.incrementAndGet();
+                return entry.sensitivities;
+            }
+            misses.incrementAndGet();
+            Object[] args = new Object[ecalibOptions.length + 2];
+            args[0] = "ecalib";
+            System.arraycopy(ecalibOptions, 0, args, 1, ecalibOptions.length);
+            args[args.length - 1] = calibration;
+            BartNDArray sensitivities = executor.run(args);
+            entry.reference = new BartComplexFloatNDArray(calibration);
+            entry.sensitivities = sensitivities;
+            return sensitivities;
+        }
+    }
+
+    /**
+     * Drops the maps of the key, so that they are recomputed at the next request.
+     *
+     * @param key identifies the subject and series
+     */
+    public void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Drops all maps, e.g. at the end of the session.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Computes {@code ||array - reference|| / ||reference||}, or infinity if the shapes differ.
+     */
+    static double normalizedDifference(NDArray<?> array, BartComplexFloatNDArray reference) {
+        if (!Arrays.equals(array.shape(), reference.shape()))
+            return Double.POSITIVE_INFINITY;
+        BartComplexFloatNDArray dense = array.getClass() == BartComplexFloatNDArray.class
+            ? (BartComplexFloatNDArray) array
+            : new BartComplexFloatNDArray(array);
+        double difference = 0;
+        double norm = 0;
+        for (int i = 0; i < 2 * reference.length(); i++) {
+            double d = dense.data[i] - reference.data[i];
+            difference += d * d;
+            norm += (double) reference.data[i] * reference.data[i];
+        }
+        if (dense != array)
+            dense.release();
+        if (norm == 0)
+            return difference == 0 ? 0 : Double.POSITIVE_INFINITY;
+        return Math.sqrt(difference / norm);
+    }
+
+    private static final class Entry {
+        BartComplexFloatNDArray reference;
+        BartNDArray sensitivities;
+    }
+
+}
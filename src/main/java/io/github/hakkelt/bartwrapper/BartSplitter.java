@@ -0,0 +1,131 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import io.github.hakkelt.ndarrays.NDArray;
+
+/**
+ * Splits the array arguments of a BART command along a BART dimension, and joins the outputs
+ * computed for the pieces. Arrays are handled in the order of BART dimensions, i.e. as they are saved.
+ */
+final class BartSplitter {
+    private static final int BART_DIMS = BartDimsEnum.values().length;
+
+    private BartSplitter() {}
+
+    /**
+     * Splits the array arguments along the given dimension. Arrays whose size along the dimension is 1
+     * are passed to each piece unchanged; all others must have the same size along the dimension.
+     *
+     * @return the arguments of each piece
+     */
+    static Object[][] split(BartDimsEnum dim, Object... args) {
+        int d = dim.ordinal();
+        Dense[] arrays = new Dense[args.length];
+        int count = 1;
+        for (int i = 0; i < args.length; i++) {
+            if (!(args[i] instanceof NDArray))
+                continue;
+            arrays[i] = new Dense((NDArray<?>) args[i]);
+            int size = arrays[i].shape[d];
+            if (size != 1 && count != 1 && size != count)
+                throw new IllegalArgumentException(String.format(BartErrors.SPLIT_SIZE_MISMATCH, dim, count, size));
+            count = Math.max(count, size);
+        }
+        Object[][] pieces = new Object[count][];
+        if (count == 1) {
+            pieces[0] = args;
+            return pieces;
+        }
+        for (int index = 0; index < count; index++) {
+            pieces[index] = args.clone();
+            for (int i = 0; i < args.length; i++)
+                if (arrays[i] != null && arrays[i].shape[d] > 1)
+                    pieces[index][i] = arrays[i].extract(d, index);
+        }
+        return pieces;
+    }
+
+    /**
+     * Joins the outputs of the pieces along the given dimension.
+     */
+    static BartNDArray join(BartDimsEnum dim, List<? extends NDArray<?>> parts) {
+        if (parts.size() == 1)
+            return (BartNDArray) parts.get(0);
+        int d = dim.ordinal();
+        Dense[] dense = parts.stream().map(Dense::new).toArray(Dense[]::new);
+        int[] shape = dense[0].shape.clone();
+        for (Dense part : dense)
+            if (part.shape[d] != 1 || !Arrays.equals(withSize(part.shape, d, 1), withSize(shape, d, 1)))
+                throw new IllegalArgumentException(String.format(BartErrors.SPLIT_RESULT_SHAPE_MISMATCH,
+                    Arrays.toString(dense[0].shape), Arrays.toString(part.shape)));
+        shape[d] = dense.length;
+        int inner = product(shape, 0, d);
+        int outer = product(shape, d + 1, BART_DIMS);
+        int ndim = Math.max(d + 1, parts.stream().mapToInt(NDArray::ndim).max().orElse(1));
+        BartComplexFloatNDArray result = BartComplexFloatNDArray.createUninitialized(Arrays.copyOf(shape, ndim));
+        for (int o = 0; o < outer; o++)
+            for (int i = 0; i < dense.length; i++)
+                System.arraycopy(dense[i].data, 2 * o * inner, result.data, 2 * (o * dense.length + i) * inner, 2 * inner);
+        result.setBartDims(Stream.of(BartDimsEnum.values()).limit(ndim).toArray(BartDimsEnum[]::new));
+        return result;
+    }
+
+    /**
+     * Returns the size of the array along the given dimension, in the order of BART dimensions.
+     */
+    static int sizeAlong(NDArray<?> array, BartDimsEnum dim) {
+        NDArray<?> prepared = array instanceof BartNDArray ? BartNDArray.prepareToSave((BartNDArray) array) : array;
+        return dim.ordinal() < prepared.ndim() ? prepared.shape()[dim.ordinal()] : 1;
+    }
+
+    private static int[] withSize(int[] shape, int dim, int size) {
+        int[] result = shape.clone();
+        result[dim] = size;
+        return result;
+    }
+
+    private static int product(int[] shape, int from, int to) {
+        int result = 1;
+        for (int i = from; i < to; i++)
+            result *= shape[i];
+        return result;
+    }
+
+    /**
+     * Column-major complex data of an array in the order of BART dimensions, with all BART dimensions.
+     */
+    private static final class Dense {
+        final float[] data;
+        final int[] shape;
+
+        Dense(NDArray<?> array) {
+            NDArray<?> prepared = array instanceof BartNDArray ? BartNDArray.prepareToSave((BartNDArray) array) : array;
+            if (prepared.ndim() > BART_DIMS)
+                throw new IllegalArgumentException(String.format(BartErrors.TOO_MANY_DIMS_TO_SPLIT, prepared.ndim(), BART_DIMS));
+            shape = Arrays.copyOf(prepared.shape(), BART_DIMS);
+            for (int i = prepared.ndim(); i < BART_DIMS; i++)
+                shape[i] = 1;
+            data = prepared.getClass() == BartComplexFloatNDArray.class
+                ? ((BartComplexFloatNDArray) prepared).data
+                : new BartComplexFloatNDArray(prepared).data;
+        }
+
+        BartComplexFloatNDArray extract(int dim, int index) {
+            int count = shape[dim];
+            int inner = product(shape, 0, dim);
+            int outer = product(shape, dim + 1, BART_DIMS);
+            int[] sliceShape = withSize(shape, dim, 1);
+            int ndim = BART_DIMS;
+            while (ndim > 1 && sliceShape[ndim - 1] == 1)
+                ndim--;
+            BartComplexFloatNDArray slice = BartComplexFloatNDArray.createUninitialized(Arrays.copyOf(sliceShape, ndim));
+            for (int o = 0; o < outer; o++)
+                System.arraycopy(data, 2 * (o * count + index) * inner, slice.data, 2 * o * inner, 2 * inner);
+            return slice;
+        }
+    }
+
+}
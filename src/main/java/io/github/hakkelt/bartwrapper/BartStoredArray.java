@@ -0,0 +1,70 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.stream.Stream;
+
+/**
+ * Handle of an array kept in a {@link BartArrayStore}. It can be passed to {@link Bart#run(Object...)} and
+ * the other methods in place of the array, and BART reads the stored file directly.
+ */
+public final class BartStoredArray {
+    private final BartArrayStore store;
+    private final String key;
+
+    BartStoredArray(BartArrayStore store, String key) {
+        this.store = store;
+        this.key = key;
+    }
+
+    /**
+     * Returns the key of the array in the store: the hash of its content, or of the command that computed it.
+     *
+     * @return the key of the array
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public File getFile() {
+        return store.fileOf(key);
+    }
+
+    /**
+     * Reads the stored array.
+     *
+     * @return a copy of the stored array
+     * @throws IOException when reading the file fails
+     */
+    public BartNDArray load() throws IOException {
+        BartNDArray array = BartNDArray.load(resolve());
+        array.setBartDims(Stream.of(BartDimsEnum.values()).limit(array.ndim()).toArray(BartDimsEnum[]::new));
+        return array;
+    }
+
+    /**
+     * Returns the file of the array, and marks it as recently accessed in the store.
+     *
+     * @throws IllegalArgumentException if the array was evicted from the store
+     */
+    File resolve() {
+        return store.resolve(this);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof BartStoredArray
+            && ((BartStoredArray) other).store == store && ((BartStoredArray) other).key.equals(key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getFile().toString();
+    }
+
+}
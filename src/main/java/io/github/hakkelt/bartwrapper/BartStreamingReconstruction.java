@@ -0,0 +1,226 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import io.github.hakkelt.ndarrays.NDArray;
+
+/**
+ * Reconstructs a series of frames (e.g. of a real-time acquisition) by {@code bart pics}, starting the iterations
+ * of each frame from the reconstruction of the previous frame ({@code pics -W}).
+ *
+ * <p>The output file of the previous frame is kept and passed to BART as the warm start, so the image is not saved
+ * again for each frame. The number of iterations adapts to the convergence of the previous frames: the residuals
+ * printed by BART (at debug level 5, see {@link BartOutputParser}) are divided by the first residual printed for
+ * the first frame, and compared to the tolerance, and the next frame gets a little more iterations than the previous
+ * one needed to reach it, or twice as many if it did not reach it, within the given limits. Normalizing makes the
+ * absolute residuals of conjugate gradient ({@code -l2}) and ADMM comparable to the relative ones of IST and FISTA,
+ * and lets the warm-started frames, which start close to the solution, converge in a few iterations.</p>
+ *
+ * <p>Frames must be reconstructed one after the other; instances are not thread-safe.</p>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+try (BartStreamingReconstruction reconstruction = new BartStreamingReconstruction("-l1", "-r0.01")
+        .iterations(5, 100).tolerance(1e-3)) {
+    for (BartNDArray frame : frames)
+        images.add(reconstruction.next(frame, sensitivities));
+}
+ * }</pre></blockquote>
+ */
+public class BartStreamingReconstruction implements AutoCloseable {
+    /** Default residual, relative to the first one, at which the iterations are considered converged */
+    public static final double DEFAULT_TOLERANCE = 1e-3;
+    /** Default minimal number of iterations */
+    public static final int DEFAULT_MIN_ITERATIONS = 5;
+    /** Default maximal number of iterations */
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+    /** Line printed by pics when it starts from the given image */
+    private static final String WARM_START_PREFIX = "Warm start:";
+
+    private final Object[] picsOptions;
+    private double tolerance = DEFAULT_TOLERANCE;
+    private int minIterations = DEFAULT_MIN_ITERATIONS;
+    private int maxIterations = DEFAULT_MAX_ITERATIONS;
+    private int iterations = DEFAULT_MAX_ITERATIONS;
+    private int lastConvergedAt = -1;
+    private int lastIterations;
+    private boolean lastWarmStarted;
+    private double referenceResidual = Double.NaN;
+    private File warmStart;
+
+    /**
+     * Creates a reconstruction that runs pics with the given options for each frame.
+     *
+     * @param picsOptions options of pics, e.g. "-l1", "-r0.01" (without -i, -W and -d)
+     */
+    public BartStreamingReconstruction(Object... picsOptions) {
+        this.picsOptions = picsOptions.clone();
+    }
+
+    /**
+     * Sets the limits of the number of iterations. The first frame is reconstructed with the maximal number.
+     *
+     * @param min the minimal number of iterations
+     * @param max the maximal number of iterations
+     * @return this reconstruction
+     */
+    public BartStreamingReconstruction iterations(int min, int max) {
+        if (min <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "minimal number of iterations", min));
+        if (max < min)
+            throw new IllegalArgumentException(String.format(BartErrors.INVALID_ITERATION_LIMITS, max, min));
+        this.minIterations = min;
+        this.maxIterations = max;
+        this.iterations = max;
+        return this;
+    }
+
+    /**
+     * Sets the residual, relative to the first residual of the first frame, below which the iterations are
+     * considered converged.
+     * The default is {@value #DEFAULT_TOLERANCE}.
+     *
+     * @param tolerance the tolerance
+     * @return this reconstruction
+     */
+    public BartStreamingReconstruction tolerance(double tolerance) {
+        if (!(tolerance > 0) || Double.isInfinite(tolerance))
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "tolerance", tolerance));
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Reconstructs the next frame, starting from the reconstruction of the previous frame.
+     *
+     * @param kspace the k-space data of the frame
+     * @param sensitivities the coil sensitivities
+     * @return the reconstructed image
+     * @throws BartException when running pics fails
+     */
+    public BartNDArray next(NDArray<?> kspace, NDArray<?> sensitivities) throws BartException {
+        File output = null;
+        try {
+            output = Files.createTempFile("bart_", ".ra").toFile();
+            List<Object> args = new ArrayList<>();
+            args.add("pics");
+            args.add("-d5");
+            args.add("-i" + iterations);
+            if (warmStart != null) {
+                args.add("-W");
+                args.add(warmStart);
+            }
+            args.addAll(Arrays.asList(picsOptions));
+            args.add(kspace);
+            args.add(sensitivities);
+            args.add(output);
+            List<Double> residuals = new ArrayList<>();
+            boolean[] warmStarted = { false };
+            Bart.execute(BartOutputParser.listen(event -> {
+                if (event.getType() == BartProgressEvent.Type.ITERATION && !Double.isNaN(event.getResidual()))
+                    residuals.add(event.getResidual());
+            }, line -> warmStarted[0] |= line.startsWith(WARM_START_PREFIX)), args.toArray());
+            lastWarmStarted = warmStarted[0];
+            BartNDArray image = BartNDArray.load(output);
+            image.setBartDims(Stream.of(BartDimsEnum.values()).limit(image.ndim()).toArray(BartDimsEnum[]::new));
+            if (warmStart != null)
+                Files.deleteIfExists(warmStart.toPath());
+            warmStart = output;
+            output = null;
+            adapt(residuals);
+            return image;
+        } catch (IOException e) {
+            throw new BartException(e.getMessage());
+        } finally {
+            if (output != null)
+                output.delete();
+        }
+    }
+
+    /**
+     * Returns the number of iterations the next frame gets.
+     *
+     * @return the number of iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Returns the number of iterations after which the residual of the last frame fell below the tolerance.
+     *
+     * @return the number of iterations, or -1 if the last frame did not converge or no residuals were printed
+     */
+    public int getLastConvergedAt() {
+        return lastConvergedAt;
+    }
+
+    /**
+     * Returns the number of iterations of the last frame, as reported by BART.
+     *
+     * @return the number of iterations, or 0 if no residuals were printed
+     */
+    public int getLastIterations() {
+        return lastIterations;
+    }
+
+    /**
+     * Tells whether pics started the iterations of the last frame from the reconstruction of the previous frame.
+     *
+     * @return true if the last frame was warm-started
+     */
+    public boolean isLastWarmStarted() {
+        return lastWarmStarted;
+    }
+
+    /**
+     * Drops the warm start, e.g. when the field of view changes, and resets the number of iterations to the maximum.
+     *
+     * @throws IOException when the kept output file cannot be deleted
+     */
+    public void reset() throws IOException {
+        if (warmStart != null)
+            Files.deleteIfExists(warmStart.toPath());
+        warmStart = null;
+        iterations = maxIterations;
+        lastConvergedAt = -1;
+        referenceResidual = Double.NaN;
+    }
+
+    /**
+     * Deletes the kept output file.
+     *
+     * @throws IOException when the kept output file cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        reset();
+    }
+
+    void adapt(List<Double> residuals) {
+        lastConvergedAt = -1;
+        lastIterations = residuals.size();
+        if (residuals.isEmpty())
+            return;
+        if (Double.isNaN(referenceResidual))
+            referenceResidual = residuals.get(0);
+        double scale = referenceResidual > 0 ? referenceResidual : 1;
+        for (int i = 0; i < residuals.size(); i++)
+            if (residuals.get(i) / scale <= tolerance) {
+                lastConvergedAt = i + 1;
+                break;
+            }
+        int next = lastConvergedAt > 0
+            ? lastConvergedAt + Math.max(1, lastConvergedAt / 4)
+            : 2 * iterations;
+        iterations = Math.max(minIterations, Math.min(maxIterations, next));
+    }
+
+}
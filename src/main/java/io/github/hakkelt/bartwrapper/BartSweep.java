@@ -0,0 +1,261 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import io.github.hakkelt.ndarrays.NDArray;
+
+/**
+ * Runs a BART command for each point of a parameter grid (e.g. the regularization parameter of {@code pics -r},
+ * or the threshold of {@code ecalib -t}), and stacks the outputs along BART dimensions, one for each parameter.
+ *
+ * <p>The command lines of all points are built in advance. Arrays that are passed to more than one invocation
+ * (typically the k-space and the sensitivities) are saved only once, to a read-only file that BART maps into
+ * memory, and the file is deleted as soon as the last invocation using it is finished. On Linux, the files can be
+ * kept in memory by passing {@code /dev/shm} to {@link #directory(File)}. The invocations are run on a limited
+ * number of threads.</p>
+ *
+ * <p>Arrays are shared through files only when the executor is {@link BartExecutor#LOCAL}; other executors
+ * get the arrays themselves, as their workers cannot access local files.</p>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartSweep sweep = new BartSweep(BartDimsEnum._10_TIME, BartDimsEnum._11_TIME2).parallelism(4);
+BartNDArray images = sweep.run(p -> new Object[] { "pics", "-r", p[0], "-i", p[1], kspace, sensitivities },
+    List.of(0.001, 0.003, 0.01, 0.03, 0.1), List.of(20, 50));
+ * }</pre></blockquote>
+ */
+public class BartSweep {
+    private final BartDimsEnum[] dims;
+    private BartExecutor executor = BartExecutor.LOCAL;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private File directory = new File(System.getProperty("java.io.tmpdir"));
+
+    /**
+     * Creates a sweep whose outputs are stacked along the given BART dimensions, the first dimension belonging
+     * to the first parameter, and so on.
+     *
+     * @param dims distinct dimensions along which the outputs are stacked
+     */
+    public BartSweep(BartDimsEnum... dims) {
+        Set<BartDimsEnum> distinct = EnumSet.noneOf(BartDimsEnum.class);
+        for (BartDimsEnum dim : dims)
+            if (!distinct.add(dim))
+                throw new IllegalArgumentException(String.format(BartErrors.DUPLICATE_SWEEP_DIMENSION, dim));
+        this.dims = dims.clone();
+    }
+
+    /**
+     * Sets the executor that runs the invocations. The default is {@link BartExecutor#LOCAL}.
+     *
+     * @param executor the executor
+     * @return this sweep
+     */
+    public BartSweep executor(BartExecutor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the maximal number of invocations run at the same time. The default is the number of available processors.
+     *
+     * @param parallelism the maximal number of concurrent invocations
+     * @return this sweep
+     */
+    public BartSweep parallelism(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "parallelism", parallelism));
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the directory of the files of the shared arrays. The default is the temp directory of the JVM.
+     *
+     * @param directory the directory
+     * @return this sweep
+     */
+    public BartSweep directory(File directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    /**
+     * Runs the command for each combination of the parameter values, and returns the stacked outputs.
+     *
+     * @param commandLine builds the name of BART command and its arguments from the values of the parameters
+     * @param axes the values of each parameter
+     * @return NDArray that holds the outputs of all invocations
+     * @throws BartException when any invocation fails
+     */
+    public BartNDArray run(Function<Object[], Object[]> commandLine, List<?>... axes) throws BartException {
+        return run(new BartOptions(), commandLine, axes);
+    }
+
+    /**
+     * Runs the command for each combination of the parameter values with the given per-call options,
+     * and returns the stacked outputs.
+     *
+     * @param options timeout and resource limits of each invocation
+     * @param commandLine builds the name of BART command and its arguments from the values of the parameters
+     * @param axes the values of each parameter
+     * @return NDArray that holds the outputs of all invocations
+     * @throws BartException when any invocation fails
+     */
+    public BartNDArray run(BartOptions options, Function<Object[], Object[]> commandLine, List<?>... axes)
+            throws BartException {
+        if (axes.length != dims.length)
+            throw new IllegalArgumentException(String.format(BartErrors.SWEEP_AXES_MISMATCH, dims.length, axes.length));
+        int[] sizes = new int[axes.length];
+        for (int i = 0; i < axes.length; i++) {
+            if (axes[i].isEmpty())
+                throw new IllegalArgumentException(String.format(BartErrors.EMPTY_SWEEP_AXIS, dims[i]));
+            sizes[i] = axes[i].size();
+        }
+        List<Object[]> commandLines = new ArrayList<>();
+        for (Object[] point : grid(axes))
+            commandLines.add(commandLine.apply(point));
+
+        Map<NDArray<?>, SharedFile> shared = executor == BartExecutor.LOCAL
+            ? share(commandLines)
+            : Collections.emptyMap();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, commandLines.size()), runnable -> {
+            Thread thread = new Thread(runnable, "bart-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<BartNDArray>> futures = new ArrayList<>(commandLines.size());
+            for (Object[] args : commandLines)
+                futures.add(pool.submit(() -> invoke(options, args, shared)));
+            return stack(BartDistributedExecutor.await(futures, commandLines.get(0)[0]), sizes, 0, 0);
+        } finally {
+            pool.shutdownNow();
+            for (SharedFile file : shared.values())
+                file.delete();
+        }
+    }
+
+    /**
+     * Saves the arrays that occur in more than one command line.
+     */
+    private Map<NDArray<?>, SharedFile> share(List<Object[]> commandLines) throws BartException {
+        Map<NDArray<?>, SharedFile> shared = new IdentityHashMap<>();
+        Map<NDArray<?>, Integer> counts = new IdentityHashMap<>();
+        for (Object[] args : commandLines)
+            for (NDArray<?> array : arraysOf(args))
+                counts.merge(array, 1, Integer::sum);
+        try {
+            for (Map.Entry<NDArray<?>, Integer> entry : counts.entrySet())
+                if (entry.getValue() > 1) {
+                    File file = Files.createTempFile(directory.toPath().toAbsolutePath(), "bart_sweep_", ".ra").toFile();
+                    shared.put(entry.getKey(), new SharedFile(file, entry.getValue()));
+                    BartNDArray.save(entry.getKey(), file);
+                    file.setReadOnly();
+                }
+        } catch (IOException e) {
+            for (SharedFile file : shared.values())
+                file.delete();
+            throw new BartException(e.getMessage());
+        }
+        return shared;
+    }
+
+    private BartNDArray invoke(BartOptions options, Object[] args, Map<NDArray<?>, SharedFile> shared) throws BartException {
+        Object[] actual = args.clone();
+        for (int i = 0; i < actual.length; i++)
+            if (actual[i] instanceof NDArray && shared.containsKey(actual[i]))
+                actual[i] = shared.get(actual[i]).file;
+        try {
+            return executor.run(options, actual);
+        } finally {
+            for (NDArray<?> array : arraysOf(args))
+                if (shared.containsKey(array))
+                    shared.get(array).unreference();
+        }
+    }
+
+    /**
+     * Joins the outputs along the dimensions from the given one onwards; the outputs are in the order of the grid.
+     */
+    private BartNDArray stack(List<BartNDArray> outputs, int[] sizes, int axis, int offset) {
+        if (axis == dims.length)
+            return outputs.get(offset);
+        int stride = 1;
+        for (int i = axis + 1; i < sizes.length; i++)
+            stride *= sizes[i];
+        List<BartNDArray> parts = new ArrayList<>(sizes[axis]);
+        for (int i = 0; i < sizes[axis]; i++)
+            parts.add(stack(outputs, sizes, axis + 1, offset + i * stride));
+        BartNDArray stacked = BartSplitter.join(dims[axis], parts);
+        if (parts.size() > 1)
+            parts.forEach(BartNDArray::release);
+        return stacked;
+    }
+
+    /**
+     * Lists the combinations of the parameter values, the last parameter changing fastest.
+     */
+    static List<Object[]> grid(List<?>... axes) {
+        List<Object[]> points = new ArrayList<>();
+        points.add(new Object[0]);
+        for (List<?> axis : axes) {
+            List<Object[]> extended = new ArrayList<>(points.size() * axis.size());
+            for (Object[] point : points)
+                for (Object value : axis) {
+                    Object[] next = Arrays.copyOf(point, point.length + 1);
+                    next[point.length] = value;
+                    extended.add(next);
+                }
+            points = extended;
+        }
+        return points;
+    }
+
+    private static Set<NDArray<?>> arraysOf(Object[] args) {
+        Set<NDArray<?>> arrays = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Object arg : args)
+            if (arg instanceof NDArray)
+                arrays.add((NDArray<?>) arg);
+        return arrays;
+    }
+
+    /**
+     * File of an array shared by several invocations, deleted when the last of them is finished.
+     */
+    private static final class SharedFile {
+        final File file;
+        final AtomicInteger references;
+
+        SharedFile(File file, int references) {
+            this.file = file;
+            this.references = new AtomicInteger(references);
+        }
+
+        void unreference() {
+            if (references.decrementAndGet() == 0)
+                delete();
+        }
+
+        void delete() {
+            file.setWritable(true);
+            file.delete();
+        }
+    }
+
+}
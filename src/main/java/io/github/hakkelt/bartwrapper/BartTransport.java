@@ -0,0 +1,142 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+
+/**
+ * Opens connections to a BART worker (see {@link BartWorkerServer}) for {@link BartRemoteExecutor}.
+ * Each invocation opens a new connection, writes the request and reads the response.
+ */
+@FunctionalInterface
+public interface BartTransport {
+
+    /**
+     * Connection to a BART worker.
+     */
+    public interface Connection extends Closeable {
+        public InputStream getInputStream() throws IOException;
+        public OutputStream getOutputStream() throws IOException;
+
+        /**
+         * Limits how long a read from the connection may block. Reads that time out throw a
+         * {@link SocketTimeoutException}. Connections that never block ignore the limit.
+         *
+         * @param timeout the limit, or null for no limit
+         * @throws IOException when the limit cannot be set
+         */
+        public default void setReadTimeout(Duration timeout) throws IOException {
+            // no blocking reads
+        }
+    }
+
+    /**
+     * Opens a connection to the worker.
+     *
+     * @return the connection
+     * @throws IOException when the worker cannot be reached
+     */
+    public Connection connect() throws IOException;
+
+    /**
+     * Connects to a worker listening on a TCP socket.
+     *
+     * @param host host name of the worker
+     * @param port port of the worker
+     * @return transport that connects to the worker
+     */
+    public static BartTransport socket(String host, int port) {
+        final int CONNECT_TIMEOUT_MILLIS = 10000;
+        return new BartTransport() {
+            @Override
+            public Connection connect() throws IOException {
+                Socket socket = new Socket();
+                try {
+                    socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                } catch (IOException e) {
+                    socket.close();
+                    throw e;
+                }
+                return new Connection() {
+                    @Override
+                    public InputStream getInputStream() throws IOException {
+                        return socket.getInputStream();
+                    }
+
+                    @Override
+                    public OutputStream getOutputStream() throws IOException {
+                        return socket.getOutputStream();
+                    }
+
+                    @Override
+                    public void setReadTimeout(Duration timeout) throws IOException {
+                        socket.setSoTimeout(timeout == null ? 0 : (int) Math.min(Integer.MAX_VALUE, Math.max(1, timeout.toMillis())));
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        socket.close();
+                    }
+                };
+            }
+
+            @Override
+            public String toString() {
+                return host + ":" + port;
+            }
+        };
+    }
+
+    /**
+     * Passes requests to a worker in the same JVM, without any networking.
+     * Requests and responses are still encoded in the wire format, so this transport
+     * can stand in for a remote worker in tests.
+     *
+     * @param server the worker that handles the requests
+     * @return transport that passes requests to the worker
+     */
+    public static BartTransport inProcess(BartWorkerServer server) {
+        return new BartTransport() {
+            @Override
+            public Connection connect() {
+                ByteArrayOutputStream request = new ByteArrayOutputStream();
+                return new Connection() {
+                    private InputStream response;
+
+                    @Override
+                    public InputStream getInputStream() throws IOException {
+                        if (response == null) {
+                            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                            server.handle(new ByteArrayInputStream(request.toByteArray()), buffer);
+                            response = new ByteArrayInputStream(buffer.toByteArray());
+                        }
+                        return response;
+                    }
+
+                    @Override
+                    public OutputStream getOutputStream() {
+                        return request;
+                    }
+
+                    @Override
+                    public void close() {
+                        // nothing to release
+                    }
+                };
+            }
+
+            @Override
+            public String toString() {
+                return "in-process worker";
+            }
+        };
+    }
+
+}
@@ -0,0 +1,11 @@
+package io.github.hakkelt.bartwrapper;
+
+/**
+ * Exception that signals that a remote BART worker could not be reached or the connection to it failed,
+ * as opposed to the BART command itself failing. Such invocations can be retried on another worker.
+ */
+public class BartTransportException extends BartException {
+    public BartTransportException(String errorMessage) {
+        super(errorMessage);
+    }
+}
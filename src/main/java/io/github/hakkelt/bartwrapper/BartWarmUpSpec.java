@@ -0,0 +1,91 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * List of typical BART commands and input shapes to be run once by {@link Bart#warmUp(BartWarmUpSpec)}
+ * (or by {@link BartDistributedExecutor#warmUp(BartWarmUpSpec)} on each worker) before serving requests.
+ * Inputs are given by their shapes (see {@link #input(int...)}) and filled with ones.
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartWarmUpSpec spec = new BartWarmUpSpec()
+    .add("fft", "-u", 7, BartWarmUpSpec.input(256, 256, 1, 8))
+    .add("pics", "-l1", "-r0.01", BartWarmUpSpec.input(256, 256, 1, 8), BartWarmUpSpec.input(256, 256, 1, 8));
+Bart.warmUp(spec);
+ * }</pre></blockquote>
+ */
+public class BartWarmUpSpec {
+    private final List<Object[]> commands = new ArrayList<>();
+    private int repetitions = 1;
+
+    /**
+     * Returns a placeholder for an input array of the given shape.
+     *
+     * @param shape the shape of the input array
+     * @return placeholder to be passed to {@link #add(Object...)}
+     */
+    public static Object input(int... shape) {
+        return new Input(shape.clone());
+    }
+
+    /**
+     * Adds a command that saves its output to a file, like the ones run by {@link Bart#run(Object...)}.
+     *
+     * @param args name of BART command and its arguments, with placeholders for the input arrays
+     * @return this spec
+     */
+    public BartWarmUpSpec add(Object... args) {
+        commands.add(args.clone());
+        return this;
+    }
+
+    /**
+     * Sets how many times each command is run. The default is 1.
+     *
+     * @param repetitions the number of times each command is run
+     * @return this spec
+     */
+    public BartWarmUpSpec repetitions(int repetitions) {
+        if (repetitions <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "number of repetitions", repetitions));
+        this.repetitions = repetitions;
+        return this;
+    }
+
+    public List<Object[]> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    public int getRepetitions() {
+        return repetitions;
+    }
+
+    void runOn(BartExecutor executor) throws BartException {
+        for (Object[] command : commands) {
+            Object[] args = Arrays.stream(command)
+                .map(arg -> arg instanceof Input ? new BartComplexFloatNDArray(((Input) arg).shape).fill(1) : arg)
+                .toArray();
+            for (int i = 0; i < repetitions; i++)
+                executor.run(args).release();
+        }
+    }
+
+    private static final class Input {
+        final int[] shape;
+
+        Input(int[] shape) {
+            this.shape = shape;
+        }
+
+        @Override
+        public String toString() {
+            return "input" + Arrays.toString(shape);
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import io.github.hakkelt.ndarrays.NDArray;
+
+/**
+ * Encoding of the requests and responses exchanged with BART workers. Arrays are sent in the
+ * rawarray format (see {@link BartNDArray#save(NDArray, OutputStream)}), everything else as
+ * big-endian primitives and length-prefixed UTF-8 strings.
+ *
+ * <p>Request: magic, version, kind, number of output arrays, timeout (ms), memory limit (bytes),
+ * CPU time limit (ms), whether the output lines are requested, number of environment variables and
+ * their names and values, number of arguments, and the arguments, each prefixed by its tag.
+ * Response: the output lines of the command if they were requested, each prefixed by its own status,
+ * then the final status, followed by the number of output arrays and the arrays, the output string
+ * or the error message.</p>
+ */
+final class BartWireProtocol {
+    static final int MAGIC = 0x42415254; // "BART"
+    static final int VERSION = 3;
+    static final byte RUN = 1;
+    static final byte READ = 2;
+    private static final byte ARG_STRING = 0;
+    private static final byte ARG_ARRAY = 1;
+    private static final byte RESPONSE_ARRAYS = 0;
+    private static final byte RESPONSE_STRING = 1;
+    private static final byte RESPONSE_ERROR = 2;
+    private static final byte RESPONSE_OUTPUT_LINE = 3;
+
+    private BartWireProtocol() {}
+
+    static final class Request {
+        final byte kind;
+        final int outputs;
+        final BartOptions options;
+        final boolean forwardOutput;
+        final Object[] args;
+
+        Request(byte kind, int outputs, BartOptions options, boolean forwardOutput, Object[] args) {
+            this.kind = kind;
+            this.outputs = outputs;
+            this.options = options;
+            this.forwardOutput = forwardOutput;
+            this.args = args;
+        }
+    }
+
+    static void writeRequest(OutputStream stream, byte kind, int outputs, BartOptions options, Object... args) throws IOException {
+        for (Object arg : args)
+            if (arg instanceof File)
+                throw new IllegalArgumentException(String.format(BartErrors.REMOTE_FILE_ARGUMENT, arg));
+            else if (!(arg instanceof String || arg instanceof Number || arg instanceof NDArray || arg instanceof BartStoredArray))
+                throw new IllegalArgumentException(
+                    String.format(BartErrors.INPUT_UNSUPPORTED_TYPE, arg, arg == null ? null : arg.getClass()));
+        DataOutputStream output = new DataOutputStream(stream);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeByte(kind);
+        output.writeInt(outputs);
+        output.writeLong(toMillis(options.getTimeout()));
+        output.writeLong(options.getMaxMemory());
+        output.writeLong(toMillis(options.getMaxCpuTime()));
+        output.writeBoolean(options.getOutputConsumer() != null);
+        output.writeInt(options.getEnvironment().size());
+        for (Map.Entry<String, String> variable : options.getEnvironment().entrySet()) {
+            writeString(output, variable.getKey());
+            writeString(output, variable.getValue());
+        }
+        output.writeInt(args.length);
+        for (Object arg : args) {
+            if (arg instanceof NDArray) {
+                output.writeByte(ARG_ARRAY);
+                output.flush();
+                BartNDArray.save((NDArray<?>) arg, stream);
+            } else if (arg instanceof BartStoredArray) {
+                // the worker has no access to the store
+                BartNDArray array = ((BartStoredArray) arg).load();
+                output.writeByte(ARG_ARRAY);
+                output.flush();
+                BartNDArray.save(array, stream);
+                array.release();
+            } else {
+                output.writeByte(ARG_STRING);
+                writeString(output, arg.toString());
+            }
+        }
+        output.flush();
+    }
+
+    static Request readRequest(InputStream stream) throws IOException {
+        DataInputStream input = new DataInputStream(stream);
+        if (input.readInt() != MAGIC || input.readInt() != VERSION)
+            throw new IOException(BartErrors.INVALID_WORKER_REQUEST);
+        byte kind = input.readByte();
+        int outputs = input.readInt();
+        BartOptions options = new BartOptions()
+            .timeout(fromMillis(input.readLong()))
+            .maxMemory(input.readLong())
+            .maxCpuTime(fromMillis(input.readLong()))
+            .outputConsumer(line -> { /* not requested by the client */ });
+        boolean forwardOutput = input.readBoolean();
+        int variables = input.readInt();
+        if (variables < 0)
+            throw new IOException(BartErrors.INVALID_WORKER_REQUEST);
+        for (int i = 0; i < variables; i++)
+            options.environment(readString(input), readString(input));
+        Object[] args = new Object[input.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            byte tag = input.readByte();
+            if (tag == ARG_ARRAY)
+                args[i] = BartNDArray.load(stream);
+            else if (tag == ARG_STRING)
+                args[i] = readString(input);
+            else
+                throw new IOException(BartErrors.INVALID_WORKER_REQUEST);
+        }
+        return new Request(kind, outputs, options, forwardOutput, args);
+    }
+
+    static void writeResult(OutputStream stream, Object result) throws IOException {
+        DataOutputStream output = new DataOutputStream(stream);
+        if (result instanceof NDArray[]) {
+            NDArray<?>[] arrays = (NDArray<?>[]) result;
+            output.writeByte(RESPONSE_ARRAYS);
+            output.writeInt(arrays.length);
+            output.flush();
+            for (NDArray<?> array : arrays)
+                BartNDArray.save(array, stream);
+        } else {
+            output.writeByte(RESPONSE_STRING);
+            writeString(output, String.valueOf(result));
+        }
+        output.flush();
+    }
+
+    /**
+     * Writes a line of the output of the command, preceding the final response.
+     */
+    static void writeOutputLine(OutputStream stream, String line) throws IOException {
+        DataOutputStream output = new DataOutputStream(stream);
+        output.writeByte(RESPONSE_OUTPUT_LINE);
+        writeString(output, line);
+        output.flush();
+    }
+
+    static void writeError(OutputStream stream, String message) throws IOException {
+        DataOutputStream output = new DataOutputStream(stream);
+        output.writeByte(RESPONSE_ERROR);
+        writeString(output, String.valueOf(message));
+        output.flush();
+    }
+
+    /**
+     * Reads a response, passing the output lines of the command to the consumer.
+     *
+     * @param outputConsumer receives the output lines, or null if they were not requested
+     * @return the output arrays or the output string
+     * @throws BartException if the worker reported that the command failed
+     */
+    static Object readResponse(InputStream stream, Consumer<String> outputConsumer) throws IOException, BartException {
+        DataInputStream input = new DataInputStream(stream);
+        byte status = input.readByte();
+        while (status == RESPONSE_OUTPUT_LINE && outputConsumer != null) {
+            outputConsumer.accept(readString(input));
+            status = input.readByte();
+        }
+        if (status == RESPONSE_ARRAYS) {
+            int count = input.readInt();
+            if (count < 0)
+                throw new IOException(BartErrors.INVALID_WORKER_RESPONSE);
+            BartNDArray[] results = new BartNDArray[count];
+            for (int i = 0; i < count; i++) {
+                results[i] = BartNDArray.load(stream);
+                results[i].setBartDims(Stream.of(BartDimsEnum.values()).limit(results[i].ndim()).toArray(BartDimsEnum[]::new));
+            }
+            return results;
+        }
+        if (status == RESPONSE_STRING)
+            return readString(input);
+        if (status == RESPONSE_ERROR)
+            throw new BartException(readString(input));
+        throw new IOException(BartErrors.INVALID_WORKER_RESPONSE);
+    }
+
+    private static void writeString(DataOutputStream output, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0)
+            throw new IOException(BartErrors.INVALID_WORKER_RESPONSE);
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long toMillis(Duration duration) {
+        return duration == null ? 0 : Math.max(1, duration.toMillis());
+    }
+
+    private static Duration fromMillis(long millis) {
+        return millis > 0 ? Duration.ofMillis(millis) : null;
+    }
+
+}
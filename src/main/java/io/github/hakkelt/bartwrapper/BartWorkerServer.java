@@ -0,0 +1,214 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Worker that runs BART commands on behalf of {@link BartRemoteExecutor}s. It can listen on a TCP socket
+ * ({@link #start(int)}), or handle requests passed to it directly ({@link BartTransport#inProcess(BartWorkerServer)}).
+ * Each connection carries a single request. At most {@code maxConcurrency} commands are run at the same time;
+ * further requests wait for their turn.
+ *
+ * <p>The worker has no authentication: any peer that can connect to it can run BART commands with arbitrary
+ * arguments, and thus read and write files wherever the user of the worker can. By default it listens only on
+ * the loopback interface; bind it to other interfaces only on trusted networks.</p>
+ *
+ * <p>The worker can be started from the command line; the arguments are the port to listen on and optionally the
+ * address to bind to:</p>
+ *
+ * <blockquote><pre>{@code
+java -cp bartwrapper.jar:ndarrays.jar:commons-math3.jar:commons-lang3.jar io.github.hakkelt.bartwrapper.BartWorkerServer 9123 10.0.0.5
+ * }</pre></blockquote>
+ */
+public class BartWorkerServer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(BartWorkerServer.class.getName());
+
+    private final BartExecutor executor;
+    private final Semaphore permits;
+    private final ExecutorService handlers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "bart-worker-handler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+
+    /**
+     * Creates a worker that runs one command at a time by the local BART executable.
+     */
+    public BartWorkerServer() {
+        this(BartExecutor.LOCAL, 1);
+    }
+
+    /**
+     * Creates a worker.
+     *
+     * @param executor runs the commands, usually {@link BartExecutor#LOCAL}
+     * @param maxConcurrency the maximum number of commands run at the same time
+     */
+    public BartWorkerServer(BartExecutor executor, int maxConcurrency) {
+        if (maxConcurrency <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "number of concurrent jobs", maxConcurrency));
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    /**
+     * Starts listening on the given port of the loopback interface.
+     *
+     * @param port the port to listen on, or 0 to use any free port (see {@link #getPort()})
+     * @return this worker
+     * @throws IOException when the port cannot be bound
+     */
+    public BartWorkerServer start(int port) throws IOException {
+        return start(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Starts listening on the given port of the given address. As the worker has no authentication,
+     * it should be reachable only from trusted networks.
+     *
+     * @param bindAddress the address to listen on, or null to listen on all interfaces
+     * @param port the port to listen on, or 0 to use any free port (see {@link #getPort()})
+     * @return this worker
+     * @throws IOException when the port cannot be bound
+     */
+    public synchronized BartWorkerServer start(InetAddress bindAddress, int port) throws IOException {
+        if (serverSocket != null)
+            throw new IllegalStateException(BartErrors.WORKER_ALREADY_STARTED);
+        serverSocket = new ServerSocket(port, 0, bindAddress);
+        ServerSocket listening = serverSocket;
+        acceptor = new Thread(() -> accept(listening), "bart-worker-acceptor");
+        acceptor.start();
+        return this;
+    }
+
+    /**
+     * Returns the port the worker listens on.
+     *
+     * @return the port, or -1 if the worker is not started
+     */
+    public synchronized int getPort() {
+        return serverSocket == null ? -1 : serverSocket.getLocalPort();
+    }
+
+    /**
+     * Waits until the worker is closed.
+     *
+     * @throws InterruptedException when the calling thread is interrupted while waiting
+     */
+    public void join() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            thread = acceptor;
+        }
+        if (thread != null)
+            thread.join();
+    }
+
+    /**
+     * Reads a request from the input stream, runs the command and writes the response to the output stream.
+     * Failures of the command and invalid requests are reported to the client in the response.
+     *
+     * @param input stream to read the request from
+     * @param output stream to write the response to
+     * @throws IOException when reading the request or writing the response fails
+     */
+    public void handle(InputStream input, OutputStream output) throws IOException {
+        BartWireProtocol.Request request;
+        try {
+            request = BartWireProtocol.readRequest(input);
+        } catch (IllegalArgumentException e) {
+            BartWireProtocol.writeError(output, e.getMessage());
+            return;
+        } catch (IOException e) {
+            // bad header or tag, or truncated request
+            BartWireProtocol.writeError(output, BartErrors.INVALID_WORKER_REQUEST);
+            return;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        if (request.forwardOutput)
+            request.options.outputConsumer(line -> {
+                try {
+                    BartWireProtocol.writeOutputLine(output, line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        try {
+            Object result = request.kind == BartWireProtocol.RUN
+                ? executor.runMulti(request.options, request.outputs, request.args)
+                : executor.read(request.options, request.args);
+            BartWireProtocol.writeResult(output, result);
+        } catch (BartException | RuntimeException e) {
+            BartWireProtocol.writeError(output, e.getMessage());
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Stops listening. Requests being handled are finished.
+     */
+    @Override
+    public synchronized void close() {
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                LOGGER.warning("Could not close the socket of the BART worker.");
+            }
+        }
+        handlers.shutdown();
+    }
+
+    private void accept(ServerSocket listening) {
+        while (!listening.isClosed()) {
+            try {
+                Socket socket = listening.accept();
+                handlers.execute(() -> serve(socket));
+            } catch (SocketException e) {
+                return; // closed
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not accept connection.", e);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket connection = socket) {
+            OutputStream output = new BufferedOutputStream(connection.getOutputStream());
+            handle(new BufferedInputStream(connection.getInputStream()), output);
+            output.flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not handle request.", e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        InetAddress bindAddress = args.length > 1 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+        try (BartWorkerServer server = new BartWorkerServer().start(bindAddress, Integer.parseInt(args[0]))) {
+            LOGGER.info(() -> "BART worker listens on " + bindAddress.getHostAddress() + ":" + server.getPort());
+            server.join();
+        }
+    }
+
+}
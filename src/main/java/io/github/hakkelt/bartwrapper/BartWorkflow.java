@@ -0,0 +1,541 @@
+package io.github.hakkelt.bartwrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Dependency graph of BART commands and Java functions, e.g. a reconstruction recipe where {@code ecalib} and
+ * {@code traj} are independent, {@code pics} depends on both, and {@code rss} and {@code cabs} use the output of
+ * {@code pics}.
+ *
+ * <p>Nodes refer to the outputs of other nodes by {@link #ref(String)}. When the workflow is run, each node is
+ * started as soon as all nodes it depends on are finished, so independent nodes run concurrently. The outputs
+ * of nodes are kept in memory and are passed to the executor like any other array argument; the output of an
+ * intermediate node is released (see {@link BartNDArray#release()}) as soon as the last node that uses it is
+ * finished, so its buffer can be reused by later nodes, unless the output of a Java function that is still kept
+ * may share its data (e.g. a reshaped or sliced view of it). If a node fails, the nodes still running are
+ * interrupted, and the outputs are released after they are finished.</p>
+ *
+ * <p>The running time of each node is measured, and the critical path (the chain of dependent nodes that took
+ * the longest in total) is reported, as it is a lower bound of the running time of the workflow however many
+ * nodes run in parallel.</p>
+ *
+ * <ul><li><b>Example:</b></li></ul>
+ *
+ * <blockquote><pre>{@code
+BartWorkflow workflow = new BartWorkflow()
+    .command("calib", "resize", "-c", 1, 24, 2, 24, kspace)
+    .commandMulti("ecalib", 2, "ecalib", BartWorkflow.ref("calib"))
+    .command("traj", "traj", "-x", 128, "-y", 64)
+    .command("pics", "pics", "-l1", "-r0.01", "-t", BartWorkflow.ref("traj"), kspace, BartWorkflow.ref("ecalib", 0))
+    .command("rss", "rss", 8, BartWorkflow.ref("pics"))
+    .command("cabs", "cabs", BartWorkflow.ref("pics"))
+    .function("normalized", inputs -> normalize(inputs[0]), "cabs");
+BartWorkflow.Result result = workflow.run("rss", "normalized");
+BartNDArray image = result.get("normalized");
+System.out.println(result.getCriticalPath() + ": " + result.getCriticalPathDuration() / 1e6 + " ms");
+ * }</pre></blockquote>
+ */
+public class BartWorkflow {
+
+    /**
+     * A processing step of the workflow implemented in Java.
+     */
+    @FunctionalInterface
+    public interface Step {
+        /**
+         * Computes the output of the node.
+         *
+         * @param inputs the outputs of the nodes the step depends on, in the order they were given
+         * @return the output of the node
+         * @throws BartException when running BART fails
+         */
+        BartNDArray apply(BartNDArray... inputs) throws BartException;
+    }
+
+    /**
+     * Placeholder of an output of a node in the arguments of another node.
+     */
+    public static final class Ref {
+        private final String node;
+        private final int index;
+
+        private Ref(String node, int index) {
+            this.node = node;
+            this.index = index;
+        }
+
+        public String getNode() {
+            return node;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return index == 0 ? node : node + "[" + index + "]";
+        }
+    }
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private BartExecutor executor = BartExecutor.LOCAL;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Refers to the (first) output of a node.
+     *
+     * @param node name of the node
+     * @return placeholder to be used in the arguments of another node
+     */
+    public static Ref ref(String node) {
+        return ref(node, 0);
+    }
+
+    /**
+     * Refers to an output of a node with multiple outputs.
+     *
+     * @param node name of the node
+     * @param index index of the output
+     * @return placeholder to be used in the arguments of another node
+     */
+    public static Ref ref(String node, int index) {
+        if (index < 0)
+            throw new IllegalArgumentException(String.format(BartErrors.INVALID_WORKFLOW_OUTPUT, index, node));
+        return new Ref(node, index);
+    }
+
+    /**
+     * Sets the executor that runs the BART commands. The default is {@link BartExecutor#LOCAL}.
+     *
+     * @param executor the executor
+     * @return this workflow
+     */
+    public BartWorkflow executor(BartExecutor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the maximal number of nodes run at the same time. The default is the number of available processors.
+     *
+     * @param parallelism the maximal number of concurrent nodes
+     * @return this workflow
+     */
+    public BartWorkflow parallelism(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "parallelism", parallelism));
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Adds a node that runs a BART command with a single output.
+     *
+     * @param name name of the node
+     * @param args name of BART command and its arguments, where {@link #ref(String)} stands for the output of another node
+     * @return this workflow
+     */
+    public BartWorkflow command(String name, Object... args) {
+        return commandMulti(name, 1, args);
+    }
+
+    /**
+     * Adds a node that runs a BART command with multiple outputs (see {@link Bart#runMulti(int, Object...)}).
+     *
+     * @param name name of the node
+     * @param outputs number of outputs of the command
+     * @param args name of BART command and its arguments, where {@link #ref(String)} stands for the output of another node
+     * @return this workflow
+     */
+    public BartWorkflow commandMulti(String name, int outputs, Object... args) {
+        if (outputs <= 0)
+            throw new IllegalArgumentException(String.format(BartErrors.NON_POSITIVE_LIMIT, "number of outputs", outputs));
+        List<Ref> refs = new ArrayList<>();
+        for (Object arg : args)
+            if (arg instanceof Ref)
+                refs.add((Ref) arg);
+        Object[] template = args.clone();
+        return add(new Node(name, outputs, refs, false, inputs -> {
+            Object[] actual = template.clone();
+            for (int i = 0, j = 0; i < actual.length; i++)
+                if (actual[i] instanceof Ref)
+                    actual[i] = inputs[j++];
+            return executor.runMulti(outputs, actual);
+        }));
+    }
+
+    /**
+     * Adds a node that computes its output by a Java function from the outputs of other nodes.
+     *
+     * @param name name of the node
+     * @param step the function
+     * @param inputs names of the nodes whose (first) outputs are passed to the function
+     * @return this workflow
+     */
+    public BartWorkflow function(String name, Step step, String... inputs) {
+        List<Ref> refs = new ArrayList<>();
+        for (String input : inputs)
+            refs.add(ref(input));
+        return add(new Node(name, 1, refs, true, values -> new BartNDArray[] { step.apply(values) }));
+    }
+
+    /**
+     * Returns the names of the nodes in the order they were added.
+     *
+     * @return names of the nodes
+     */
+    public Set<String> getNodes() {
+        return Collections.unmodifiableSet(nodes.keySet());
+    }
+
+    /**
+     * Runs the nodes needed to compute the given nodes. The outputs of all other nodes are released as soon as
+     * they are not needed any more.
+     *
+     * @param outputs names of the nodes whose outputs are returned; if none is given, the outputs of the nodes
+     *                that no other node depends on are returned
+     * @return the outputs and the timing of the nodes
+     * @throws BartException when running any node fails
+     */
+    public Result run(String... outputs) throws BartException {
+        Set<String> targets = new LinkedHashSet<>(Arrays.asList(outputs));
+        if (targets.isEmpty()) {
+            sort(nodes.keySet()); // a cycle may leave no node that others don't depend on
+            targets.addAll(nodes.keySet());
+            for (Node node : nodes.values())
+                for (Ref ref : node.inputs)
+                    targets.remove(ref.node);
+        }
+        List<Node> order = sort(targets);
+        Map<Node, Integer> pending = new HashMap<>();
+        Map<Node, Integer> consumers = new HashMap<>();
+        Map<Node, List<Node>> dependents = new HashMap<>();
+        for (Node node : order) {
+            Set<Node> dependencies = node.dependencies();
+            pending.put(node, dependencies.size());
+            for (Node dependency : dependencies) {
+                consumers.merge(dependency, 1, Integer::sum);
+                dependents.computeIfAbsent(dependency, k -> new ArrayList<>()).add(node);
+            }
+        }
+
+        Result result = new Result(order);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, order.size())), runnable -> {
+            Thread thread = new Thread(runnable, "bart-workflow");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Node> completion = new ExecutorCompletionService<>(pool);
+        long start = System.nanoTime();
+        int running = 0;
+        try {
+            for (Node node : order)
+                if (pending.get(node) == 0) {
+                    submit(completion, node, result);
+                    running++;
+                }
+            for (int finished = 0; finished < order.size(); finished++) {
+                Future<Node> future = completion.take();
+                running--;
+                Node node = future.get();
+                for (Node dependent : dependents.getOrDefault(node, Collections.emptyList()))
+                    if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                        submit(completion, dependent, result);
+                        running++;
+                    }
+                for (Node dependency : node.dependencies())
+                    if (consumers.merge(dependency, -1, Integer::sum) == 0 && !targets.contains(dependency.name))
+                        result.release(dependency);
+            }
+            result.totalNanos = System.nanoTime() - start;
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(pool, completion, running, result);
+            throw new BartException(String.format(BartErrors.BART_INTERRUPTED, "workflow"));
+        } catch (ExecutionException e) {
+            abort(pool, completion, running, result);
+            if (e.getCause() instanceof BartException)
+                throw (BartException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new BartException(e.getCause().getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private BartWorkflow add(Node node) {
+        if (nodes.containsKey(node.name))
+            throw new IllegalArgumentException(String.format(BartErrors.DUPLICATE_WORKFLOW_NODE, node.name));
+        nodes.put(node.name, node);
+        return this;
+    }
+
+    /**
+     * Interrupts the running nodes, and releases all outputs after they are finished, as they may still read
+     * the outputs of earlier nodes.
+     */
+    private static void abort(ExecutorService pool, CompletionService<Node> completion, int running, Result result) {
+        // nodes that were not started yet are removed from the queue
+        int remaining = running - pool.shutdownNow().size();
+        boolean interrupted = false;
+        while (remaining > 0) {
+            try {
+                completion.take();
+                remaining--;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        result.releaseAll();
+    }
+
+    private void submit(CompletionService<Node> completion, Node node, Result result) {
+        BartNDArray[] inputs = new BartNDArray[node.inputs.size()];
+        synchronized (result) {
+            for (int i = 0; i < inputs.length; i++) {
+                Ref ref = node.inputs.get(i);
+                inputs[i] = result.outputs.get(nodes.get(ref.node))[ref.index];
+            }
+        }
+        completion.submit(() -> {
+            long nodeStart = System.nanoTime();
+            BartNDArray[] outputs = node.action.apply(inputs);
+            synchronized (result) {
+                result.durations.put(node.name, System.nanoTime() - nodeStart);
+                result.outputs.put(node, outputs);
+            }
+            return node;
+        });
+    }
+
+    /**
+     * Orders the nodes needed for the targets so that each node comes after the nodes it depends on.
+     */
+    private List<Node> sort(Set<String> targets) {
+        List<Node> order = new ArrayList<>();
+        Set<Node> visited = new HashSet<>();
+        Set<Node> visiting = new HashSet<>();
+        for (String target : targets)
+            visit(lookup(target, null), order, visited, visiting);
+        return order;
+    }
+
+    private void visit(Node node, List<Node> order, Set<Node> visited, Set<Node> visiting) {
+        if (visited.contains(node))
+            return;
+        if (!visiting.add(node))
+            throw new IllegalArgumentException(String.format(BartErrors.WORKFLOW_CYCLE, node.name));
+        for (Ref ref : node.inputs) {
+            Node dependency = lookup(ref.node, node);
+            if (ref.index >= dependency.outputCount)
+                throw new IllegalArgumentException(String.format(BartErrors.INVALID_WORKFLOW_OUTPUT, ref.index, ref.node));
+            visit(dependency, order, visited, visiting);
+        }
+        visiting.remove(node);
+        visited.add(node);
+        order.add(node);
+    }
+
+    private Node lookup(String name, Node consumer) {
+        Node node = nodes.get(name);
+        if (node == null)
+            throw new IllegalArgumentException(consumer == null
+                ? String.format(BartErrors.UNKNOWN_WORKFLOW_NODE, name)
+                : String.format(BartErrors.UNKNOWN_WORKFLOW_INPUT, name, consumer.name));
+        return node;
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        BartNDArray[] apply(BartNDArray[] inputs) throws BartException;
+    }
+
+    private final class Node {
+        final String name;
+        final int outputCount;
+        final List<Ref> inputs;
+        /** Whether the outputs may share data with the inputs */
+        final boolean aliasing;
+        final Action action;
+
+        Node(String name, int outputCount, List<Ref> inputs, boolean aliasing, Action action) {
+            this.name = name;
+            this.outputCount = outputCount;
+            this.inputs = inputs;
+            this.aliasing = aliasing;
+            this.action = action;
+        }
+
+        Set<Node> dependencies() {
+            Set<Node> dependencies = new LinkedHashSet<>();
+            for (Ref ref : inputs)
+                dependencies.add(nodes.get(ref.node));
+            return dependencies;
+        }
+    }
+
+    /**
+     * Outputs and timing of a run of the workflow.
+     */
+    public final class Result {
+        private final List<Node> order;
+        private final Map<Node, BartNDArray[]> outputs = new HashMap<>();
+        private final Map<String, Long> durations = new HashMap<>();
+        private long totalNanos;
+        private List<String> criticalPath;
+        private long criticalPathNanos;
+
+        private Result(List<Node> order) {
+            this.order = order;
+        }
+
+        /**
+         * Returns the (first) output of a node.
+         *
+         * @param node name of the node given to {@link BartWorkflow#run(String...)}
+         * @return the output of the node
+         */
+        public BartNDArray get(String node) {
+            return get(node, 0);
+        }
+
+        /**
+         * Returns an output of a node with multiple outputs.
+         *
+         * @param node name of the node given to {@link BartWorkflow#run(String...)}
+         * @param index index of the output
+         * @return the output of the node
+         */
+        public synchronized BartNDArray get(String node, int index) {
+            BartNDArray[] values = outputs.get(nodes.get(node));
+            if (values == null)
+                throw new IllegalArgumentException(String.format(BartErrors.UNKNOWN_WORKFLOW_NODE, node));
+            if (index < 0 || index >= values.length)
+                throw new IllegalArgumentException(String.format(BartErrors.INVALID_WORKFLOW_OUTPUT, index, node));
+            return values[index];
+        }
+
+        /**
+         * Returns the running time of a node.
+         *
+         * @param node name of the node
+         * @return the running time in nanoseconds
+         */
+        public synchronized long getDuration(String node) {
+            Long duration = durations.get(node);
+            if (duration == null)
+                throw new IllegalArgumentException(String.format(BartErrors.UNKNOWN_WORKFLOW_NODE, node));
+            return duration;
+        }
+
+        /**
+         * Returns the wall-clock time of the run.
+         *
+         * @return the running time of the workflow in nanoseconds
+         */
+        public long getTotalDuration() {
+            return totalNanos;
+        }
+
+        /**
+         * Returns the chain of dependent nodes with the largest total running time, from the first node to the last.
+         *
+         * @return names of the nodes on the critical path
+         */
+        public synchronized List<String> getCriticalPath() {
+            computeCriticalPath();
+            return criticalPath;
+        }
+
+        /**
+         * Returns the total running time of the nodes on the critical path.
+         *
+         * @return the length of the critical path in nanoseconds
+         */
+        public synchronized long getCriticalPathDuration() {
+            computeCriticalPath();
+            return criticalPathNanos;
+        }
+
+        private void computeCriticalPath() {
+            if (criticalPath != null)
+                return;
+            Map<Node, Long> finish = new HashMap<>();
+            Map<Node, Node> previous = new HashMap<>();
+            Node last = null;
+            for (Node node : order) {
+                long longest = 0;
+                for (Node dependency : node.dependencies())
+                    if (!previous.containsKey(node) || finish.get(dependency) > longest) {
+                        longest = finish.get(dependency);
+                        previous.put(node, dependency);
+                    }
+                finish.put(node, longest + durations.get(node.name));
+                if (last == null || finish.get(node) > finish.get(last))
+                    last = node;
+            }
+            List<String> path = new ArrayList<>();
+            for (Node node = last; node != null; node = previous.get(node))
+                path.add(0, node.name);
+            criticalPath = Collections.unmodifiableList(path);
+            criticalPathNanos = last == null ? 0 : finish.get(last);
+        }
+
+        private synchronized void release(Node node) {
+            BartNDArray[] values = outputs.remove(node);
+            for (BartNDArray value : values)
+                if (!isShared(value))
+                    value.release();
+        }
+
+        private synchronized void releaseAll() {
+            Set<BartNDArray> released = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (BartNDArray[] values : outputs.values())
+                for (BartNDArray value : values)
+                    if (released.add(value))
+                        value.release();
+            outputs.clear();
+        }
+
+        /**
+         * Tells whether the array is also an output of another node, or may share its data with the output of a
+         * function (e.g. a function that returns its input, or a sliced view of it). Outputs of functions that are
+         * not dense arrays may be views of any array; dense arrays created by reshaping hold their own reference
+         * to the shared storage, so releasing their origin is safe.
+         */
+        private boolean isShared(BartNDArray value) {
+            for (Map.Entry<Node, BartNDArray[]> entry : outputs.entrySet())
+                for (BartNDArray other : entry.getValue())
+                    if (other == value || entry.getKey().aliasing && !isDistinct(other, value))
+                        return true;
+            return false;
+        }
+
+        private boolean isDistinct(BartNDArray output, BartNDArray value) {
+            return output.getClass() == BartComplexFloatNDArray.class
+                && value.getClass() == BartComplexFloatNDArray.class;
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Fixtures and assertions shared by the tests.
+ */
+final class BartTestSupport {
+
+    private BartTestSupport() {}
+
+    /**
+     * Executor whose worker runs in the same JVM, passing the requests through the wire protocol.
+     */
+    static BartExecutor inProcessWorker() {
+        return new BartRemoteExecutor(BartTransport.inProcess(new BartWorkerServer()));
+    }
+
+    static void assertArrayClose(BartNDArray expected, BartNDArray actual) {
+        assertEquals(expected.length(), actual.length());
+        for (int i = 0; i < expected.length(); i++)
+            assertEquals(0, expected.get(i).subtract(actual.get(i)).abs(), 1e-5);
+    }
+
+    /**
+     * Executor that records the arguments of each invocation, and runs it by the local BART executable,
+     * or returns the output computed from the arguments by the given function instead.
+     */
+    static final class RecordingExecutor implements BartExecutor {
+        private final List<Object[]> calls = Collections.synchronizedList(new ArrayList<>());
+        private final Function<Object[], BartNDArray> output;
+
+        RecordingExecutor() {
+            this(null);
+        }
+
+        RecordingExecutor(Function<Object[], BartNDArray> output) {
+            this.output = output;
+        }
+
+        @Override
+        public BartNDArray run(BartOptions options, Object... args) throws BartException {
+            calls.add(args);
+            return output != null ? output.apply(args) : Bart.run(options, args);
+        }
+
+        @Override
+        public String read(BartOptions options, Object... args) throws BartException {
+            calls.add(args);
+            return output != null ? "" : Bart.read(options, args);
+        }
+
+        @Override
+        public BartNDArray[] runMulti(BartOptions options, int outputs, Object... args) throws BartException {
+            calls.add(args);
+            if (output == null)
+                return Bart.runMulti(options, outputs, args);
+            BartNDArray[] results = new BartNDArray[outputs];
+            for (int i = 0; i < outputs; i++)
+                results[i] = output.apply(args);
+            return results;
+        }
+
+        List<Object[]> getCalls() {
+            return calls;
+        }
+    }
+
+}
@@ -5,15 +5,26 @@ import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.IntStream;
 
 import org.apache.commons.math3.complex.Complex;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import io.github.hakkelt.ndarrays.NDArray;
 import io.github.hakkelt.ndarrays.basic.BasicFloatNDArray;
@@ -49,6 +60,122 @@ class TestBart {
             exception.getMessage());
     }
     
+    @Test
+    void testInvalidTimeout() {
+        System.setProperty(Bart.TIMEOUT_PROPERTY, "10 minutes");
+        try {
+            Exception exception = assertThrows(IllegalArgumentException.class, () -> Bart.read("bitmask", "-b", 7));
+            assertEquals(String.format(BartErrors.INVALID_TIMEOUT, "10 minutes"), exception.getMessage());
+        } finally {
+            System.clearProperty(Bart.TIMEOUT_PROPERTY);
+        }
+    }
+
+    @Test
+    void testReadWithinTimeout() throws BartException {
+        System.setProperty(Bart.TIMEOUT_PROPERTY, "PT1M");
+        try {
+            assertEquals("0 1 2", Bart.read("bitmask", "-b", 7));
+        } finally {
+            System.clearProperty(Bart.TIMEOUT_PROPERTY);
+        }
+    }
+    
+    @Test
+    void testTimeout() {
+        BartOptions options = new BartOptions().timeout(Duration.ofNanos(1));
+        Exception exception = assertThrows(BartException.class, () -> Bart.run(options, "phantom", "-x", 256));
+        assertEquals(String.format(BartErrors.BART_TIMEOUT, "phantom", Duration.ofNanos(1)), exception.getMessage());
+    }
+
+    @Test
+    void testInterrupt() {
+        Thread.currentThread().interrupt();
+        Exception exception = assertThrows(BartException.class, () -> Bart.run("phantom", "-x", 256));
+        assertEquals(String.format(BartErrors.BART_INTERRUPTED, "phantom"), exception.getMessage());
+        assertTrue(Thread.interrupted());
+    }
+
+    @Test
+    void testInvalidOptions() {
+        BartOptions options = new BartOptions();
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> options.timeout(Duration.ZERO));
+        assertEquals(String.format(BartErrors.NON_POSITIVE_LIMIT, "timeout", Duration.ZERO), exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> options.maxMemory(-1));
+        assertEquals(String.format(BartErrors.NON_POSITIVE_LIMIT, "memory limit", -1), exception.getMessage());
+    }
+
+    @Test
+    void testRunWithOptions() throws BartException {
+        StringBuilder str = new StringBuilder();
+        BartOptions options = new BartOptions()
+            .timeout(Duration.ofMinutes(1))
+            .outputConsumer(str::append);
+        BartNDArray result = Bart.run(options, "ones", 2, 3, 4);
+        assertArrayEquals(new int[]{ 3, 4 }, result.shape());
+        assertEquals("", str.toString());
+    }
+
+    @Test
+    void testEnvironment() throws BartException {
+        List<String> lines = new ArrayList<>();
+        BartNDArray kspace = Bart.run("phantom", "-k", "-s", 4, "-x", 16);
+        Bart.run(new BartOptions().environment("DEBUG_LEVEL", "3").outputConsumer(lines::add), "cc", "-M", kspace);
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("Energy:")));
+        lines.clear();
+        Bart.run(new BartOptions().outputConsumer(lines::add), "cc", "-M", kspace);
+        assertTrue(lines.stream().noneMatch(line -> line.startsWith("Energy:")));
+    }
+    
+    @Test
+    void testExePathProperty() throws IOException {
+        String previous = System.getProperty(Bart.EXE_PATH_PROPERTY);
+        File resolved = Bart.getExePath();
+        assertTrue(resolved.canExecute());
+        System.setProperty(Bart.EXE_PATH_PROPERTY, "custom" + File.separator + "bart");
+        try {
+            assertEquals(new File("custom" + File.separator + "bart"), Bart.getExePath());
+        } finally {
+            if (previous == null)
+                System.clearProperty(Bart.EXE_PATH_PROPERTY);
+            else
+                System.setProperty(Bart.EXE_PATH_PROPERTY, previous);
+        }
+        assertEquals(resolved, Bart.getExePath());
+    }
+    
+    @Test
+    void testExtractExe(@TempDir File directory) throws IOException {
+        byte[] content = "#!/bin/sh\necho bart\n".getBytes(StandardCharsets.UTF_8);
+        File extracted = Bart.extractExe(() -> new ByteArrayInputStream(content), directory);
+        assertTrue(extracted.canExecute());
+        assertArrayEquals(content, Files.readAllBytes(extracted.toPath()));
+        assertEquals(extracted, Bart.extractExe(() -> new ByteArrayInputStream(content), directory));
+
+        // a modified file of the same size is replaced
+        Files.write(extracted.toPath(), "#!/bin/sh\necho evil\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(extracted, Bart.extractExe(() -> new ByteArrayInputStream(content), directory));
+        assertArrayEquals(content, Files.readAllBytes(extracted.toPath()));
+
+        // a folder writable by others is not used
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Files.setPosixFilePermissions(extracted.getParentFile().toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+        File elsewhere = Bart.extractExe(() -> new ByteArrayInputStream(content), directory);
+        assertNotEquals(extracted.getParentFile(), elsewhere.getParentFile());
+        assertArrayEquals(content, Files.readAllBytes(elsewhere.toPath()));
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(elsewhere.getParentFile().toPath())));
+    }
+
+    @Test
+    void testSearchExeInClassPath(@TempDir File directory) throws IOException {
+        File exe = new File(directory, "bart.exe");
+        assertTrue(exe.createNewFile());
+        String jar = new File(directory, "library.jar").getPath();
+        assertEquals(exe, Bart.searchExeInClassPath(jar + File.pathSeparator + directory.getPath()));
+        assertEquals(exe, Bart.searchExeInClassPath(jar + File.pathSeparator + exe.getPath()));
+        assertNull(Bart.searchExeInClassPath(jar));
+    }
+
     @Test
     void testExecute() throws BartException {
         assertDoesNotThrow(() -> Bart.execute("bitmask", "-b", 7));
@@ -82,6 +209,21 @@ class TestBart {
         javaAbs.forEachWithLinearIndices((value, i) -> assertEquals((double)value, bartAbs.get(i).abs()));
     }
 
+    @Test
+    void testRunMulti() throws BartException {
+        BartNDArray[] usv = Bart.runMulti(3, "svd", array);
+        assertEquals(3, usv.length);
+        assertEquals(3 * 3, usv[0].length());
+        assertEquals(3, usv[1].length());
+        assertEquals(128 * 128, usv[2].length());
+    }
+
+    @Test
+    void testRunMultiInvalidOutputs() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> Bart.runMulti(0, "svd", array));
+        assertEquals(String.format(BartErrors.NON_POSITIVE_LIMIT, "number of outputs", 0), exception.getMessage());
+    }
+
     @Test
     void testRunError() throws BartException {
         Exception exception = assertThrows(BartException.class, () -> Bart.run("cabs", "asdf"));
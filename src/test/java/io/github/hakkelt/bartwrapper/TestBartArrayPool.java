@@ -0,0 +1,163 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestBartArrayPool {
+
+    @BeforeEach
+    void setup() {
+        BartArrayPool.enable(1024 * 1024);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BartArrayPool.disable();
+    }
+
+    @Test
+    void testReuseReleasedBuffer() {
+        BartComplexFloatNDArray array = new BartComplexFloatNDArray(4, 5);
+        array.fill(new Complex(1, -1));
+        float[] data = array.data;
+        array.release();
+        assertEquals(data.length * Float.BYTES, BartArrayPool.getPooledBytes());
+        BartComplexFloatNDArray array2 = new BartComplexFloatNDArray(5, 4);
+        assertSame(data, array2.data);
+        array2.forEach(value -> assertEquals(Complex.ZERO, value));
+        assertEquals(0, BartArrayPool.getPooledBytes());
+    }
+
+    @Test
+    void testDifferentLength() {
+        BartComplexFloatNDArray array = new BartComplexFloatNDArray(4, 5);
+        float[] data = array.data;
+        array.release();
+        BartComplexFloatNDArray array2 = new BartComplexFloatNDArray(4, 6);
+        assertNotSame(data, array2.data);
+    }
+
+    @Test
+    void testTryWithResources() {
+        BartNDArray source = new BartComplexFloatNDArray(4, 5).fill(new Complex(2, 3));
+        float[] data;
+        try (BartComplexFloatNDArray array = new BartComplexFloatNDArray(4, 5)) {
+            data = array.data;
+        }
+        BartNDArray copy = source.copy();
+        assertSame(data, ((BartComplexFloatNDArray) copy).data);
+        copy.forEach(value -> assertEquals(new Complex(2, 3), value));
+    }
+
+    @Test
+    void testLoadDrawsFromPool() throws IOException {
+        BartNDArray array = new BartComplexFloatNDArray(4, 5).fillUsingLinearIndices(i -> new Complex(i, -i));
+        File file = BartNDArray.saveToTemp(array);
+        try {
+            BartComplexFloatNDArray array2 = new BartComplexFloatNDArray(4, 5);
+            float[] data = array2.data;
+            array2.release();
+            BartComplexFloatNDArray loaded = BartNDArray.load(file);
+            assertSame(data, loaded.data);
+            assertEquals(array, loaded);
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test
+    void testReshapedArrayIsNotPooled() {
+        BartComplexFloatNDArray array = new BartComplexFloatNDArray(4, 5);
+        array.reshape(20).release();
+        assertEquals(0, BartArrayPool.getPooledBytes());
+        array.release();
+        assertEquals(20 * 2 * Float.BYTES, BartArrayPool.getPooledBytes());
+    }
+
+    @Test
+    void testOriginReleasedBeforeReshaped() {
+        BartComplexFloatNDArray array = new BartComplexFloatNDArray(4, 5);
+        array.fill(new Complex(1, 2));
+        BartComplexFloatNDArray reshaped = (BartComplexFloatNDArray) array.reshape(20);
+        array.release();
+        assertEquals(0, BartArrayPool.getPooledBytes());
+        BartComplexFloatNDArray other = new BartComplexFloatNDArray(4, 5);
+        assertNotSame(reshaped.data, other.data);
+        other.fill(new Complex(3, 4));
+        assertEquals(new Complex(1, 2), reshaped.get(19));
+        reshaped.release();
+        assertEquals(20 * 2 * Float.BYTES, BartArrayPool.getPooledBytes());
+    }
+
+    @Test
+    void testReleaseRealArray() {
+        BartRealFloatNDArray array = new BartRealFloatNDArray(4, 5);
+        array.release();
+        array.release();
+        assertEquals(20 * Float.BYTES, BartArrayPool.getPooledBytes());
+    }
+
+    @Test
+    void testReleaseView() {
+        BartComplexFloatNDArray array = new BartComplexFloatNDArray(4, 5);
+        array.slice(1, ":").release();
+        assertEquals(0, BartArrayPool.getPooledBytes());
+    }
+
+    @Test
+    void testPoolSizeLimit() {
+        BartArrayPool.enable(100 * Float.BYTES);
+        new BartComplexFloatNDArray(40).release();
+        new BartComplexFloatNDArray(20).release();
+        assertEquals(80 * Float.BYTES, BartArrayPool.getPooledBytes());
+    }
+
+    @Test
+    void testClearDropsBuffersOfOtherThreads() throws InterruptedException {
+        float[][] data = new float[1][];
+        Thread thread = new Thread(() -> {
+            BartComplexFloatNDArray array = new BartComplexFloatNDArray(4, 5);
+            data[0] = array.data;
+            array.release();
+        });
+        thread.start();
+        thread.join();
+        assertEquals(data[0].length * Float.BYTES, BartArrayPool.getPooledBytes());
+        BartArrayPool.clear();
+        assertEquals(0, BartArrayPool.getPooledBytes());
+        assertNotSame(data[0], new BartComplexFloatNDArray(4, 5).data);
+        assertEquals(0, BartArrayPool.getPooledBytes());
+    }
+
+    @Test
+    void testDisabled() {
+        BartArrayPool.disable();
+        assertFalse(BartArrayPool.isEnabled());
+        BartComplexFloatNDArray array = new BartComplexFloatNDArray(4, 5);
+        float[] data = array.data;
+        array.release();
+        assertNotSame(data, new BartComplexFloatNDArray(4, 5).data);
+        BartArrayPool.enable(0);
+        assertTrue(BartArrayPool.isEnabled());
+    }
+
+    @Test
+    void testNegativePoolSize() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> BartArrayPool.enable(-1));
+        assertEquals(String.format(BartErrors.NEGATIVE_POOL_SIZE, -1), exception.getMessage());
+    }
+
+}
@@ -0,0 +1,78 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestBartArrayStore {
+    @TempDir
+    File directory;
+
+    @Test
+    void testContentAddressing() throws IOException {
+        BartArrayStore store = new BartArrayStore(directory, 1 << 20);
+        BartStoredArray first = store.put(new BartComplexFloatNDArray(4, 4).fill(new Complex(1, 2)));
+        BartStoredArray second = store.put(new BartComplexFloatNDArray(4, 4).fill(new Complex(1, 2)));
+        BartStoredArray third = store.put(new BartComplexFloatNDArray(4, 4).fill(new Complex(2, 1)));
+        assertEquals(first, second);
+        assertFalse(first.equals(third));
+        assertEquals(2, store.getCount());
+        assertEquals(new BartComplexFloatNDArray(4, 4).fill(new Complex(1, 2)), first.load());
+        assertEquals(2, new BartArrayStore(directory, 1 << 20).getCount());
+    }
+
+    @Test
+    void testRunIsStored() throws BartException, IOException {
+        BartArrayStore store = new BartArrayStore(directory, 1 << 20);
+        BartStoredArray trajectory = store.run("traj", "-r", "-x", 64, "-y", 16);
+        assertEquals(trajectory, store.run("traj", "-r", "-x", 64, "-y", 16));
+        assertEquals(1, store.getCount());
+        BartTestSupport.assertArrayClose(Bart.run("traj", "-r", "-x", 64, "-y", 16), trajectory.load());
+    }
+
+    @Test
+    void testStoredArrayAsArgument() throws BartException, IOException {
+        BartArrayStore store = new BartArrayStore(directory, 1 << 20);
+        BartNDArray array = new BartComplexFloatNDArray(8, 8).fill(new Complex(3, 4));
+        BartTestSupport.assertArrayClose(Bart.run("cabs", array), Bart.run("cabs", store.put(array)));
+    }
+
+    @Test
+    void testEviction() throws IOException {
+        BartArrayStore store = new BartArrayStore(directory, 3000);
+        BartStoredArray first = store.put(new BartComplexFloatNDArray(100).fill(1));
+        store.put(new BartComplexFloatNDArray(100).fill(2));
+        store.put(new BartComplexFloatNDArray(100).fill(3));
+        store.put(new BartComplexFloatNDArray(100).fill(4));
+        assertTrue(store.getSize() <= 3000);
+        assertFalse(first.getFile().exists());
+        Exception exception = assertThrows(BartException.class, () -> Bart.run("cabs", first));
+        assertEquals(String.format(BartErrors.STORED_ARRAY_EVICTED, first.getKey()), exception.getMessage());
+    }
+
+    @Test
+    void testFileDeletedOutsideOfStore() throws IOException {
+        BartArrayStore store = new BartArrayStore(directory, 1 << 20);
+        BartNDArray array = new BartComplexFloatNDArray(100).fill(1);
+        BartStoredArray stored = store.put(array);
+        long size = store.getSize();
+        assertTrue(stored.getFile().delete());
+        assertEquals(stored, store.put(array));
+        assertTrue(stored.getFile().isFile());
+        assertEquals(1, store.getCount());
+        assertEquals(size, store.getSize());
+        assertTrue(stored.getFile().delete());
+        assertThrows(IllegalArgumentException.class, stored::load);
+        assertEquals(0, store.getCount());
+        assertEquals(0, store.getSize());
+    }
+
+}
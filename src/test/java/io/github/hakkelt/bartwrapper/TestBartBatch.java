@@ -0,0 +1,90 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.Test;
+
+class TestBartBatch {
+
+    static BartNDArray multiSlice() {
+        BartNDArray array = new BartComplexFloatNDArray(8, 8, 3);
+        array.setBartDims(BartDimsEnum._00_READ, BartDimsEnum._01_PHS1, BartDimsEnum._13_SLICE);
+        for (int slice = 0; slice < 3; slice++)
+            array.slice(":", ":", slice).fill(new Complex(slice + 1, -slice));
+        return array;
+    }
+
+    @Test
+    void testBitmask() {
+        assertEquals(0, BartDimsEnum.bitmask());
+        assertEquals(7, BartDimsEnum.bitmask(BartDimsEnum._00_READ, BartDimsEnum._01_PHS1, BartDimsEnum._02_PHS2));
+        assertEquals(1 << 13, new BartBatch(BartDimsEnum._13_SLICE, BartDimsEnum._13_SLICE).getLoopFlags());
+    }
+
+    @Test
+    void testLoopFlags() throws BartException {
+        BartTestSupport.RecordingExecutor recorder = new BartTestSupport.RecordingExecutor(
+            args -> (BartNDArray) args[args.length - 2]);
+        List<Object[]> calls = recorder.getCalls();
+        BartNDArray kspace = multiSlice();
+        BartNDArray sensitivities = new BartComplexFloatNDArray(8, 8);
+        BartBatch batch = new BartBatch(BartDimsEnum._13_SLICE).executor(recorder);
+        batch.run("pics", "-l2", "-w", 1, kspace, sensitivities);
+        assertEquals(1, calls.size());
+        assertArrayEquals(new Object[]{ "pics", "-L8192", "-l2", "-w", 1, kspace, sensitivities }, calls.get(0));
+        assertTrue(BartBatch.supportsLoopFlags("pics"));
+        assertFalse(BartBatch.supportsLoopFlags("fft"));
+
+        // per-slice sensitivities, estimated scaling and warm start need separate invocations
+        for (Object[] args : List.of(
+                new Object[]{ "pics", "-l2", "-w", 1, kspace, kspace },
+                new Object[]{ "pics", "-l2", kspace, sensitivities },
+                new Object[]{ "pics", "-l2", "-w", 1, "-W", sensitivities, kspace, sensitivities },
+                new Object[]{ "pics", "-l2", "-w", 1, "-p", kspace, kspace, sensitivities })) {
+            calls.clear();
+            batch.run(args);
+            assertEquals(3, calls.size());
+        }
+        calls.clear();
+        new BartBatch(BartDimsEnum._03_COIL).executor(recorder).run("pics", "-l2", "-w", 1, kspace, sensitivities);
+        assertEquals(1, calls.size());
+        assertEquals("pics", calls.get(0)[0]);
+        assertEquals("-l2", calls.get(0)[1]);
+    }
+
+    @Test
+    void testLoopFlagsMatchSplit() throws BartException {
+        BartNDArray first = Bart.run("phantom", "-k", "-s", 4, "-x", 32);
+        BartNDArray second = Bart.run("flip", 1, first);
+        BartNDArray kspace = BartSplitter.join(BartDimsEnum._13_SLICE, List.of(first, second));
+        BartNDArray sensitivities = Bart.run("ecalib", "-m1", first);
+
+        List<BartNDArray> slices = new ArrayList<>();
+        for (BartNDArray slice : List.of(first, second))
+            slices.add(Bart.run("pics", "-l2", "-r0.01", "-w", 1, slice, sensitivities));
+        BartNDArray expected = BartSplitter.join(BartDimsEnum._13_SLICE, slices);
+
+        BartTestSupport.RecordingExecutor recorder = new BartTestSupport.RecordingExecutor();
+        BartNDArray actual = new BartBatch(BartDimsEnum._13_SLICE).executor(recorder)
+            .run("pics", "-l2", "-r0.01", "-w", 1, kspace, sensitivities);
+        assertEquals(1, recorder.getCalls().size());
+        assertEquals("-L8192", recorder.getCalls().get(0)[1]);
+        BartTestSupport.assertArrayClose(expected, actual);
+    }
+
+    @Test
+    void testSplitFallback() throws BartException {
+        BartNDArray array = multiSlice();
+        BartNDArray expected = Bart.run("fft", 3, array);
+        BartNDArray actual = new BartBatch(BartDimsEnum._13_SLICE).parallelism(2).run("fft", 3, array);
+        BartTestSupport.assertArrayClose(expected, actual);
+    }
+
+}
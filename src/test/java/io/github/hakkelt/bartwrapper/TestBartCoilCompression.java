@@ -0,0 +1,93 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class TestBartCoilCompression {
+    static BartNDArray kspace;
+
+    @BeforeAll
+    static void setup() throws BartException {
+        kspace = Bart.run("phantom", "-k", "-s", 8, "-x", 32);
+    }
+
+    @Test
+    void testSvdCompressionInJvm() throws BartException {
+        BartCoilCompression compression = BartCoilCompression.toCoils(4);
+        BartNDArray compressed = compression.compress("series", kspace);
+        BartNDArray matrix = Bart.run("cc", "-M", "-S", kspace);
+        BartTestSupport.assertArrayClose(Bart.run("ccapply", "-p", 4, "-S", kspace, matrix), compressed);
+        assertEquals(4, compressed.shape()[3]);
+
+        compression.compress("series", kspace);
+        assertEquals(1, compression.getMissCount());
+        assertEquals(1, compression.getHitCount());
+        assertEquals(4, compression.getVirtualCoils("series"));
+    }
+
+    @Test
+    void testGeometricCompression() throws BartException {
+        BartNDArray compressed = BartCoilCompression.toCoils(3).type(BartCoilCompression.Type.GEOMETRIC)
+            .compress("series", kspace);
+        BartNDArray matrix = Bart.run("cc", "-M", "-G", kspace);
+        BartTestSupport.assertArrayClose(Bart.run("ccapply", "-p", 3, "-G", kspace, matrix), compressed);
+    }
+
+    @Test
+    void testEnergy() throws BartException {
+        BartCoilCompression compression = BartCoilCompression.toEnergy(0.9);
+        BartNDArray compressed = compression.compress("series", kspace);
+        int virtualCoils = compression.getVirtualCoils("series");
+        assertTrue(virtualCoils >= 1 && virtualCoils <= 8);
+        assertEquals(virtualCoils, compressed.shape()[3]);
+        assertTrue(virtualCoils <= BartCoilCompression.toEnergy(0.99).compress("series", kspace).shape()[3]);
+        // the strongest virtual coil alone keeps this fraction, but only if cc reported the energies
+        assertEquals(1, BartCoilCompression.toEnergy(1e-3).compress("series", kspace).shape()[3]);
+    }
+
+    @Test
+    void testEnergyNotReported() {
+        BartTestSupport.RecordingExecutor recorder = new BartTestSupport.RecordingExecutor(
+            args -> new BartComplexFloatNDArray(8, 8));
+        BartCoilCompression compression = BartCoilCompression.toEnergy(0.9).executor(recorder);
+        for (int i = 0; i < 2; i++) {
+            Exception exception = assertThrows(BartException.class, () -> compression.compress("series", kspace));
+            assertEquals(BartErrors.ENERGY_NOT_RECEIVED, exception.getMessage());
+        }
+        assertEquals(2, recorder.getCalls().size());
+        assertEquals(0, compression.getVirtualCoils("series"));
+    }
+
+    @Test
+    void testNoCompression() throws BartException {
+        BartCoilCompression compression = BartCoilCompression.toCoils(16);
+        assertSame(kspace, compression.compress("series", kspace));
+        assertEquals(8, compression.getVirtualCoils("series"));
+        compression.invalidate("series");
+        assertEquals(0, compression.getVirtualCoils("series"));
+    }
+
+    @Test
+    void testEnergySelection() {
+        double[] energies = BartCoilCompression.parseEnergies("Energy: 0.700 0.200 0.060 0.040");
+        assertEquals(2, BartCoilCompression.selectByEnergy(List.of(energies), 4, 0.9));
+        assertEquals(3, BartCoilCompression.selectByEnergy(List.of(energies), 4, 0.95));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> BartCoilCompression.toEnergy(1.5));
+        assertEquals(String.format(BartErrors.INVALID_ENERGY_FRACTION, 1.5), exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class,
+            () -> BartCoilCompression.toEnergy(0.9).type(BartCoilCompression.Type.ESPIRIT));
+        assertEquals(BartErrors.ENERGY_NOT_REPORTED, exception.getMessage());
+    }
+
+}
@@ -0,0 +1,65 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.Test;
+
+class TestBartCommand {
+    static final BartNDArray ARRAY = new BartComplexFloatNDArray(8, 8).fill(new Complex(1, 2));
+
+    @Test
+    void testToArgs() {
+        Object[] args = Bart.pics().l1Wavelet().regularization("T:7:0:0.1").lambda(0.01f).iter(50)
+            .option("wavelet", "haar").kspace(ARRAY).sens(ARRAY).toArgs();
+        assertArrayEquals(new Object[]{ "pics", "-l1", "-RT:7:0:0.1", "-r0.01", "-i50", "--wavelet", "haar", ARRAY, ARRAY }, args);
+        args = Bart.ecalib().kernelSize(6, 6, 1).maps(2).kspace(ARRAY).toArgs();
+        assertArrayEquals(new Object[]{ "ecalib", "-k6:6:1", "-m2", ARRAY }, args);
+        args = Bart.fft(3).unitary().input(ARRAY).toArgs();
+        assertArrayEquals(new Object[]{ "fft", "-u", "3", ARRAY }, args);
+    }
+
+    @Test
+    void testOptionsAreReplaced() {
+        Object[] args = Bart.pics().lambda(0.1f).lambda(0.01f).admm().ist().kspace(ARRAY).sens(ARRAY).toArgs();
+        assertArrayEquals(new Object[]{ "pics", "-r0.01", "-I", ARRAY, ARRAY }, args);
+    }
+
+    @Test
+    void testArity() {
+        assertEquals(2, Bart.pics().getInputCount());
+        assertEquals(1, Bart.pics().getOutputCount());
+        assertEquals(2, Bart.ecalib().getOutputCount());
+    }
+
+    @Test
+    void testUnknownOption() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> Bart.pics().option("x"));
+        assertEquals(String.format(BartErrors.UNKNOWN_COMMAND_OPTION, "x", "pics"), exception.getMessage());
+    }
+
+    @Test
+    void testInvalidOption() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> Bart.pics().iter(-1));
+        assertEquals(String.format(BartErrors.INVALID_COMMAND_OPTION, "i", "pics", -1, "a non-negative integer"),
+            exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> Bart.pics().option("r"));
+        assertEquals(String.format(BartErrors.INVALID_COMMAND_OPTION, "r", "pics", null, "a finite number"),
+            exception.getMessage());
+    }
+
+    @Test
+    void testMissingInput() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> Bart.pics().kspace(ARRAY).run());
+        assertEquals(String.format(BartErrors.MISSING_COMMAND_INPUT, "sensitivities", "pics"), exception.getMessage());
+    }
+
+    @Test
+    void testRun() throws BartException {
+        BartTestSupport.assertArrayClose(Bart.run("fft", "-u", 3, ARRAY), Bart.fft(3).unitary().input(ARRAY).run());
+        BartTestSupport.assertArrayClose(Bart.run("fmac", "-C", ARRAY, ARRAY), Bart.fmac().conjugate().input1(ARRAY).input2(ARRAY).run());
+    }
+
+}
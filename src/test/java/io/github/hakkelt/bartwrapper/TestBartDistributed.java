@@ -0,0 +1,193 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.Test;
+
+class TestBartDistributed {
+    static final BartExecutor UNREACHABLE = new BartRemoteExecutor(() -> {
+        throw new IOException("connection refused");
+    });
+
+    @Test
+    void testStreamSaveAndLoad() throws IOException {
+        BartNDArray first = new BartComplexFloatNDArray(4, 3).fill(new Complex(1, -2));
+        BartNDArray second = new BartComplexFloatNDArray(2).fill(new Complex(3, 4));
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        BartNDArray.save(first, stream);
+        BartNDArray.save(second, stream);
+        InputStream input = new ByteArrayInputStream(stream.toByteArray());
+        assertEquals(first, BartNDArray.load(input));
+        assertEquals(second, BartNDArray.load(input));
+        assertEquals(-1, input.read());
+    }
+
+    @Test
+    void testRemoteRun() throws BartException {
+        BartNDArray array = new BartComplexFloatNDArray(8, 8).fill(new Complex(3, 4));
+        BartTestSupport.assertArrayClose(Bart.run("cabs", array), BartTestSupport.inProcessWorker().run("cabs", array));
+    }
+
+    @Test
+    void testRemoteRunMulti() throws BartException {
+        BartNDArray matrix = new BartComplexFloatNDArray(4, 3).fill(new Complex(1, -2));
+        BartNDArray[] local = Bart.runMulti(3, "svd", matrix);
+        BartNDArray[] remote = BartTestSupport.inProcessWorker().runMulti(3, "svd", matrix);
+        assertEquals(local.length, remote.length);
+        BartTestSupport.assertArrayClose(local[1], remote[1]);
+    }
+
+    @Test
+    void testRemoteRead() throws BartException {
+        assertEquals("0 1 2", BartTestSupport.inProcessWorker().read("bitmask", "-b", 7));
+    }
+
+    @Test
+    void testRemoteOutputAndEnvironment() throws BartException {
+        List<String> lines = new ArrayList<>();
+        BartNDArray kspace = Bart.run("phantom", "-k", "-s", 4, "-x", 16);
+        BartOptions options = new BartOptions().environment("DEBUG_LEVEL", "3").outputConsumer(lines::add);
+        BartTestSupport.inProcessWorker().run(options, "cc", "-M", kspace);
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("Energy:")));
+    }
+
+    @Test
+    void testRemoteError() {
+        Exception local = assertThrows(BartException.class, () -> Bart.read("cabs", "asdf"));
+        Exception remote = assertThrows(BartException.class, () -> BartTestSupport.inProcessWorker().read("cabs", "asdf"));
+        assertEquals(BartException.class, remote.getClass());
+        assertEquals(local.getMessage(), remote.getMessage());
+    }
+
+    @Test
+    void testRemoteFileArgument() {
+        File file = new File("input.ra");
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> BartTestSupport.inProcessWorker().run("cabs", file));
+        assertEquals(String.format(BartErrors.REMOTE_FILE_ARGUMENT, file), exception.getMessage());
+    }
+
+    @Test
+    void testInvalidRequest() throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        new BartWorkerServer().handle(new ByteArrayInputStream(new byte[] { 1, 2, 3 }), response);
+        Exception exception = assertThrows(BartException.class,
+            () -> BartWireProtocol.readResponse(new ByteArrayInputStream(response.toByteArray()), null));
+        assertEquals(BartErrors.INVALID_WORKER_REQUEST, exception.getMessage());
+    }
+
+    @Test
+    void testSocketWorker() throws IOException, BartException {
+        try (BartWorkerServer server = new BartWorkerServer().start(0)) {
+            BartExecutor worker = new BartRemoteExecutor(
+                BartTransport.socket(InetAddress.getLoopbackAddress().getHostAddress(), server.getPort()));
+            assertEquals("0 1 2", worker.read("bitmask", "-b", 7));
+        }
+    }
+
+    @Test
+    void testSocketReadTimeout() throws IOException {
+        try (ServerSocket silent = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+            BartTransport transport = BartTransport.socket(InetAddress.getLoopbackAddress().getHostAddress(), silent.getLocalPort());
+            try (BartTransport.Connection connection = transport.connect()) {
+                connection.setReadTimeout(Duration.ofMillis(100));
+                assertThrows(SocketTimeoutException.class, () -> connection.getInputStream().read());
+            }
+        }
+    }
+
+    @Test
+    void testWorkerTimeout() {
+        List<Duration> timeouts = new ArrayList<>();
+        BartExecutor hanging = new BartRemoteExecutor(() -> new BartTransport.Connection() {
+            @Override
+            public InputStream getInputStream() {
+                return new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new SocketTimeoutException();
+                    }
+                };
+            }
+
+            @Override
+            public OutputStream getOutputStream() {
+                return new ByteArrayOutputStream();
+            }
+
+            @Override
+            public void setReadTimeout(Duration timeout) {
+                timeouts.add(timeout);
+            }
+
+            @Override
+            public void close() {
+                // nothing to release
+            }
+        });
+        BartOptions options = new BartOptions().timeout(Duration.ofSeconds(10));
+        Exception exception = assertThrows(BartTransportException.class, () -> hanging.read(options, "bitmask", "-b", 7));
+        assertEquals(String.format(BartErrors.WORKER_FAILED, hanging, BartErrors.WORKER_TIMED_OUT), exception.getMessage());
+        assertEquals(List.of(Duration.ofSeconds(10).plus(options.getGracePeriod()).plus(BartRemoteExecutor.READ_TIMEOUT_MARGIN)), timeouts);
+    }
+
+    @Test
+    void testRetryOnWorkerFailure() throws BartException {
+        try (BartDistributedExecutor executor = new BartDistributedExecutor(Arrays.asList(UNREACHABLE, BartTestSupport.inProcessWorker()))) {
+            for (int i = 0; i < 3; i++)
+                assertEquals("0 1 2", executor.read("bitmask", "-b", 7));
+            assertArrayEquals(new int[]{ 0, 0 }, executor.getLoad());
+        }
+    }
+
+    @Test
+    void testAllWorkersFail() {
+        try (BartDistributedExecutor executor = new BartDistributedExecutor(Arrays.asList(UNREACHABLE, UNREACHABLE))) {
+            assertThrows(BartTransportException.class, () -> executor.read("bitmask", "-b", 7));
+        }
+    }
+
+    @Test
+    void testRunSplit() throws BartException {
+        BartNDArray kspace = new BartComplexFloatNDArray(4, 4, 3);
+        for (int i = 0; i < 3; i++)
+            kspace.slice(":", ":", i).fill(new Complex(i, -i));
+        kspace.setBartDims(BartDimsEnum._00_READ, BartDimsEnum._01_PHS1, BartDimsEnum._13_SLICE);
+        List<BartExecutor> workers = Arrays.asList(BartTestSupport.inProcessWorker(), BartTestSupport.inProcessWorker());
+        try (BartDistributedExecutor executor = new BartDistributedExecutor(workers)) {
+            BartNDArray expected = Bart.run("scale", 2, kspace);
+            BartNDArray result = executor.runSplit(BartDimsEnum._13_SLICE, "scale", 2, kspace);
+            assertEquals(3, result.shape(13));
+            BartTestSupport.assertArrayClose(expected, result);
+        }
+    }
+
+    @Test
+    void testSplitSizeMismatch() {
+        BartNDArray first = new BartComplexFloatNDArray(4, 3);
+        first.setBartDims(BartDimsEnum._00_READ, BartDimsEnum._13_SLICE);
+        BartNDArray second = new BartComplexFloatNDArray(4, 2);
+        second.setBartDims(BartDimsEnum._00_READ, BartDimsEnum._13_SLICE);
+        Exception exception = assertThrows(IllegalArgumentException.class,
+            () -> BartSplitter.split(BartDimsEnum._13_SLICE, "fmac", first, second));
+        assertEquals(String.format(BartErrors.SPLIT_SIZE_MISMATCH, BartDimsEnum._13_SLICE, 3, 2), exception.getMessage());
+    }
+
+}
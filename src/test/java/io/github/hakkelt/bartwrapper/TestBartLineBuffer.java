@@ -0,0 +1,40 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+class TestBartLineBuffer {
+
+    @Test
+    void testKeepsAllLinesBelowCapacity() {
+        BartLineBuffer buffer = new BartLineBuffer(3);
+        buffer.add("a");
+        buffer.add("b");
+        assertEquals(Arrays.asList("a", "b"), buffer.getLines());
+        assertEquals(0, buffer.getDroppedCount());
+        assertEquals("a" + System.lineSeparator() + "b", buffer.toString());
+    }
+
+    @Test
+    void testKeepsLastLines() {
+        BartLineBuffer buffer = new BartLineBuffer(3);
+        for (int i = 0; i < 10; i++)
+            buffer.add(Integer.toString(i));
+        assertEquals(Arrays.asList("7", "8", "9"), buffer.getLines());
+        assertEquals(7, buffer.getDroppedCount());
+        assertEquals(String.join(System.lineSeparator(), "... (7 lines omitted)", "7", "8", "9"), buffer.toString());
+    }
+
+    @Test
+    void testZeroCapacity() {
+        BartLineBuffer buffer = new BartLineBuffer(0);
+        buffer.add("a");
+        assertEquals(Collections.emptyList(), buffer.getLines());
+        assertEquals(1, buffer.getDroppedCount());
+    }
+
+}
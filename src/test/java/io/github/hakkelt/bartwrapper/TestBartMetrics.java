@@ -0,0 +1,83 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestBartMetrics {
+    BartHistogramMetrics metrics;
+
+    @BeforeEach
+    void setup() {
+        metrics = new BartHistogramMetrics();
+        Bart.setMetrics(metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Bart.setMetrics(null);
+    }
+
+    @Test
+    void testHistogram() {
+        BartHistogramMetrics.Histogram histogram = new BartHistogramMetrics.Histogram();
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(i * 1000L);
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500., histogram.getMean());
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(500000, histogram.getPercentile(0.5), 500000 / 16.);
+        assertEquals(990000, histogram.getPercentile(0.99), 990000 / 16.);
+        assertEquals(1000000, histogram.getPercentile(1));
+        assertTrue(Double.isNaN(new BartHistogramMetrics.Histogram().getPercentile(0.5)));
+    }
+
+    @Test
+    void testHistogramSmallValues() {
+        BartHistogramMetrics.Histogram histogram = new BartHistogramMetrics.Histogram();
+        for (int i = 0; i < 10; i++)
+            histogram.record(i);
+        assertEquals(4, histogram.getPercentile(0.5));
+        assertEquals(0, histogram.getPercentile(0));
+    }
+
+    @Test
+    void testInvalidQuantile() {
+        BartHistogramMetrics.Histogram histogram = new BartHistogramMetrics.Histogram();
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(1.5));
+        assertEquals(String.format(BartErrors.INVALID_QUANTILE, 1.5), exception.getMessage());
+    }
+
+    @Test
+    void testDisableMetrics() {
+        Bart.setMetrics(null);
+        assertSame(BartMetrics.NO_OP, Bart.getMetrics());
+    }
+
+    @Test
+    void testRunRecordsPhases() throws BartException {
+        BartNDArray array = new BartComplexFloatNDArray(8, 8).fill(new Complex(1, -1));
+        Bart.run("cabs", array);
+        for (BartPhase phase : BartPhase.values())
+            assertEquals(1, metrics.getHistogram("cabs", phase).getCount(), phase.name());
+        assertEquals(1, metrics.getTotalHistogram("cabs").getCount());
+        assertTrue(metrics.getBytesWritten("cabs") >= 8 * 8 * 2 * Float.BYTES);
+        assertEquals(0, metrics.getFailureCount("cabs"));
+    }
+
+    @Test
+    void testFailureIsRecorded() {
+        assertThrows(BartException.class, () -> Bart.run("cabs", "asdf"));
+        assertEquals(1, metrics.getTotalHistogram("cabs").getCount());
+        assertEquals(1, metrics.getFailureCount("cabs"));
+        assertEquals(0, metrics.getHistogram("cabs", BartPhase.LOAD_OUTPUT).getCount());
+        assertEquals(1, metrics.getHistogram("cabs", BartPhase.CLEAN_UP).getCount());
+    }
+
+}
@@ -0,0 +1,92 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+class TestBartOutputParser {
+
+    @Test
+    void testIterationMonitor() {
+        BartProgressEvent event = BartOutputParser.parse("[Iter 0012] Objective: 1.500000, Error: 0.250000");
+        assertEquals(BartProgressEvent.Type.ITERATION, event.getType());
+        assertEquals(12, event.getIteration());
+        assertEquals(1.5, event.getObjective());
+        assertEquals(0.25, event.getError());
+        assertTrue(Double.isNaN(event.getResidual()));
+    }
+
+    @Test
+    void testResidual() {
+        String[] lines = {
+            "#It 012: 0.125000",
+            "#It 012: 0.125000 0.500000",
+            "#It 012 relative residual r / r_0: 0.125000",
+            "#12: 0.125000",
+            "Step: 12, Res: 0.125000"
+        };
+        for (String line : lines) {
+            BartProgressEvent event = BartOutputParser.parse(line);
+            assertEquals(BartProgressEvent.Type.ITERATION, event.getType(), line);
+            assertEquals(12, event.getIteration(), line);
+            assertEquals(0.125, event.getResidual(), line);
+        }
+        assertTrue(Double.isNaN(BartOutputParser.parse("#3: -nan").getResidual()));
+    }
+
+    @Test
+    void testAdmmTable() {
+        BartProgressEvent event = BartOutputParser.parse(
+            "4\t 17\t    0.5000\t    1.0000\t    2.0000\t    0.1000\t    0.3000\t    0.2000\t    7.0000\t   -1.0000");
+        assertEquals(BartProgressEvent.Type.ITERATION, event.getType());
+        assertEquals(4, event.getIteration());
+        assertEquals(2., event.getResidual());
+        assertEquals(7., event.getObjective());
+        assertTrue(Double.isNaN(event.getError()));
+        assertEquals(BartProgressEvent.Type.MESSAGE, BartOutputParser.parse(
+            "iter\tcgiter\t       rho\t       tau\t    r norm\t   eps pri\t    s norm\t  eps dual\t       obj\t    relMSE").getType());
+    }
+
+    @Test
+    void testTiming() {
+        String[][] lines = {
+            { "Total Time: 1.500000", "Total Time" },
+            { "Total time: 1.50 s", "Total time" },
+            { "Reconstruction time: 1.5 seconds.", "Reconstruction time" },
+            { "[2021-05-01 10:00:00] [INFO] - Total Time: 1.5", "Total Time" }
+        };
+        for (String[] line : lines) {
+            BartProgressEvent event = BartOutputParser.parse(line[0]);
+            assertEquals(BartProgressEvent.Type.TIMING, event.getType(), line[0]);
+            assertEquals(line[1], event.getStage());
+            assertEquals(1.5, event.getSeconds());
+        }
+    }
+
+    @Test
+    void testMessage() {
+        BartProgressEvent event = BartOutputParser.parse("Maximum eigenvalue: 1.00e+00");
+        assertEquals(BartProgressEvent.Type.MESSAGE, event.getType());
+        assertEquals("Maximum eigenvalue: 1.00e+00", event.getLine());
+        assertEquals(-1, event.getIteration());
+    }
+
+    @Test
+    void testListen() {
+        List<BartProgressEvent> events = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        Consumer<String> consumer = BartOutputParser.listen(events::add, lines::add);
+        consumer.accept("[Iter 0001] Objective: 2.000000, Error: 0.000000");
+        consumer.accept("Total Time: 0.5");
+        assertEquals(2, events.size());
+        assertEquals(2, lines.size());
+        assertEquals(BartProgressEvent.Type.ITERATION, events.get(0).getType());
+        assertEquals(BartProgressEvent.Type.TIMING, events.get(1).getType());
+    }
+
+}
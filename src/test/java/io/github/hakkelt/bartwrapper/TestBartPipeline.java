@@ -0,0 +1,133 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestBartPipeline {
+    List<BartNDArray> frames;
+    List<BartNDArray> output;
+
+    static BartPipeline.Stage delay(long millis) {
+        return frame -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return frame;
+        };
+    }
+
+    @BeforeEach
+    void setup() {
+        frames = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            frames.add(new BartComplexFloatNDArray(4, 4).fill(new Complex(i, -i)));
+        output = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    void testBlockingKeepsAllFrames() throws InterruptedException {
+        BartPipeline pipeline = new BartPipeline(output::add).queueCapacity(1)
+            .stage("first", delay(5))
+            .stage("second", delay(10))
+            .start();
+        pipeline.process(frames.iterator());
+        assertEquals(frames, output);
+        assertEquals(0, pipeline.getDroppedCount());
+        assertEquals(10, pipeline.getLatency("second").getCount());
+        assertEquals(10, pipeline.getEndToEndLatency().getCount());
+    }
+
+    @Test
+    void testDropOldest() throws InterruptedException {
+        BartPipeline pipeline = new BartPipeline(output::add).queueCapacity(1)
+            .overflowPolicy(BartPipeline.OverflowPolicy.DROP_OLDEST)
+            .stage("slow", delay(50))
+            .start();
+        for (BartNDArray frame : frames)
+            pipeline.submit(frame);
+        pipeline.close();
+        assertEquals(frames.size(), output.size() + pipeline.getDroppedCount());
+        assertSame(frames.get(frames.size() - 1), output.get(output.size() - 1));
+    }
+
+    @Test
+    void testSubmitRacingFinish() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            output.clear();
+            BartPipeline pipeline = new BartPipeline(output::add).queueCapacity(1)
+                .overflowPolicy(BartPipeline.OverflowPolicy.DROP_OLDEST)
+                .stage("pass", delay(0))
+                .start();
+            AtomicInteger accepted = new AtomicInteger();
+            List<Thread> submitters = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread submitter = new Thread(() -> {
+                    try {
+                        for (BartNDArray frame : frames)
+                            if (pipeline.submit(frame))
+                                accepted.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        // the input was finished
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                submitters.add(submitter);
+                submitter.start();
+            }
+            pipeline.finish();
+            assertTimeoutPreemptively(Duration.ofSeconds(10), pipeline::awaitTermination);
+            for (Thread submitter : submitters)
+                submitter.join();
+            assertEquals(accepted.get(), output.size() + pipeline.getDroppedCount());
+        }
+    }
+
+    @Test
+    void testPublisherAndFailures() throws InterruptedException {
+        BartPipeline pipeline = new BartPipeline(output::add)
+            .stage("check", frame -> {
+                if (frame == frames.get(3))
+                    throw new BartException("failed");
+                return frame;
+            })
+            .start();
+        try (SubmissionPublisher<BartNDArray> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(pipeline.subscriber());
+            frames.forEach(publisher::submit);
+        }
+        pipeline.awaitTermination();
+        assertEquals(9, output.size());
+        assertEquals(1, pipeline.getFailedCount());
+    }
+
+    @Test
+    void testCommandStage() throws InterruptedException, BartException {
+        BartPipeline pipeline = new BartPipeline(output::add).command("cabs", "cabs", BartPipeline.FRAME).start();
+        pipeline.process(frames.subList(0, 2).iterator());
+        BartTestSupport.assertArrayClose(Bart.run("cabs", frames.get(1)), output.get(1));
+    }
+
+    @Test
+    void testDuplicateStage() {
+        BartPipeline pipeline = new BartPipeline(output::add).stage("a", delay(0));
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> pipeline.stage("a", delay(0)));
+        assertEquals(String.format(BartErrors.DUPLICATE_STAGE, "a"), exception.getMessage());
+    }
+
+}
@@ -0,0 +1,107 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.Test;
+
+class TestBartScheduler {
+
+    @Test
+    void testEstimateFootprint() {
+        try (BartScheduler scheduler = new BartScheduler(1, 1000)) {
+            BartNDArray array = new BartComplexFloatNDArray(8, 8);
+            assertEquals((long) (8 * 8 * 2 * Float.BYTES * BartScheduler.DEFAULT_MULTIPLIER),
+                scheduler.estimateFootprint("cabs", array));
+            scheduler.setMultiplier("cabs", 2);
+            assertEquals(8 * 8 * 2 * Float.BYTES * 2, scheduler.estimateFootprint("cabs", array));
+            assertEquals(0, scheduler.estimateFootprint("bitmask", "-b", 7));
+        }
+    }
+
+    @Test
+    void testPriorityAndFairness() throws InterruptedException {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(1);
+        try (BartScheduler scheduler = new BartScheduler(1, 1000)) {
+            scheduler.submit("blocker", 0, 0, () -> {
+                latch.await();
+                return null;
+            });
+            for (String name : new String[]{ "a1", "a2", "a3" })
+                scheduler.submit("A", 0, 0, () -> order.add(name));
+            scheduler.submit("B", 0, 0, () -> order.add("b1"));
+            scheduler.submit("C", 5, 0, () -> order.add("c1"));
+            assertEquals(5, scheduler.getQueuedCount());
+            latch.countDown();
+        }
+        assertEquals(Arrays.asList("c1", "a1", "b1", "a2", "a3"), order);
+    }
+
+    @Test
+    void testAdmissionByMemoryBudget() throws InterruptedException, ExecutionException {
+        CountDownLatch latch = new CountDownLatch(1);
+        try (BartScheduler scheduler = new BartScheduler(4, 100)) {
+            scheduler.submit("A", 0, 60, () -> {
+                latch.await();
+                return null;
+            });
+            Future<Integer> second = scheduler.submit("B", 0, 60, () -> 2);
+            assertEquals(1, scheduler.getRunningCount());
+            assertEquals(1, scheduler.getQueuedCount());
+            assertEquals(60, scheduler.getMemoryInUse());
+            assertFalse(second.isDone());
+            latch.countDown();
+            assertEquals(2, second.get());
+            Future<Integer> oversized = scheduler.submit("A", 0, 1000, () -> 3);
+            assertEquals(3, oversized.get());
+        }
+    }
+
+    @Test
+    void testCancelQueuedJob() throws InterruptedException, ExecutionException {
+        CountDownLatch latch = new CountDownLatch(1);
+        try (BartScheduler scheduler = new BartScheduler(1, 100)) {
+            scheduler.submit("A", 0, 0, () -> {
+                latch.await();
+                return null;
+            });
+            Future<Integer> queued = scheduler.submit("A", 0, 0, () -> 1);
+            assertTrue(queued.cancel(false));
+            assertEquals(0, scheduler.getQueuedCount());
+            latch.countDown();
+        }
+    }
+
+    @Test
+    void testRun() throws InterruptedException, ExecutionException {
+        BartNDArray array = new BartComplexFloatNDArray(8, 8).fill(new Complex(3, 4));
+        try (BartScheduler scheduler = new BartScheduler(2, 1L << 20)) {
+            Future<BartNDArray> result = scheduler.run("A", 0, "cabs", array);
+            assertArrayEquals(new int[]{ 8, 8 }, result.get().shape());
+            assertEquals(5, result.get().get(0, 0).abs(), 1e-6);
+        }
+    }
+
+    @Test
+    void testRejectAfterClose() {
+        BartScheduler scheduler = new BartScheduler(1, 100);
+        scheduler.close();
+        Exception exception = assertThrows(RejectedExecutionException.class, () -> scheduler.submit("A", 0, 0, () -> 1));
+        assertEquals(BartErrors.SCHEDULER_CLOSED, exception.getMessage());
+    }
+
+}
@@ -0,0 +1,75 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestBartSensitivityCache {
+    List<Object[]> calls;
+    BartSensitivityCache cache;
+
+    @BeforeEach
+    void setup() {
+        BartTestSupport.RecordingExecutor recorder = new BartTestSupport.RecordingExecutor(
+            args -> new BartComplexFloatNDArray(4, 4));
+        calls = recorder.getCalls();
+        cache = new BartSensitivityCache("-m1").threshold(0.05).executor(recorder);
+    }
+
+    static BartNDArray calibration(double value) {
+        return new BartComplexFloatNDArray(6, 6, 1, 4).fill(new Complex(value, 1));
+    }
+
+    @Test
+    void testReuseSimilarCalibration() throws BartException {
+        BartNDArray first = cache.get("subject", calibration(1));
+        assertSame(first, cache.get("subject", calibration(1.01)));
+        assertEquals(1, calls.size());
+        assertEquals("ecalib", calls.get(0)[0]);
+        assertEquals("-m1", calls.get(0)[1]);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void testRefreshOnDifferentCalibration() throws BartException {
+        BartNDArray first = cache.get("subject", calibration(1));
+        assertNotSame(first, cache.get("subject", calibration(2)));
+        assertNotSame(first, cache.get("subject", new BartComplexFloatNDArray(6, 6, 1, 2).fill(new Complex(2, 1))));
+        assertEquals(3, calls.size());
+    }
+
+    @Test
+    void testKeysAreSeparate() throws BartException {
+        cache.get("subject-1", calibration(1));
+        cache.get("subject-2", calibration(1));
+        assertEquals(2, calls.size());
+        assertEquals(2, cache.size());
+        cache.invalidate("subject-1");
+        cache.get("subject-1", calibration(1));
+        assertEquals(3, calls.size());
+    }
+
+    @Test
+    void testInvalidThreshold() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> cache.threshold(0));
+        assertEquals(String.format(BartErrors.NON_POSITIVE_LIMIT, "threshold", 0.), exception.getMessage());
+    }
+
+    @Test
+    void testEcalib() throws BartException {
+        BartNDArray kspace = Bart.run("phantom", "-x", 32, "-k", "-s", 4);
+        BartSensitivityCache ecalibCache = new BartSensitivityCache("-m1");
+        BartNDArray sensitivities = ecalibCache.get("phantom", kspace);
+        assertSame(sensitivities, ecalibCache.get("phantom", kspace));
+        BartTestSupport.assertArrayClose(Bart.run("ecalib", "-m1", kspace), sensitivities);
+    }
+
+}
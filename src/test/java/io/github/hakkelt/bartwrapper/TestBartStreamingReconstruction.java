@@ -0,0 +1,75 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+class TestBartStreamingReconstruction {
+
+    @Test
+    void testAdaptToConvergence() {
+        BartStreamingReconstruction reconstruction = new BartStreamingReconstruction().iterations(2, 20).tolerance(0.1);
+        reconstruction.adapt(Arrays.asList(1., 0.5, 0.2, 0.09, 0.05));
+        assertEquals(4, reconstruction.getLastConvergedAt());
+        assertEquals(5, reconstruction.getIterations());
+        reconstruction.adapt(Arrays.asList(1., 0.5, 0.2, 0.15, 0.12));
+        assertEquals(-1, reconstruction.getLastConvergedAt());
+        assertEquals(10, reconstruction.getIterations());
+        reconstruction.adapt(Arrays.asList(0.05));
+        assertEquals(2, reconstruction.getIterations());
+        reconstruction.adapt(Collections.emptyList());
+        assertEquals(2, reconstruction.getIterations());
+    }
+
+    @Test
+    void testAbsoluteResiduals() {
+        // conjugate gradient and ADMM print absolute residuals, so they are relative to the first one
+        BartStreamingReconstruction reconstruction = new BartStreamingReconstruction().iterations(2, 20).tolerance(0.1);
+        reconstruction.adapt(Arrays.asList(50., 25., 10., 4.5, 2.));
+        assertEquals(4, reconstruction.getLastConvergedAt());
+        assertEquals(5, reconstruction.getIterations());
+        // warm-started frames start close to the solution of the first frame
+        reconstruction.adapt(Arrays.asList(4., 3., 2.));
+        assertEquals(1, reconstruction.getLastConvergedAt());
+        assertEquals(2, reconstruction.getIterations());
+    }
+
+    @Test
+    void testInvalidLimits() {
+        BartStreamingReconstruction reconstruction = new BartStreamingReconstruction();
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> reconstruction.iterations(10, 5));
+        assertEquals(String.format(BartErrors.INVALID_ITERATION_LIMITS, 5, 10), exception.getMessage());
+    }
+
+    @Test
+    void testWarmStart() throws BartException, IOException {
+        BartNDArray kspace = Bart.run("phantom", "-x", 32, "-k", "-s", 4);
+        BartNDArray sensitivities = Bart.run("phantom", "-x", 32, "-S", 4);
+        try (BartStreamingReconstruction reconstruction = new BartStreamingReconstruction("-l2", "-r0.01")
+                .iterations(5, 30).tolerance(1e-2)) {
+            BartNDArray first = reconstruction.next(kspace, sensitivities);
+            assertFalse(reconstruction.isLastWarmStarted());
+            int firstIterations = reconstruction.getLastIterations();
+            assertTrue(reconstruction.getLastConvergedAt() > 0);
+            assertTrue(reconstruction.getIterations() < 30);
+
+            BartNDArray second = reconstruction.next(kspace, sensitivities);
+            assertTrue(reconstruction.isLastWarmStarted());
+            assertTrue(reconstruction.getLastIterations() < firstIterations);
+            assertArrayEquals(first.shape(), second.shape());
+
+            reconstruction.reset();
+            reconstruction.next(kspace, sensitivities);
+            assertFalse(reconstruction.isLastWarmStarted());
+        }
+    }
+
+}
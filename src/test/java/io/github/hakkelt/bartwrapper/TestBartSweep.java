@@ -0,0 +1,62 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestBartSweep {
+    static final BartNDArray ARRAY = new BartComplexFloatNDArray(8, 8).fill(new Complex(1, -2));
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testGrid() throws BartException {
+        List<Double> factors = List.of(0.5, 1.0, 2.0);
+        List<Integer> signs = List.of(1, -1);
+        BartNDArray stacked = new BartSweep(BartDimsEnum._10_TIME, BartDimsEnum._11_TIME2)
+            .directory(directory)
+            .parallelism(2)
+            .run(p -> new Object[] { "scale", (Double) p[0] * (Integer) p[1], ARRAY }, factors, signs);
+
+        List<Object> columns = new ArrayList<>(List.of("join", 11));
+        for (int sign : signs) {
+            List<Object> rows = new ArrayList<>(List.of("join", 10));
+            for (double factor : factors)
+                rows.add(Bart.run("scale", factor * sign, ARRAY));
+            columns.add(Bart.run(rows.toArray()));
+        }
+        BartTestSupport.assertArrayClose(Bart.run(columns.toArray()), stacked);
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    void testFailure() {
+        BartSweep sweep = new BartSweep(BartDimsEnum._10_TIME).directory(directory);
+        assertThrows(BartException.class,
+            () -> sweep.run(p -> new Object[] { "scale", p[0], ARRAY, ARRAY }, List.of(1, 2, 3)));
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    void testInvalidAxes() {
+        BartSweep sweep = new BartSweep(BartDimsEnum._10_TIME);
+        Exception exception = assertThrows(IllegalArgumentException.class,
+            () -> sweep.run(p -> new Object[] { "scale", p[0], ARRAY }, List.of(1), List.of(2)));
+        assertEquals(String.format(BartErrors.SWEEP_AXES_MISMATCH, 1, 2), exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class,
+            () -> sweep.run(p -> new Object[] { "scale", p[0], ARRAY }, List.of()));
+        assertEquals(String.format(BartErrors.EMPTY_SWEEP_AXIS, BartDimsEnum._10_TIME), exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class,
+            () -> new BartSweep(BartDimsEnum._10_TIME, BartDimsEnum._11_TIME2, BartDimsEnum._10_TIME));
+        assertEquals(String.format(BartErrors.DUPLICATE_SWEEP_DIMENSION, BartDimsEnum._10_TIME), exception.getMessage());
+    }
+
+}
@@ -0,0 +1,100 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestBartWarmUp {
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Bart.setCacheDirectory(null);
+        Bart.setMetrics(null);
+    }
+
+    @Test
+    void testSpec() {
+        BartWarmUpSpec spec = new BartWarmUpSpec()
+            .add("fft", "-u", 3, BartWarmUpSpec.input(16, 16))
+            .repetitions(2);
+        assertEquals(1, spec.getCommands().size());
+        assertEquals("fft", spec.getCommands().get(0)[0]);
+        assertEquals(2, spec.getRepetitions());
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> spec.repetitions(0));
+        assertEquals(String.format(BartErrors.NON_POSITIVE_LIMIT, "number of repetitions", 0), exception.getMessage());
+    }
+
+    @Test
+    void testWarmUp() throws BartException {
+        BartHistogramMetrics metrics = new BartHistogramMetrics();
+        Bart.setMetrics(metrics);
+        BartWarmUpSpec spec = new BartWarmUpSpec()
+            .add("fft", "-u", 3, BartWarmUpSpec.input(16, 16))
+            .add("scale", 2, BartWarmUpSpec.input(4, 4, 2))
+            .repetitions(2);
+        Bart.warmUp(spec);
+        assertEquals(2, metrics.getTotalHistogram("fft").getCount());
+        assertEquals(2, metrics.getTotalHistogram("scale").getCount());
+        assertEquals(0, metrics.getFailureCount("fft") + metrics.getFailureCount("scale"));
+        assertTrue(metrics.getBytesWritten("fft") > 0);
+    }
+
+    @Test
+    void testWarmUpFailure() {
+        BartWarmUpSpec spec = new BartWarmUpSpec().add("cabs", "asdf");
+        assertThrows(BartException.class, () -> Bart.warmUp(spec));
+    }
+
+    @Test
+    void testCacheDirectory(@TempDir File cache) throws IOException, BartException {
+        Bart.setCacheDirectory(cache);
+        assertEquals(cache, Bart.getCacheDirectory());
+        assertTrue(new File(cache, "save" + File.separator + "fftw").isDirectory());
+        assertTrue(new File(cache, "save" + File.separator + "nsv").isDirectory());
+        BartNDArray result = Bart.run("fft", "-u", 3, new BartComplexFloatNDArray(16, 16).fill(1));
+        assertArrayEquals(new int[]{ 16, 16 }, new int[]{ result.shape(0), result.shape(1) });
+    }
+
+    @Test
+    void testCacheDirectoryProperty(@TempDir File directory) throws BartException {
+        File cache = new File(directory, "cache");
+        System.setProperty(Bart.CACHE_DIRECTORY_PROPERTY, cache.getPath());
+        try {
+            assertEquals(cache, Bart.getCacheDirectory());
+            Bart.run("ones", 2, 4, 4);
+            assertTrue(new File(cache, "save" + File.separator + "fftw").isDirectory());
+            assertTrue(new File(cache, "save" + File.separator + "nsv").isDirectory());
+        } finally {
+            System.clearProperty(Bart.CACHE_DIRECTORY_PROPERTY);
+        }
+    }
+
+    @Test
+    void testWarmUpWorkers() throws BartException {
+        BartWarmUpSpec spec = new BartWarmUpSpec().add("fft", "-u", 3, BartWarmUpSpec.input(16, 16));
+        List<BartTestSupport.RecordingExecutor> recorders = Arrays.asList(
+            new BartTestSupport.RecordingExecutor(), new BartTestSupport.RecordingExecutor());
+        List<BartExecutor> workers = new ArrayList<>();
+        for (BartExecutor recorder : recorders)
+            workers.add(new BartRemoteExecutor(BartTransport.inProcess(new BartWorkerServer(recorder, 1))));
+        try (BartDistributedExecutor executor = new BartDistributedExecutor(workers)) {
+            executor.warmUp(spec);
+        }
+        for (BartTestSupport.RecordingExecutor recorder : recorders) {
+            assertEquals(1, recorder.getCalls().size());
+            assertEquals("fft", recorder.getCalls().get(0)[0]);
+        }
+    }
+
+}
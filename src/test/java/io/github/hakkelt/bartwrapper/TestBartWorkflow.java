@@ -0,0 +1,148 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.Test;
+
+class TestBartWorkflow {
+    static final BartNDArray ARRAY = new BartComplexFloatNDArray(8, 8).fill(new Complex(1, -2));
+
+    static BartWorkflow.Step delay(long millis) {
+        return inputs -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return inputs.length == 0 ? new BartComplexFloatNDArray(ARRAY) : inputs[0];
+        };
+    }
+
+    @Test
+    void testCommands() throws BartException {
+        BartWorkflow.Result result = new BartWorkflow()
+            .command("fft", "fft", 3, ARRAY)
+            .commandMulti("svd", 3, "svd", BartWorkflow.ref("fft"))
+            .command("cabs", "cabs", BartWorkflow.ref("fft"))
+            .command("scaled", "fmac", BartWorkflow.ref("svd", 0), BartWorkflow.ref("cabs"))
+            .run("scaled", "cabs");
+        BartNDArray fft = Bart.run("fft", 3, ARRAY);
+        BartNDArray cabs = Bart.run("cabs", fft);
+        BartTestSupport.assertArrayClose(cabs, result.get("cabs"));
+        BartTestSupport.assertArrayClose(Bart.run("fmac", Bart.runMulti(3, "svd", fft)[0], cabs), result.get("scaled"));
+        assertEquals(result.getCriticalPath().get(0), "fft");
+        assertEquals(result.getCriticalPath().get(result.getCriticalPath().size() - 1), "scaled");
+    }
+
+    @Test
+    void testIndependentNodesRunConcurrently() throws BartException {
+        BartWorkflow.Result result = new BartWorkflow().parallelism(2)
+            .function("a", delay(200))
+            .function("b", delay(300))
+            .function("c", delay(50), "a", "b")
+            .run();
+        assertTrue(result.getTotalDuration() < 500_000_000L);
+        assertEquals(Arrays.asList("b", "c"), result.getCriticalPath());
+        assertTrue(result.getCriticalPathDuration() >= result.getDuration("b") + result.getDuration("c"));
+    }
+
+    @Test
+    void testIntermediatesAreReleased() throws BartException {
+        AtomicReference<BartComplexFloatNDArray> intermediate = new AtomicReference<>();
+        BartWorkflow.Result result = new BartWorkflow()
+            .function("source", inputs -> {
+                intermediate.set(new BartComplexFloatNDArray(ARRAY));
+                return intermediate.get();
+            })
+            .function("same", delay(0), "source")
+            .function("copy", inputs -> new BartComplexFloatNDArray(inputs[0]), "same")
+            .run("copy");
+        assertNull(intermediate.get().data);
+        assertNotNull(((BartComplexFloatNDArray) result.get("copy")).data);
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> result.get("source"));
+        assertEquals(String.format(BartErrors.UNKNOWN_WORKFLOW_NODE, "source"), exception.getMessage());
+    }
+
+    @Test
+    void testAliasedIntermediatesAreKept() throws BartException {
+        BartArrayPool.enable(1 << 20);
+        try {
+            BartWorkflow.Result result = new BartWorkflow()
+                .function("source", inputs -> new BartComplexFloatNDArray(ARRAY))
+                .function("reshaped", inputs -> inputs[0].reshape(64), "source")
+                .run("reshaped");
+            // the storage of the released source is still owned by the reshaped output, so it is not reused
+            new BartComplexFloatNDArray(ARRAY.shape()).fill(new Complex(-1, -1));
+            BartTestSupport.assertArrayClose(ARRAY.reshape(64), result.get("reshaped"));
+        } finally {
+            BartArrayPool.disable();
+        }
+    }
+
+    @Test
+    void testFailureWaitsForRunningNodes() {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean inputAlive = new AtomicBoolean();
+        AtomicReference<BartComplexFloatNDArray> output = new AtomicReference<>();
+        BartWorkflow workflow = new BartWorkflow().parallelism(2)
+            .function("source", delay(0))
+            .function("slow", inputs -> {
+                started.countDown();
+                // a computation that doesn't respond to interrupts
+                for (long end = System.nanoTime() + 300_000_000L; System.nanoTime() < end;)
+                    Thread.onSpinWait();
+                inputAlive.set(((BartComplexFloatNDArray) inputs[0]).data != null);
+                output.set(new BartComplexFloatNDArray(inputs[0]));
+                return output.get();
+            }, "source")
+            .function("failing", inputs -> {
+                try {
+                    started.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new BartException("failed");
+            }, "source");
+        Exception exception = assertThrows(BartException.class, workflow::run);
+        assertEquals("failed", exception.getMessage());
+        assertTrue(inputAlive.get());
+        assertNull(output.get().data);
+    }
+
+    @Test
+    void testFailure() {
+        BartWorkflow workflow = new BartWorkflow()
+            .function("a", delay(0))
+            .command("b", "fft", 3, BartWorkflow.ref("a"), "extra");
+        assertThrows(BartException.class, workflow::run);
+    }
+
+    @Test
+    void testInvalidGraphs() {
+        BartWorkflow cycle = new BartWorkflow().function("a", delay(0), "b").function("b", delay(0), "a");
+        Exception exception = assertThrows(IllegalArgumentException.class, cycle::run);
+        assertEquals(String.format(BartErrors.WORKFLOW_CYCLE, "a"), exception.getMessage());
+
+        BartWorkflow missing = new BartWorkflow().function("a", delay(0), "b");
+        exception = assertThrows(IllegalArgumentException.class, missing::run);
+        assertEquals(String.format(BartErrors.UNKNOWN_WORKFLOW_INPUT, "b", "a"), exception.getMessage());
+
+        BartWorkflow output = new BartWorkflow().function("a", delay(0)).command("b", "cabs", BartWorkflow.ref("a", 1));
+        exception = assertThrows(IllegalArgumentException.class, output::run);
+        assertEquals(String.format(BartErrors.INVALID_WORKFLOW_OUTPUT, 1, "a"), exception.getMessage());
+
+        exception = assertThrows(IllegalArgumentException.class, () -> output.function("a", delay(0)));
+        assertEquals(String.format(BartErrors.DUPLICATE_WORKFLOW_NODE, "a"), exception.getMessage());
+    }
+
+}
@@ -0,0 +1,112 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.Test;
+
+class TestCompactNDArrays {
+
+    @Test
+    void testRealFloat() {
+        BartNDArray array = new BartRealFloatNDArray(4, 5);
+        array.fillUsingLinearIndices(i -> new Complex(i, 0));
+        array.forEachWithLinearIndices((value, i) -> assertEquals(new Complex(i, 0), value));
+        array.set(new Complex(-1.5, 0), 2, 3);
+        assertEquals(new Complex(-1.5, 0), array.get(2, 3));
+    }
+
+    @Test
+    void testRealFloatNonzeroImaginaryPart() {
+        BartNDArray array = new BartRealFloatNDArray(4, 5);
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> array.set(new Complex(1, 1), 0, 0));
+        assertEquals(BartErrors.REAL_ARRAY_NONZERO_IMAGINARY_PART, exception.getMessage());
+        BartNDArray complex = new BartComplexFloatNDArray(4, 5).fill(new Complex(1, 1));
+        exception = assertThrows(IllegalArgumentException.class, () -> new BartRealFloatNDArray(complex));
+        assertEquals(BartErrors.REAL_ARRAY_NONZERO_IMAGINARY_PART, exception.getMessage());
+    }
+
+    @Test
+    void testHalf() {
+        BartNDArray array = new BartComplexHalfNDArray(4, 5);
+        array.set(new Complex(1.5, -2.25), 1, 1);
+        assertEquals(new Complex(1.5, -2.25), array.get(1, 1));
+        array.set(new Complex(0.1, 1e5), 2, 2);
+        assertEquals(0.1, array.get(2, 2).getReal(), 1e-4);
+        assertEquals(Double.POSITIVE_INFINITY, array.get(2, 2).getImaginary());
+    }
+
+    @Test
+    void testHalfConversion() {
+        assertEquals(1f, BartComplexHalfNDArray.halfToFloat(BartComplexHalfNDArray.floatToHalf(1f)));
+        assertEquals(65504f, BartComplexHalfNDArray.halfToFloat(BartComplexHalfNDArray.floatToHalf(65504f)));
+        assertEquals(0x1p-24f, BartComplexHalfNDArray.halfToFloat(BartComplexHalfNDArray.floatToHalf(0x1p-24f)));
+        assertEquals(0f, BartComplexHalfNDArray.halfToFloat(BartComplexHalfNDArray.floatToHalf(0x1p-26f)));
+        // 1 + 2^-11 is halfway between 1 and the next half-precision value, so it rounds to even
+        assertEquals(1f, BartComplexHalfNDArray.halfToFloat(BartComplexHalfNDArray.floatToHalf(1 + 0x1p-11f)));
+        assertTrue(Float.isNaN(BartComplexHalfNDArray.halfToFloat(BartComplexHalfNDArray.floatToHalf(Float.NaN))));
+    }
+
+    @Test
+    void testInt16() {
+        BartComplexInt16NDArray array = new BartComplexInt16NDArray(0.5f, 4, 5);
+        array.set(new Complex(1.5, -2.3), 1, 1);
+        assertEquals(new Complex(1.5, -2.5), array.get(1, 1));
+        array.set(new Complex(1e6, -1e6), 2, 2);
+        assertEquals(new Complex(32767 * 0.5, -32767 * 0.5), array.get(2, 2));
+    }
+
+    @Test
+    void testInt16AutomaticScale() {
+        BartNDArray source = new BartComplexFloatNDArray(4, 5).fillUsingLinearIndices(i -> new Complex(i, -2 * i));
+        BartComplexInt16NDArray array = new BartComplexInt16NDArray(source);
+        assertEquals(38. / Short.MAX_VALUE, array.getScale(), 1e-9);
+        array.forEachWithLinearIndices((value, i) -> {
+            assertEquals(i, value.getReal(), array.getScale());
+            assertEquals(-2. * i, value.getImaginary(), array.getScale());
+        });
+        assertEquals(1f, new BartComplexInt16NDArray(new BartComplexFloatNDArray(4, 5)).getScale());
+    }
+
+    @Test
+    void testInt16InvalidScale() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> new BartComplexInt16NDArray(0f, 4, 5));
+        assertEquals(String.format(BartErrors.INVALID_SCALE_FACTOR, 0f), exception.getMessage());
+    }
+
+    @Test
+    void testSaveAndLoad() throws IOException {
+        BartNDArray source = new BartComplexFloatNDArray(4, 5, 3).fillUsingLinearIndices(i -> new Complex(i, 0));
+        BartNDArray[] arrays = {
+            new BartRealFloatNDArray(source),
+            new BartComplexHalfNDArray(source),
+            new BartComplexInt16NDArray(source, 1f)
+        };
+        for (BartNDArray array : arrays) {
+            File file = BartNDArray.saveToTemp(array);
+            try {
+                BartComplexFloatNDArray loaded = BartNDArray.load(file);
+                assertArrayEquals(array.shape(), loaded.shape());
+                assertEquals(source, loaded);
+            } finally {
+                Files.delete(file.toPath());
+            }
+        }
+    }
+
+    @Test
+    void testSliceCopyKeepsType() {
+        BartNDArray array = new BartComplexHalfNDArray(4, 5).fillUsingLinearIndices(i -> new Complex(i, -i));
+        BartNDArray copy = array.slice(1, ":").copy();
+        assertEquals(BartComplexHalfNDArray.class, copy.getClass());
+        copy.forEachWithLinearIndices((value, i) -> assertEquals(array.get(1, i), value));
+    }
+
+}
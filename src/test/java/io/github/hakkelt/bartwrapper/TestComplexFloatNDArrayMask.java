@@ -44,12 +44,14 @@ class TestComplexFloatNDArrayMask implements NameTrait {
     @Test
     void testIdentityMask() {
         mask = new BasicByteNDArray(array.shape()).fill(1);
-        assertTrue(array.mask(mask) instanceof BartNDArrayReshapeView);
+        assertTrue(array.mask(mask) instanceof BartComplexFloatNDArray);
         mask = new BasicByteNDArray(array.shape()).fill(0);
-        assertTrue(array.inverseMask(mask) instanceof BartNDArrayReshapeView);
-        assertTrue(array.mask(value -> true) instanceof BartNDArrayReshapeView);
-        assertTrue(array.maskWithLinearIndices((value, index) -> true) instanceof BartNDArrayReshapeView);
-        assertTrue(array.maskWithCartesianIndices((value, index) -> true) instanceof BartNDArrayReshapeView);
+        assertTrue(array.inverseMask(mask) instanceof BartComplexFloatNDArray);
+        assertTrue(array.mask(value -> true) instanceof BartComplexFloatNDArray);
+        assertTrue(array.maskWithLinearIndices((value, index) -> true) instanceof BartComplexFloatNDArray);
+        assertTrue(array.maskWithCartesianIndices((value, index) -> true) instanceof BartComplexFloatNDArray);
+        BartNDArray permuted = array.permuteDims(2, 1, 0);
+        assertTrue(permuted.mask(value -> true) instanceof BartNDArrayReshapeView);
     }
 
     @Test
@@ -37,10 +37,38 @@ class TestComplexFloatNDArrayReshape implements NameTrait {
         assertFalse(reshaped.areBartDimsSpecified());
         Exception exception = assertThrows(UnsupportedOperationException.class, () -> reshaped.getBartDims());
         assertEquals(BartErrors.UNINITIALIZED_BART_DIMS, exception.getMessage());
-        exception = assertThrows(UnsupportedOperationException.class, () -> reshaped.setBartDims(BartDimsEnum._00_READ));
+        reshaped.setBartDims(BartDimsEnum._00_READ, BartDimsEnum._10_TIME);
+        assertArrayEquals(new BartDimsEnum[]{ BartDimsEnum._00_READ, BartDimsEnum._10_TIME }, reshaped.getBartDims());
+        assertEquals(BartDimsEnum._01_PHS1, array.getBartDims()[1]);
+    }
+
+    @Test
+    void testBartDimsOnView() {
+        BartNDArray reshapedView = array.permuteDims(1, 0, 2).reshape(20, 3);
+        assertTrue(reshapedView instanceof BartNDArrayReshapeView);
+        Exception exception = assertThrows(UnsupportedOperationException.class, () -> reshapedView.setBartDims(BartDimsEnum._00_READ));
         assertEquals(BartErrors.CANNOT_SET_BART_DIMS_ON_VIEW, exception.getMessage());
     }
 
+    @Test
+    void testReshapeSharesStorage() {
+        assertTrue(reshaped instanceof BartComplexFloatNDArray);
+        reshaped.set(new Complex(1, 1), 10, 2);
+        assertEquals(new Complex(1, 1), array.get(2, 2, 2));
+        array.set(new Complex(2, 2), 3, 4, 0);
+        assertEquals(new Complex(2, 2), reshaped.get(19, 0));
+        array.copyFrom(new BartComplexFloatNDArray(array.shape()));
+        assertEquals(Complex.ZERO, reshaped.get(19, 0));
+    }
+
+    @Test
+    void testReshapeLengthMismatch() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> array.reshape(20, 4));
+        assertEquals(
+            String.format(BartErrors.RESHAPE_LENGTH_MISMATCH, "[4, 5, 3]", "[20, 4]"),
+            exception.getMessage());
+    }
+
     @Test
     void testReshapeIdentity() {
         reshaped = array.reshape(4, 5, 3);
@@ -52,6 +80,11 @@ class TestComplexFloatNDArrayReshape implements NameTrait {
         BartNDArray reshaped2 = reshaped.reshape(4, 5, 3);
         array.forEachWithCartesianIndices((value, indices) -> assertEquals(value, reshaped2.get(indices)));
         assertSame(array, reshaped2);
+        array.setBartDims(BartDimsEnum._00_READ, BartDimsEnum._01_PHS1, BartDimsEnum._02_PHS2);
+        assertSame(array, reshaped.reshape(60).reshape(4, 5, 3));
+        assertEquals(BartDimsEnum._02_PHS2, reshaped.reshape(4, 5, 3).getBartDims()[2]);
+        BartNDArray reshapedView = array.permuteDims(1, 0, 2).reshape(60);
+        assertSame(reshapedView, reshapedView.reshape(20, 3).reshape(60));
         BartNDArray reshaped3 = reshaped.reshape(4, 15);
         assertNotSame(array, reshaped3);
     }
@@ -296,7 +329,7 @@ class TestComplexFloatNDArrayReshape implements NameTrait {
     @Test
     void testToString() {
         String str = reshaped.toString();
-        assertEquals(name() + " NDArrayView<Complex Float>(20 × 3)", str);
+        assertEquals(name() + " NDArray<Complex Float>(20 × 3)", str);
     }
 
     @Test
@@ -304,7 +337,7 @@ class TestComplexFloatNDArrayReshape implements NameTrait {
         String str = reshaped.contentToString();
         String lineFormat = "%8.3e%+8.3ei\t%8.3e%+8.3ei\t%8.3e%+8.3ei\t%n";
         String expected = new StringBuilder()
-            .append(name() + " NDArrayView<Complex Float>(20 × 3)" + System.lineSeparator())
+            .append(name() + " NDArray<Complex Float>(20 × 3)" + System.lineSeparator())
             .append(String.format(lineFormat, 0.0e+00, +0.0e+00, 2.0e+01, -2.0e+01, 4.0e+01, -4.0e+01))
             .append(String.format(lineFormat, 1.0e+00, -1.0e+00, 2.1e+01, -2.1e+01, 4.1e+01, -4.1e+01))
             .append(String.format(lineFormat, 2.0e+00, -2.0e+00, 2.2e+01, -2.2e+01, 4.2e+01, -4.2e+01))
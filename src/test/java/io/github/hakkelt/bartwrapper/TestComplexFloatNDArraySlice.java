@@ -8,6 +8,9 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
 
 import org.apache.commons.math3.complex.Complex;
@@ -593,6 +596,40 @@ class TestComplexFloatNDArraySlice implements NameTrait {
             assertNotEquals(new Complex(3, 0), elem);
     }
 
+    @Test
+    void testCopyContiguousRuns() {
+        for (BartNDArray slice2 : new BartNDArray[]{ array.slice(":", "1:4", ":"), array.slice(":", ":", 1), array.slice(1, ":", "1:3") }) {
+            BartNDArray array2 = slice2.copy();
+            assertTrue(array2 instanceof BartComplexFloatNDArray);
+            assertArrayEquals(slice2.shape(), array2.shape());
+            for (int i = 0; i < slice2.length(); i++)
+                assertEquals(slice2.get(i), array2.get(i));
+        }
+    }
+
+    @Test
+    void testCopyFromContiguousRuns() {
+        BartNDArray source = new BartComplexFloatNDArray(slice.shape()).fillUsingLinearIndices(i -> new Complex(-i, i));
+        slice.copyFrom(source);
+        for (int i = 0; i < slice.length(); i++)
+            assertEquals(source.get(i), slice.get(i));
+        BartNDArray slice2 = array.slice(0, ":", ":");
+        slice2.forEachWithLinearIndices((value, i) -> assertEquals(new Complex(i * 4, -i * 4), value));
+    }
+
+    @Test
+    void testSaveAndLoadSlice() throws IOException {
+        File file = BartNDArray.saveToTemp(slice);
+        try {
+            BartNDArray loaded = BartNDArray.load(file);
+            assertArrayEquals(slice.shape(), loaded.shape());
+            for (int i = 0; i < slice.length(); i++)
+                assertEquals(slice.get(i), loaded.get(i));
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
     @Test
     void testPermuteDimsAndToArray() {
         BartNDArray pArray = slice.permuteDims(1,0);
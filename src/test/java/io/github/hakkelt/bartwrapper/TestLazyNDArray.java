@@ -0,0 +1,113 @@
+package io.github.hakkelt.bartwrapper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.hakkelt.ndarrays.NDArray;
+
+class TestLazyNDArray {
+    BartNDArray a, b, c, d;
+
+    @BeforeEach
+    void setup() {
+        // large enough to span several evaluation chunks
+        a = new BartComplexFloatNDArray(100, 50, 3).fillUsingLinearIndices(i -> new Complex(i, -i));
+        b = new BartComplexFloatNDArray(100, 50, 3).fillUsingLinearIndices(i -> new Complex(i % 7, 2));
+        c = new BartComplexFloatNDArray(100, 50, 3).fill(new Complex(1, 1));
+        d = new BartComplexFloatNDArray(100, 50, 3).fillUsingLinearIndices(i -> new Complex(1 + i % 3, -1));
+    }
+
+    @Test
+    void testChainMatchesEager() {
+        BartNDArray eager = a.multiply(b).add(c).divide(d).subtract(3);
+        BartNDArray lazy = a.lazy().multiply(b).add(c).divide(d).subtract(3);
+        assertTrue(lazy instanceof BartLazyNDArray);
+        assertFalse(((BartLazyNDArray) lazy).isEvaluated());
+        assertClose(eager, lazy);
+        assertTrue(((BartLazyNDArray) lazy).isEvaluated());
+    }
+
+    @Test
+    void testParallel() {
+        BartNDArray eager = a.multiply(b).add(c).divide(d);
+        BartNDArray lazy = a.lazy().parallel(true).multiply(b).add(c).divide(d);
+        assertClose(eager, lazy.copy());
+    }
+
+    @Test
+    void testNestedOperands() {
+        BartNDArray eager = a.add(b.multiply(c)).multiply(a.subtract(d));
+        BartNDArray lazy = a.lazy().add(b.lazy().multiply(c)).multiply(a.lazy().subtract(d));
+        assertClose(eager, lazy);
+    }
+
+    @Test
+    void testMultipleOperands() {
+        BartNDArray eager = a.add(b, 5, new Complex(3, 1), c);
+        BartNDArray lazy = a.lazy().add(b, 5, new Complex(3, 1), c);
+        assertEquals(eager, lazy);
+    }
+
+    @Test
+    void testAbs() {
+        NDArray<Float> eager = a.multiply(b).add(c).divide(d).abs();
+        NDArray<Float> lazy = a.lazy().multiply(b).add(c).divide(d).abs();
+        lazy.forEachWithLinearIndices((value, i) -> assertEquals(eager.get(i), value, Math.abs(eager.get(i)) * 1e-6));
+    }
+
+    @Test
+    void testCopyIsDense() {
+        BartNDArray copy = a.lazy().add(b).copy();
+        assertEquals(BartComplexFloatNDArray.class, copy.getClass());
+        assertEquals(a.add(b), copy);
+    }
+
+    @Test
+    void testSetEvaluates() {
+        BartLazyNDArray lazy = a.lazy().add(b).lazy();
+        lazy.set(new Complex(-1, -1), 1, 2, 1);
+        assertTrue(lazy.isEvaluated());
+        assertEquals(new Complex(-1, -1), lazy.get(1, 2, 1));
+        assertSame(lazy.evaluate(), lazy.evaluate());
+    }
+
+    @Test
+    void testShapeMismatch() {
+        BartNDArray other = new BartComplexFloatNDArray(100, 50);
+        assertThrows(IllegalArgumentException.class, () -> a.lazy().add(other));
+    }
+
+    @Test
+    void testSaveWithoutEvaluation() throws IOException {
+        a.setBartDims(BartDimsEnum._00_READ, BartDimsEnum._01_PHS1, BartDimsEnum._02_PHS2);
+        BartLazyNDArray lazy = a.lazy().multiply(b).add(c).lazy();
+        File file = BartNDArray.saveToTemp(lazy);
+        try {
+            BartComplexFloatNDArray loaded = BartNDArray.load(file);
+            assertFalse(lazy.isEvaluated());
+            assertArrayEquals(a.shape(), loaded.shape());
+            loaded.forEachWithLinearIndices((value, i) -> assertEquals(a.get(i).multiply(b.get(i)).add(c.get(i)), value));
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    static void assertClose(BartNDArray expected, BartNDArray actual) {
+        assertArrayEquals(expected.shape(), actual.shape());
+        expected.forEachWithLinearIndices((value, i) ->
+            assertTrue(value.subtract(actual.get(i)).abs() <= value.abs() * 1e-6, "Mismatch at index " + i));
+    }
+
+}